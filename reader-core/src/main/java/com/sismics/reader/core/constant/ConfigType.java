@@ -10,4 +10,19 @@ public enum ConfigType {
      * Lucene directory storage type.
      */
     LUCENE_DIRECTORY_STORAGE,
+
+    /**
+     * Number of months of articles kept in the search index, 0 to keep all articles.
+     */
+    LUCENE_SHARD_RETENTION,
+
+    /**
+     * Maximum number of passages in the description snippet of a search result.
+     */
+    SEARCH_SNIPPET_COUNT,
+
+    /**
+     * Maximum length of a passage of a search result snippet.
+     */
+    SEARCH_SNIPPET_LENGTH,
 }
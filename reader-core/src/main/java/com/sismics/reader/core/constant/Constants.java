@@ -36,6 +36,16 @@ public class Constants {
      */
     public static final String LUCENE_DIRECTORY_STORAGE_FILE = "FILE";
     
+    /**
+     * Memory-mapped file Lucene directory storage.
+     */
+    public static final String LUCENE_DIRECTORY_STORAGE_MMAP = "MMAP";
+    
+    /**
+     * NIO file Lucene directory storage, with positional reads.
+     */
+    public static final String LUCENE_DIRECTORY_STORAGE_NIO = "NIO";
+    
     /**
      * Default generic user role.
      */
@@ -75,4 +85,24 @@ public class Constants {
      * Import Job : starred article failure.
      */
     public static final String JOB_EVENT_STARRED_ARTICLE_IMPORT_FAILURE = "import.starred_article_import_failure";
+    
+    /**
+     * Index rebuild Job.
+     */
+    public static final String JOB_REBUILD_INDEX = "rebuild_index";
+    
+    /**
+     * Index rebuild Job : number of articles event.
+     */
+    public static final String JOB_EVENT_REBUILD_INDEX_ARTICLE_COUNT = "rebuild_index.article_count";
+    
+    /**
+     * Index rebuild Job : number of articles indexed so far.
+     */
+    public static final String JOB_EVENT_REBUILD_INDEX_PROGRESS = "rebuild_index.progress";
+    
+    /**
+     * Index rebuild Job : failure.
+     */
+    public static final String JOB_EVENT_REBUILD_INDEX_FAILURE = "rebuild_index.failure";
 }
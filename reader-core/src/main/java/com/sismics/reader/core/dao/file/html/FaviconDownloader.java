@@ -141,7 +141,7 @@ public class FaviconDownloader {
                                 String extension = FAVICON_MIME_TYPE_MAP.get(type);
                                 if (extension != null) {
                                     File outputFile = new File(directory + File.separator + fileName + extension);
-                                    Files.copy(localFile, new FileOutputStream(outputFile));
+                                    Files.copy(localFile, outputFile);
                                     return outputFile.getPath();
                                 }
                             }
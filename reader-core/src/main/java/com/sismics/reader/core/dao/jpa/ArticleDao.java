@@ -4,7 +4,10 @@ import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.jpa.mapper.ArticleMapper;
 import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.jpa.SortCriteria;
+import com.sismics.reader.core.util.sanitizer.SummarySanitizer;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
 import com.sismics.util.jpa.DialectUtil;
@@ -77,6 +80,10 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
             criteriaList.add("a.ART_IDFEED_C = :feedId");
             parameterMap.put("feedId", criteria.getFeedId());
         }
+        if (criteria.getIdMin() != null) {
+            criteriaList.add("a." + ARTICLE_ID_COLUMN + " > :idMin");
+            parameterMap.put("idMin", criteria.getIdMin());
+        }
 
         SortCriteria sortCriteria = new SortCriteria("  order by a.ART_CREATEDATE_D asc");
 
@@ -94,13 +101,13 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
         // Create the UUID
         article.setId(UUID.randomUUID().toString());
         article.setCreateDate(new Date());
+        article.setSummary(SummarySanitizer.sanitize(article.getDescription()));
 
         // Create the article
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createNativeQuery("insert into " + ARTICLE_TABLE + "(" + ARTICLE_ID_COLUMN
-                + ", ART_IDFEED_C, ART_URL_C, ART_BASEURI_C, ART_GUID_C, ART_TITLE_C, ART_CREATOR_C, ART_DESCRIPTION_C, ART_COMMENTURL_C, ART_COMMENTCOUNT_N, ART_ENCLOSUREURL_C, ART_ENCLOSURELENGTH_N, ART_ENCLOSURETYPE_C, ART_PUBLICATIONDATE_D, ART_CREATEDATE_D)"
+        Query q = EntityManagerUtil.createNativeUpdate(ARTICLE_TABLE, "insert into " + ARTICLE_TABLE + "(" + ARTICLE_ID_COLUMN
+                + ", ART_IDFEED_C, ART_URL_C, ART_BASEURI_C, ART_GUID_C, ART_TITLE_C, ART_CREATOR_C, ART_DESCRIPTION_C, ART_SUMMARY_C, ART_COMMENTURL_C, ART_COMMENTCOUNT_N, ART_ENCLOSUREURL_C, ART_ENCLOSURELENGTH_N, ART_ENCLOSURETYPE_C, ART_PUBLICATIONDATE_D, ART_CREATEDATE_D)"
                 +
-                "  values (:id, :feedId, :url, :baseUri, :guid, :title, :creator, :description, :commentUrl, "
+                "  values (:id, :feedId, :url, :baseUri, :guid, :title, :creator, :description, :summary, :commentUrl, "
                 + DialectUtil.getNullParameter(":commentCount", article.getCommentCount()) + ", :enclosureUrl, "
                 + DialectUtil.getNullParameter(":enclosureLength", article.getEnclosureLength())
                 + ", :enclosureType, :publicationDate, :createDate)")
@@ -112,6 +119,7 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 .setParameter("title", article.getTitle())
                 .setParameter("creator", article.getCreator())
                 .setParameter("description", article.getDescription())
+                .setParameter("summary", article.getSummary())
                 .setParameter("commentUrl", article.getCommentUrl())
                 .setParameter("enclosureUrl", article.getEnclosureUrl())
                 .setParameter("enclosureType", article.getEnclosureType())
@@ -135,13 +143,15 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
      * @return Updated article
      */
     public Article update(Article article) {
+        article.setSummary(SummarySanitizer.sanitize(article.getDescription()));
+
         // Get the article
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
         StringBuilder sql = new StringBuilder("update " + ARTICLE_TABLE + " set" +
                 "  ART_URL_C = :url," +
                 "  ART_TITLE_C = :title," +
                 "  ART_CREATOR_C = :creator," +
                 "  ART_DESCRIPTION_C = :description," +
+                "  ART_SUMMARY_C = :summary," +
                 "  ART_COMMENTURL_C = :commentUrl," +
                 "  ART_COMMENTCOUNT_N = " + DialectUtil.getNullParameter(":commentCount", article.getCommentCount())
                 + "," +
@@ -150,11 +160,12 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
                 + DialectUtil.getNullParameter(":enclosureLength", article.getEnclosureLength()) + "," +
                 "  ART_ENCLOSURETYPE_C = :enclosureType" +
                 "  where " + ARTICLE_ID_COLUMN + " = :id and " + ARTICLE_DELETEDATE_COLUMN + " is null");
-        Query q = em.createNativeQuery(sql.toString())
+        Query q = EntityManagerUtil.createNativeUpdate(ARTICLE_TABLE, sql.toString())
                 .setParameter("url", article.getUrl())
                 .setParameter("title", article.getTitle())
                 .setParameter("creator", article.getCreator())
                 .setParameter("description", article.getDescription())
+                .setParameter("summary", article.getSummary())
                 .setParameter("commentUrl", article.getCommentUrl())
                 .setParameter("enclosureUrl", article.getEnclosureUrl())
                 .setParameter("enclosureType", article.getEnclosureType())
@@ -170,6 +181,32 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
         return article;
     }
 
+    /**
+     * Returns the titles of the most recent articles of a feed, the descriptions are not fetched.
+     *
+     * @param feedId Feed ID
+     * @param limit Maximum number of articles
+     * @return Articles with only their ID, title and publication date
+     */
+    @SuppressWarnings("unchecked")
+    public List<ArticleDto> findTitleByFeedId(String feedId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select a." + ARTICLE_ID_COLUMN + ", a.ART_TITLE_C, a.ART_PUBLICATIONDATE_D from " + ARTICLE_TABLE + " a" +
+                "  where a.ART_IDFEED_C = :feedId and " + ARTICLE_NOT_DELETED_CLAUSE +
+                "  order by a.ART_PUBLICATIONDATE_D desc")
+                .setParameter("feedId", feedId)
+                .setMaxResults(limit);
+        List<ArticleDto> articleList = new ArrayList<>();
+        for (Object[] o : (List<Object[]>) q.getResultList()) {
+            ArticleDto article = new ArticleDto();
+            article.setId((String) o[0]);
+            article.setTitle((String) o[1]);
+            article.setPublicationDate((Date) o[2]);
+            articleList.add(article);
+        }
+        return articleList;
+    }
+
     /**
      * Returns the list of all articles.
      *
@@ -188,13 +225,20 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
      *
      * @param id Article ID
      */
+    @SuppressWarnings("unchecked")
     public void delete(String id) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
         Date deleteDate = new Date();
 
+        // Get the users of this article before removing it from their lists
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        List<String> userIdList = em.createNativeQuery("select distinct ua.USA_IDUSER_C from " + USER_ARTICLE_TABLE + " ua"
+                + "  where ua." + USER_ARTICLE_ID_ARTICLE_COLUMN + " = :articleId and ua." + USER_ARTICLE_DELETEDATE_COLUMN + " is null")
+                .setParameter("articleId", id)
+                .getResultList();
+
         String updateArticleSql = "update " + ARTICLE_TABLE + " set " + ARTICLE_DELETEDATE_COLUMN
                 + " = :deleteDate where " + ARTICLE_ID_COLUMN + " = :id and " + ARTICLE_DELETEDATE_COLUMN + " is null";
-        em.createNativeQuery(updateArticleSql)
+        EntityManagerUtil.createNativeUpdate(ARTICLE_TABLE, updateArticleSql)
                 .setParameter("deleteDate", deleteDate)
                 .setParameter("id", id)
                 .executeUpdate();
@@ -202,9 +246,14 @@ public class ArticleDao extends BaseDao<ArticleDto, ArticleCriteria> {
         String updateUserArticleSql = "update " + USER_ARTICLE_TABLE + " set " + USER_ARTICLE_DELETEDATE_COLUMN
                 + " = :deleteDate where " + USER_ARTICLE_ID_ARTICLE_COLUMN + " = :articleId and "
                 + USER_ARTICLE_DELETEDATE_COLUMN + " is null";
-        em.createNativeQuery(updateUserArticleSql)
+        EntityManagerUtil.createNativeUpdate(USER_ARTICLE_TABLE, updateUserArticleSql)
                 .setParameter("deleteDate", deleteDate)
                 .setParameter("articleId", id)
                 .executeUpdate();
+
+        new TimelineDao().deleteByArticle(id);
+        for (String userId : userIdList) {
+            UserVersionUtil.bump(userId);
+        }
     }
 }
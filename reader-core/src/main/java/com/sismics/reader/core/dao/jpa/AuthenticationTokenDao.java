@@ -1,11 +1,15 @@
 package com.sismics.reader.core.dao.jpa;
 
 import com.sismics.reader.core.model.jpa.AuthenticationToken;
+import com.sismics.reader.core.util.AuthenticationUtil;
+import com.sismics.reader.core.util.EntityManagerUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import org.joda.time.DateTime;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 import java.util.Date;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -16,13 +20,25 @@ import java.util.UUID;
 public class AuthenticationTokenDao {
     /**
      * Gets an authentication token.
+     * The token is read from the cache if possible, the returned token is detached.
      * 
      * @param id Authentication token ID
      * @return Authentication token
      */
     public AuthenticationToken get(String id) {
+        AuthenticationToken authenticationToken = AuthenticationUtil.getToken(id);
+        if (authenticationToken != null) {
+            return authenticationToken;
+        }
+
+        // A token deleted meanwhile is not cached
+        long invalidationCount = AuthenticationUtil.getInvalidationCount();
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        return em.find(AuthenticationToken.class, id);
+        authenticationToken = em.find(AuthenticationToken.class, id);
+        if (authenticationToken != null) {
+            AuthenticationUtil.putToken(authenticationToken, invalidationCount);
+        }
+        return authenticationToken;
     }
 
     /**
@@ -51,6 +67,7 @@ public class AuthenticationTokenDao {
         AuthenticationToken authenticationToken = em.find(AuthenticationToken.class, authenticationTokenId);
         if (authenticationToken != null) {
             em.remove(authenticationToken);
+            AuthenticationUtil.invalidateToken(authenticationTokenId);
         } else {
             throw new Exception("Token not found: " + authenticationTokenId);
         }
@@ -62,32 +79,52 @@ public class AuthenticationTokenDao {
      * @param userId User ID
      */
     public void deleteOldSessionToken(String userId) {
+        // Write the pending connection dates, so that recently used tokens are kept
+        flushLastConnectionDate();
+
         StringBuilder sb = new StringBuilder("delete from T_AUTHENTICATION_TOKEN ");
         sb.append(" where AUT_IDUSER_C = :userId and AUT_LONGLASTED_B = :longLasted");
         sb.append(" and AUT_LASTCONNECTIONDATE_D < :minDate ");
 
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        em.createNativeQuery(sb.toString())
+        EntityManagerUtil.createNativeUpdate("T_AUTHENTICATION_TOKEN", sb.toString())
                 .setParameter("userId", userId)
                 .setParameter("longLasted", false)
                 .setParameter("minDate", DateTime.now().minusDays(1).toDate())
                 .executeUpdate();
+        AuthenticationUtil.invalidateUser(userId);
     }
 
     /**
-     * Deletes old short lived tokens.
+     * Updates the last connection date of a token.
+     * The date is only recorded in memory, it is written to the database by flushLastConnectionDate().
      *
      * @param id Token id
      */
     public void updateLastConnectionDate(String id) {
+        AuthenticationUtil.updateLastConnectionDate(id, new Date());
+    }
+
+    /**
+     * Writes the pending last connection dates to the database.
+     *
+     * @return Number of updated tokens
+     */
+    public int flushLastConnectionDate() {
+        Map<String, Date> lastConnectionDateMap = AuthenticationUtil.drainLastConnectionDate();
+        if (lastConnectionDateMap.isEmpty()) {
+            return 0;
+        }
+
         StringBuilder sb = new StringBuilder("update T_AUTHENTICATION_TOKEN ");
         sb.append(" set AUT_LASTCONNECTIONDATE_D = :currentDate ");
         sb.append(" where AUT_ID_C = :id");
 
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        em.createNativeQuery(sb.toString())
-                .setParameter("currentDate", new Date())
-                .setParameter("id", id)
-                .executeUpdate();
+        Query q = EntityManagerUtil.createNativeUpdate("T_AUTHENTICATION_TOKEN", sb.toString());
+        for (Map.Entry<String, Date> entry : lastConnectionDateMap.entrySet()) {
+            q.setParameter("currentDate", entry.getValue())
+                    .setParameter("id", entry.getKey())
+                    .executeUpdate();
+        }
+        return lastConnectionDateMap.size();
     }
 }
@@ -1,6 +1,7 @@
 package com.sismics.reader.core.dao.jpa;
 
 import com.sismics.reader.core.model.jpa.Category;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import javax.persistence.EntityManager;
@@ -29,6 +30,7 @@ public class CategoryDao {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         category.setCreateDate(new Date());
         em.persist(category);
+        UserVersionUtil.bump(category.getUserId());
         
         return category.getId();
     }
@@ -51,6 +53,7 @@ public class CategoryDao {
         categoryFromDb.setName(category.getName());
         categoryFromDb.setOrder(category.getOrder());
         categoryFromDb.setFolded(category.isFolded());
+        UserVersionUtil.bump(categoryFromDb.getUserId());
         
         return category;
     }
@@ -81,6 +84,7 @@ public class CategoryDao {
             Category currentCategory = categoryList.get(i);
             currentCategory.setOrder(i);
         }
+        UserVersionUtil.bump(category.getUserId());
     }
     
     /**
@@ -98,6 +102,7 @@ public class CategoryDao {
 
         // Delete the category
         categoryFromDb.setDeleteDate(new Date());
+        UserVersionUtil.bump(categoryFromDb.getUserId());
     }
     
     /**
@@ -109,7 +114,8 @@ public class CategoryDao {
     public Category getRootCategory(String userId) {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         Query q = em.createQuery("select c from Category c where c.userId = :userId and c.parentId is null and c.deleteDate is null")
-                .setParameter("userId", userId);
+                .setParameter("userId", userId)
+                .setHint("org.hibernate.cacheable", true);
         return (Category) q.getSingleResult();
     }
     
@@ -4,6 +4,7 @@ import com.sismics.reader.core.dao.jpa.criteria.FeedCriteria;
 import com.sismics.reader.core.dao.jpa.dto.FeedDto;
 import com.sismics.reader.core.dao.jpa.mapper.FeedMapper;
 import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
@@ -66,6 +67,7 @@ public class FeedDao extends BaseDao<FeedDto, FeedCriteria> {
         // Create the feed
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         feed.setCreateDate(new Date());
+        feed.setSynchronizationFailCount(0);
         em.persist(feed);
         
         return feed.getId();
@@ -130,4 +132,27 @@ public class FeedDao extends BaseDao<FeedDto, FeedCriteria> {
         
         return feed;
     }
+
+    /**
+     * Updates the number of failed synchronizations among the last 5 synchronizations of a feed.
+     * The synchronizations must be flushed before.
+     * The feed is updated as an entity, so that only this feed is evicted from the second-level cache.
+     * The subscribers are notified if the number changed.
+     *
+     * @param id Feed ID
+     */
+    public void updateSynchronizationFailCount(String id) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select count(fsy.FSY_ID_C) from " +
+                "  (select * from T_FEED_SYNCHRONIZATION fsy where fsy.FSY_IDFEED_C = :id order by fsy.FSY_CREATEDATE_D desc limit 5) fsy" +
+                "  where fsy.FSY_SUCCESS_B = false")
+                .setParameter("id", id);
+        int synchronizationFailCount = ((Number) q.getSingleResult()).intValue();
+
+        Feed feed = em.find(Feed.class, id);
+        if (feed != null && feed.getSynchronizationFailCount() != synchronizationFailCount) {
+            feed.setSynchronizationFailCount(synchronizationFailCount);
+            UserVersionUtil.bumpByFeed(id);
+        }
+    }
 }
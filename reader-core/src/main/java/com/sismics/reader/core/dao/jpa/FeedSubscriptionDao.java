@@ -5,6 +5,8 @@ import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
 import com.sismics.reader.core.dao.jpa.mapper.FeedSubscriptionMapper;
 import com.sismics.reader.core.model.jpa.FeedSubscription;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
@@ -26,13 +28,18 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
 
     String USER_ID = "userId";
     String CATEGORY_ID = "categoryId";
+
+    /**
+     * Number of unread articles of the subscription fs, counted from the timeline.
+     */
+    private static final String UNREAD_COUNT = "(select count(t.TIM_IDUSERARTICLE_C) from T_TIMELINE t where t.TIM_IDFEEDSUBSCRIPTION_C = fs.FES_ID_C and t.TIM_UNREAD_B = :unread)";
+
     @Override
     protected QueryParam getQueryParam(FeedSubscriptionCriteria criteria, FilterCriteria filterCriteria) {
         List<String> criteriaList = Lists.newArrayList();
         Map<String, Object> parameterMap = new HashMap<String, Object>();
 
-        StringBuilder sb = new StringBuilder("select fs.FES_ID_C, fs.FES_TITLE_C, fs.FES_UNREADCOUNT_N, fs.FES_CREATEDATE_D, fs.FES_IDUSER_C, f.FED_ID_C, f.FED_TITLE_C, f.FED_RSSURL_C, f.FED_URL_C, f.FED_DESCRIPTION_C, c.CAT_ID_C, c.CAT_IDPARENT_C, c.CAT_NAME_C, c.CAT_FOLDED_B,")
-                .append("  (select count(fsy.FSY_ID_C) from (select * from T_FEED_SYNCHRONIZATION fsy where fsy.FSY_IDFEED_C = f.FED_ID_C order by fsy.FSY_CREATEDATE_D desc limit 5) fsy where fsy.FSY_SUCCESS_B = false) ")
+        StringBuilder sb = new StringBuilder("select fs.FES_ID_C, fs.FES_TITLE_C, fs.FES_UNREADCOUNT_N, fs.FES_CREATEDATE_D, fs.FES_IDUSER_C, f.FED_ID_C, f.FED_TITLE_C, f.FED_RSSURL_C, f.FED_URL_C, f.FED_DESCRIPTION_C, c.CAT_ID_C, c.CAT_IDPARENT_C, c.CAT_NAME_C, c.CAT_FOLDED_B, f.FED_SYNCFAILCOUNT_N")
                 .append("  from T_FEED_SUBSCRIPTION fs ")
                 .append("  join T_FEED f on(f.FED_ID_C = fs.FES_IDFEED_C and f.FED_DELETEDATE_D is null) ")
                 .append("  join T_CATEGORY c on(c.CAT_ID_C = fs.FES_IDCATEGORY_C and c.CAT_DELETEDATE_D is null) ");
@@ -82,6 +89,7 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         feedSubscription.setCreateDate(new Date());
         em.persist(feedSubscription);
+        UserVersionUtil.bump(feedSubscription.getUserId());
         
         return feedSubscription.getId();
     }
@@ -105,6 +113,10 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
         feedSubscriptionFromDb.setCategoryId(feedSubscription.getCategoryId());
         feedSubscriptionFromDb.setOrder(feedSubscription.getOrder());
 
+        // Move the articles of the timeline to the new category
+        new TimelineDao().updateCategory(feedSubscription.getId(), feedSubscription.getCategoryId());
+        UserVersionUtil.bump(feedSubscriptionFromDb.getUserId());
+
         return feedSubscription;
     }
 
@@ -115,14 +127,97 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
      * @param unreadCount Number of unread articles
      */
     public void updateUnreadCount(String id, Integer unreadCount) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
         String updateUnreadCount="update T_FEED_SUBSCRIPTION set FES_UNREADCOUNT_N = :unreadCount where FES_ID_C = :id";
-        em.createNativeQuery(updateUnreadCount)
+        EntityManagerUtil.createNativeUpdate("T_FEED_SUBSCRIPTION", updateUnreadCount)
                 .setParameter("id", id)
                 .setParameter("unreadCount", unreadCount)
                 .executeUpdate();
     }
 
+    /**
+     * Adds a number of articles to the unread count of a user subscription.
+     *
+     * @param id User subscription ID
+     * @param delta Number of articles to add, negative to remove
+     */
+    public void addUnreadCount(String id, int delta) {
+        EntityManagerUtil.createNativeUpdate("T_FEED_SUBSCRIPTION", "update T_FEED_SUBSCRIPTION set FES_UNREADCOUNT_N = FES_UNREADCOUNT_N + :delta where FES_ID_C = :id")
+                .setParameter("id", id)
+                .setParameter("delta", delta)
+                .executeUpdate();
+    }
+
+    /**
+     * Recomputes the number of unread articles of user subscriptions in a single statement.
+     *
+     * @param criteria User ID, and optionally category ID or subscription ID
+     */
+    public void recomputeUnreadCount(FeedSubscriptionCriteria criteria) {
+        StringBuilder sb = new StringBuilder("update T_FEED_SUBSCRIPTION fs set FES_UNREADCOUNT_N = " + UNREAD_COUNT);
+        sb.append(" where fs.FES_IDUSER_C = :userId and fs.FES_DELETEDATE_D is null ");
+        if (criteria.getCategoryId() != null) {
+            sb.append(" and fs.FES_IDCATEGORY_C = :categoryId ");
+        }
+        if (criteria.getId() != null) {
+            sb.append(" and fs.FES_ID_C = :id ");
+        }
+        Query q = EntityManagerUtil.createNativeUpdate("T_FEED_SUBSCRIPTION", sb.toString())
+                .setParameter("unread", true)
+                .setParameter(USER_ID, criteria.getUserId());
+        if (criteria.getCategoryId() != null) {
+            q.setParameter(CATEGORY_ID, criteria.getCategoryId());
+        }
+        if (criteria.getId() != null) {
+            q.setParameter("id", criteria.getId());
+        }
+        q.executeUpdate();
+        UserVersionUtil.bump(criteria.getUserId());
+    }
+
+    /**
+     * Repairs the number of unread articles of a batch of subscriptions.
+     * Subscriptions are processed in ID order, so that all subscriptions are reconciled in successive calls.
+     *
+     * @param afterId Start after this subscription ID, null to start from the beginning
+     * @param limit Maximum number of subscriptions to process
+     * @return ID of the last processed subscription, or null if all subscriptions have been processed
+     */
+    @SuppressWarnings("unchecked")
+    public String reconcileUnreadCount(String afterId, int limit) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select fs.FES_ID_C from T_FEED_SUBSCRIPTION fs where fs.FES_DELETEDATE_D is null" +
+                (afterId != null ? " and fs.FES_ID_C > :afterId" : "") +
+                " order by fs.FES_ID_C")
+                .setMaxResults(limit);
+        if (afterId != null) {
+            q.setParameter("afterId", afterId);
+        }
+        List<String> idList = (List<String>) q.getResultList();
+        if (idList.isEmpty()) {
+            return null;
+        }
+
+        // Only update the counts which drifted
+        List<Object[]> driftList = (List<Object[]>) em.createNativeQuery("select fs.FES_ID_C, fs.FES_IDUSER_C from T_FEED_SUBSCRIPTION fs" +
+                " where fs.FES_ID_C in (:idList) and fs.FES_UNREADCOUNT_N <> " + UNREAD_COUNT)
+                .setParameter("unread", true)
+                .setParameter("idList", idList)
+                .getResultList();
+        if (!driftList.isEmpty()) {
+            List<String> driftIdList = new ArrayList<String>();
+            for (Object[] o : driftList) {
+                driftIdList.add((String) o[0]);
+                UserVersionUtil.bump((String) o[1]);
+            }
+            EntityManagerUtil.createNativeUpdate("T_FEED_SUBSCRIPTION", "update T_FEED_SUBSCRIPTION fs set FES_UNREADCOUNT_N = " + UNREAD_COUNT + " where fs.FES_ID_C in (:idList)")
+                    .setParameter("unread", true)
+                    .setParameter("idList", driftIdList)
+                    .executeUpdate();
+        }
+
+        return idList.size() < limit ? null : idList.get(idList.size() - 1);
+    }
+
     /**
      * Moves the subscription to the specified display order, and reorders adjacent subscription.
      * 
@@ -149,6 +244,7 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
             FeedSubscription currentFeedSubscription = feedSubscriptionList.get(i);
             currentFeedSubscription.setOrder(i);
         }
+        UserVersionUtil.bump(feedSubscription.getUserId());
     }
     
     /**
@@ -166,6 +262,10 @@ public class FeedSubscriptionDao extends BaseDao<FeedSubscriptionDto, FeedSubscr
 
         // Delete the subscription
         feedSubscriptionFromDb.setDeleteDate(new Date());
+
+        // Remove the articles from the timeline
+        new TimelineDao().deleteByFeedSubscription(id);
+        UserVersionUtil.bump(feedSubscriptionFromDb.getUserId());
     }
     
     /**
@@ -1,6 +1,7 @@
 package com.sismics.reader.core.dao.jpa;
 
 import com.sismics.reader.core.model.jpa.FeedSynchronization;
+import com.sismics.reader.core.util.EntityManagerUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.DialectUtil;
 
@@ -40,8 +41,7 @@ public class FeedSynchronizationDao {
      * @param minutes All entries before NOW() - [minutes] will be deleted
      */
     public void deleteOldFeedSynchronization(String feedId, int minutes) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
-        em.createNativeQuery("delete from T_FEED_SYNCHRONIZATION fs where FSY_IDFEED_C = :feedId and FSY_CREATEDATE_D < " +
+        EntityManagerUtil.createNativeUpdate("T_FEED_SYNCHRONIZATION", "delete from T_FEED_SYNCHRONIZATION fs where FSY_IDFEED_C = :feedId and FSY_CREATEDATE_D < " +
                 DialectUtil.getDateDiff("NOW()", String.valueOf(minutes), "MINUTE"))
                 .setParameter("feedId", feedId)
                 .executeUpdate();
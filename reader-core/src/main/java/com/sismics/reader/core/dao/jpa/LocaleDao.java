@@ -38,7 +38,8 @@ public class LocaleDao {
     @SuppressWarnings("unchecked")
     public List<Locale> findAll() {
         EntityManager em = ThreadLocalContext.get().getEntityManager();
-        Query q = em.createQuery("select l from Locale l order by l.id");
+        Query q = em.createQuery("select l from Locale l order by l.id")
+                .setHint("org.hibernate.cacheable", true);
         return q.getResultList();
     }
 }
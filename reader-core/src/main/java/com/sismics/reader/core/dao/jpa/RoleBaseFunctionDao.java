@@ -1,6 +1,7 @@
 package com.sismics.reader.core.dao.jpa;
 
 import com.google.common.collect.Sets;
+import com.sismics.reader.core.util.AuthenticationUtil;
 import com.sismics.util.context.ThreadLocalContext;
 
 import javax.persistence.EntityManager;
@@ -15,18 +16,26 @@ import java.util.Set;
 public class RoleBaseFunctionDao {
     /**
      * Find the set of base functions of a role.
+     * The roles are not modified by the application, so the result is cached.
      * 
      * @param roleId Role ID
      * @return Set of base functions
      */
     @SuppressWarnings("unchecked")
     public Set<String> findByRoleId(String roleId) {
+        Set<String> baseFunctionSet = AuthenticationUtil.getBaseFunctionSet(roleId);
+        if (baseFunctionSet != null) {
+            return Sets.newHashSet(baseFunctionSet);
+        }
+
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         StringBuilder sb = new StringBuilder("select rbf.RBF_IDBASEFUNCTION_C from T_ROLE_BASE_FUNCTION rbf, T_ROLE r")
                 .append("  where rbf.RBF_IDROLE_C = :roleId and rbf.RBF_DELETEDATE_D is null")
                 .append("  and r.ROL_ID_C = rbf.RBF_IDROLE_C and r.ROL_DELETEDATE_D is null");
         Query q = em.createNativeQuery(sb.toString())
             .setParameter("roleId", roleId);
-        return Sets.newHashSet(q.getResultList());
+        baseFunctionSet = Sets.newHashSet(q.getResultList());
+        AuthenticationUtil.putBaseFunctionSet(roleId, baseFunctionSet);
+        return baseFunctionSet;
     }
 }
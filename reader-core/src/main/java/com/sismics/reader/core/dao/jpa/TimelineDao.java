@@ -0,0 +1,175 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
+import com.sismics.reader.core.model.jpa.FeedSubscription;
+import com.sismics.reader.core.util.EntityManagerUtil;
+
+import javax.persistence.Query;
+import java.util.List;
+
+/**
+ * Timeline DAO.
+ * The timeline is a projection of the subscribed user articles, keyed by user, publication date and article,
+ * and carrying the feed, subscription and category, so that article lists are read from a single index.
+ * The user articles and subscriptions must be flushed before creating the timeline entries.
+ *
+ * @author jtremeaux
+ */
+public class TimelineDao {
+    /**
+     * Insert into the timeline, the values are selected from T_USER_ARTICLE ua, T_ARTICLE a, T_FEED_SUBSCRIPTION fs.
+     */
+    private static final String INSERT_TIMELINE = "insert into T_TIMELINE (TIM_IDUSERARTICLE_C, TIM_IDUSER_C, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C, TIM_IDFEED_C, TIM_IDFEEDSUBSCRIPTION_C, TIM_IDCATEGORY_C, TIM_UNREAD_B)" +
+            "  select ua.USA_ID_C, ua.USA_IDUSER_C, a.ART_PUBLICATIONDATE_D, a.ART_ID_C, a.ART_IDFEED_C, fs.FES_ID_C, fs.FES_IDCATEGORY_C, (ua.USA_READDATE_D is null)" +
+            "  from T_USER_ARTICLE ua" +
+            "  join T_ARTICLE a on (a.ART_ID_C = ua.USA_IDARTICLE_C and a.ART_DELETEDATE_D is null)" +
+            "  join T_FEED_SUBSCRIPTION fs on (fs.FES_IDFEED_C = a.ART_IDFEED_C and fs.FES_IDUSER_C = ua.USA_IDUSER_C and fs.FES_DELETEDATE_D is null)" +
+            "  where ua.USA_DELETEDATE_D is null" +
+            "  and not exists (select t.TIM_IDUSERARTICLE_C from T_TIMELINE t where t.TIM_IDUSERARTICLE_C = ua.USA_ID_C)";
+
+    /**
+     * Adds the user articles of new articles to the timeline of their subscribers.
+     *
+     * @param articleIdList List of article ID
+     */
+    public void createByArticle(List<String> articleIdList) {
+        if (articleIdList.isEmpty()) {
+            return;
+        }
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", INSERT_TIMELINE + " and a.ART_ID_C in (:articleIdList)")
+                .setParameter("articleIdList", articleIdList)
+                .executeUpdate();
+    }
+
+    /**
+     * Adds a user article to the timeline of its user, if subscribed to the feed of the article.
+     *
+     * @param userArticleId User article ID
+     */
+    public void createByUserArticle(String userArticleId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", INSERT_TIMELINE + " and ua.USA_ID_C = :userArticleId")
+                .setParameter("userArticleId", userArticleId)
+                .executeUpdate();
+    }
+
+    /**
+     * Adds the user articles of a subscription to the timeline.
+     *
+     * @param feedSubscription Feed subscription
+     */
+    public void createByFeedSubscription(FeedSubscription feedSubscription) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", INSERT_TIMELINE + " and fs.FES_ID_C = :feedSubscriptionId")
+                .setParameter("feedSubscriptionId", feedSubscription.getId())
+                .executeUpdate();
+    }
+
+    /**
+     * Updates the read state of a user article in the timeline.
+     *
+     * @param userArticleId User article ID
+     * @param unread True if the article is unread
+     */
+    public void updateUnread(String userArticleId, boolean unread) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "update T_TIMELINE set TIM_UNREAD_B = :unread where TIM_IDUSERARTICLE_C = :userArticleId")
+                .setParameter("unread", unread)
+                .setParameter("userArticleId", userArticleId)
+                .executeUpdate();
+    }
+
+    /**
+     * Updates the read state of a list of user articles in the timeline.
+     *
+     * @param userArticleIdList List of user article ID
+     * @param unread True if the articles are unread
+     */
+    public void updateUnread(List<String> userArticleIdList, boolean unread) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "update T_TIMELINE set TIM_UNREAD_B = :unread where TIM_IDUSERARTICLE_C in (:userArticleIdList)")
+                .setParameter("unread", unread)
+                .setParameter("userArticleIdList", userArticleIdList)
+                .executeUpdate();
+    }
+
+    /**
+     * Marks all articles of a user as read in the timeline.
+     *
+     * @param criteria User ID, and optionally feed subscription or category ID
+     */
+    public void markAsRead(UserArticleCriteria criteria) {
+        StringBuilder sb = new StringBuilder("update T_TIMELINE set TIM_UNREAD_B = :unread");
+        sb.append(" where TIM_IDUSER_C = :userId and TIM_UNREAD_B = :read ");
+        if (criteria.getFeedSubscriptionId() != null) {
+            sb.append(" and TIM_IDFEEDSUBSCRIPTION_C = :feedSubscriptionId ");
+        }
+        if (criteria.getCategoryId() != null) {
+            sb.append(" and TIM_IDCATEGORY_C = :categoryId ");
+        }
+        Query q = EntityManagerUtil.createNativeUpdate("T_TIMELINE", sb.toString())
+                .setParameter("unread", false)
+                .setParameter("read", true)
+                .setParameter("userId", criteria.getUserId());
+        if (criteria.getFeedSubscriptionId() != null) {
+            q.setParameter("feedSubscriptionId", criteria.getFeedSubscriptionId());
+        }
+        if (criteria.getCategoryId() != null) {
+            q.setParameter("categoryId", criteria.getCategoryId());
+        }
+        q.executeUpdate();
+    }
+
+    /**
+     * Moves the articles of a subscription to another category.
+     *
+     * @param feedSubscriptionId Feed subscription ID
+     * @param categoryId Category ID
+     */
+    public void updateCategory(String feedSubscriptionId, String categoryId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "update T_TIMELINE set TIM_IDCATEGORY_C = :categoryId where TIM_IDFEEDSUBSCRIPTION_C = :feedSubscriptionId")
+                .setParameter("categoryId", categoryId)
+                .setParameter("feedSubscriptionId", feedSubscriptionId)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes a user article from the timeline.
+     *
+     * @param userArticleId User article ID
+     */
+    public void deleteByUserArticle(String userArticleId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "delete from T_TIMELINE where TIM_IDUSERARTICLE_C = :userArticleId")
+                .setParameter("userArticleId", userArticleId)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes an article from all timelines.
+     *
+     * @param articleId Article ID
+     */
+    public void deleteByArticle(String articleId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "delete from T_TIMELINE where TIM_IDARTICLE_C = :articleId")
+                .setParameter("articleId", articleId)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes the articles of a subscription from the timeline.
+     *
+     * @param feedSubscriptionId Feed subscription ID
+     */
+    public void deleteByFeedSubscription(String feedSubscriptionId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "delete from T_TIMELINE where TIM_IDFEEDSUBSCRIPTION_C = :feedSubscriptionId")
+                .setParameter("feedSubscriptionId", feedSubscriptionId)
+                .executeUpdate();
+    }
+
+    /**
+     * Removes the timeline of a user.
+     *
+     * @param userId User ID
+     */
+    public void deleteByUser(String userId) {
+        EntityManagerUtil.createNativeUpdate("T_TIMELINE", "delete from T_TIMELINE where TIM_IDUSER_C = :userId")
+                .setParameter("userId", userId)
+                .executeUpdate();
+    }
+}
@@ -4,6 +4,8 @@ import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.dao.jpa.mapper.UserArticleMapper;
 import com.sismics.reader.core.model.jpa.UserArticle;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.jpa.SortCriteria;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
@@ -26,8 +28,22 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
     protected QueryParam getQueryParam(UserArticleCriteria criteria, FilterCriteria filterCriteria) {
         List<String> criteriaList = new ArrayList<String>();
         Map<String, Object> parameterMap = new HashMap<String, Object>();
-        StringBuilder sb = new StringBuilder("select ua.USA_ID_C, ua.USA_READDATE_D, ua.USA_STARREDDATE_D, f.FED_TITLE_C, fs.FES_ID_C, fs.FES_TITLE_C, a.ART_ID_C, a.ART_URL_C, a.ART_GUID_C, a.ART_TITLE_C, a.ART_CREATOR_C, a.ART_DESCRIPTION_C, a.ART_COMMENTURL_C, a.ART_COMMENTCOUNT_N, a.ART_ENCLOSUREURL_C, a.ART_ENCLOSURELENGTH_N, a.ART_ENCLOSURETYPE_C, a.ART_PUBLICATIONDATE_D");
-        if (criteria.isVisible()) {
+        StringBuilder sb = new StringBuilder("select ua.USA_ID_C, ua.USA_READDATE_D, ua.USA_STARREDDATE_D, f.FED_TITLE_C, fs.FES_ID_C, fs.FES_TITLE_C, a.ART_ID_C, a.ART_URL_C, a.ART_GUID_C, a.ART_TITLE_C, a.ART_CREATOR_C, ");
+        if (criteria.isSummary()) {
+            // The summary is precomputed, the description column is not read at all
+            sb.append("a.ART_SUMMARY_C, ");
+        } else {
+            sb.append("a.ART_DESCRIPTION_C, ");
+        }
+        sb.append("a.ART_COMMENTURL_C, a.ART_COMMENTCOUNT_N, a.ART_ENCLOSUREURL_C, a.ART_ENCLOSURELENGTH_N, a.ART_ENCLOSURETYPE_C, a.ART_PUBLICATIONDATE_D");
+        boolean timeline = criteria.isVisible() && criteria.isSubscribed() && !criteria.isStarred();
+        if (timeline) {
+            // Subscribed articles are listed from the timeline, which is filtered and sorted by its indexes
+            sb.append("  from T_TIMELINE t ");
+            sb.append("  join T_USER_ARTICLE ua on(ua.USA_ID_C = t.TIM_IDUSERARTICLE_C) ");
+            sb.append("  join T_ARTICLE a on(a.ART_ID_C = t.TIM_IDARTICLE_C) ");
+            criteriaList.add("t.TIM_IDUSER_C = :userId and ua.USA_DELETEDATE_D is null");
+        } else if (criteria.isVisible()) {
             if (criteria.isUnread() || criteria.isStarred()) {
                 sb.append("  from T_USER_ARTICLE ua ");
                 sb.append("  join T_ARTICLE a on(a.ART_ID_C = ua.USA_IDARTICLE_C) ");
@@ -56,7 +72,7 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             parameterMap.put("userId", criteria.getUserId());
         }
         if (criteria.getFeedId() != null) {
-            criteriaList.add("a.ART_IDFEED_C = :feedId");
+            criteriaList.add(timeline ? "t.TIM_IDFEED_C = :feedId" : "a.ART_IDFEED_C = :feedId");
             parameterMap.put("feedId", criteria.getFeedId());
         }
         if (criteria.getArticleId() != null) {
@@ -71,20 +87,36 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             criteriaList.add("ua.USA_ID_C = :userArticleId");
             parameterMap.put("userArticleId", criteria.getUserArticleId());
         }
+        if (criteria.getUserArticleIdIn() != null) {
+            criteriaList.add("ua.USA_ID_C IN (:userArticleIdIn)");
+            parameterMap.put("userArticleIdIn", criteria.getUserArticleIdIn());
+        }
         if (criteria.isSubscribed()) {
             criteriaList.add("fs.FES_ID_C is not null");
         }
         if (criteria.getCategoryId() != null) {
-            criteriaList.add("fs.FES_IDCATEGORY_C = :categoryId");
+            criteriaList.add(timeline ? "t.TIM_IDCATEGORY_C = :categoryId" : "fs.FES_IDCATEGORY_C = :categoryId");
             parameterMap.put("categoryId", criteria.getCategoryId());
         }
         if (criteria.isUnread()) {
-            criteriaList.add("(ua.USA_READDATE_D is null and ua.USA_ID_C is not null)");
+            if (timeline) {
+                criteriaList.add("t.TIM_UNREAD_B = :unread");
+                parameterMap.put("unread", true);
+            } else {
+                criteriaList.add("(ua.USA_READDATE_D is null and ua.USA_ID_C is not null)");
+            }
         }
         if (criteria.isStarred()) {
             criteriaList.add("ua.USA_STARREDDATE_D is not null");
         }
-        if (criteria.getArticlePublicationDateMax() != null && criteria.getArticleIdMax() != null) {
+        if (timeline && criteria.getArticlePublicationDateMax() != null && criteria.getArticleIdMax() != null) {
+            // Start the page after this article
+            criteriaList.add("(t.TIM_PUBLICATIONDATE_D < :articlePublicationDateMax or " +
+                    "  t.TIM_PUBLICATIONDATE_D = :articlePublicationDateMax and t.TIM_IDARTICLE_C < :articleIdMax" +
+                    ")");
+            parameterMap.put("articlePublicationDateMax", criteria.getArticlePublicationDateMax());
+            parameterMap.put("articleIdMax", criteria.getArticleIdMax());
+        } else if (criteria.getArticlePublicationDateMax() != null && criteria.getArticleIdMax() != null) {
             // Start the page after this article
             criteriaList.add("(a.ART_PUBLICATIONDATE_D < :articlePublicationDateMax or " +
                     "  a.ART_PUBLICATIONDATE_D = :articlePublicationDateMax and a.ART_ID_C < :articleIdMax" +
@@ -104,20 +136,33 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
         SortCriteria sortCriteria;
         if (criteria.isStarred()) {
             sortCriteria = new SortCriteria(" order by ua.USA_STARREDDATE_D desc, ua.USA_ID_C desc");
+        } else if (timeline) {
+            sortCriteria = new SortCriteria(" order by t.TIM_PUBLICATIONDATE_D desc, t.TIM_IDARTICLE_C desc");
         } else {
             sortCriteria = new SortCriteria(" order by a.ART_PUBLICATIONDATE_D desc, ua.USA_ID_C desc");
         }
 
-        return new QueryParam(sb.toString(), criteriaList, parameterMap, sortCriteria, filterCriteria, new UserArticleMapper());
+        return new QueryParam(sb.toString(), criteriaList, parameterMap, sortCriteria, filterCriteria, new UserArticleMapper(criteria.isSummary()));
     }
 
     /**
-     * Creates a new user article.
+     * Creates a new user article, and adds it to the timeline.
      * 
      * @param userArticle User article to create
      * @return New ID
      */
     public String create(UserArticle userArticle) {
+        return create(userArticle, true);
+    }
+
+    /**
+     * Creates a new user article.
+     * 
+     * @param userArticle User article to create
+     * @param addToTimeline False if the caller adds a batch of user articles to the timeline afterwards
+     * @return New ID
+     */
+    public String create(UserArticle userArticle, boolean addToTimeline) {
         // Create the UUID
         userArticle.setId(UUID.randomUUID().toString());
         
@@ -125,6 +170,11 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
         EntityManager em = ThreadLocalContext.get().getEntityManager();
         userArticle.setCreateDate(new Date());
         em.persist(userArticle);
+        if (addToTimeline) {
+            EntityManagerUtil.flush();
+            new TimelineDao().createByUserArticle(userArticle.getId());
+        }
+        UserVersionUtil.bump(userArticle.getUserId());
         
         return userArticle.getId();
     }
@@ -146,6 +196,10 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
         // Update the subscription
         userArticleFromDb.setReadDate(userArticle.getReadDate());
         userArticleFromDb.setStarredDate(userArticle.getStarredDate());
+
+        // Update the timeline
+        new TimelineDao().updateUnread(userArticle.getId(), userArticle.getReadDate() == null);
+        UserVersionUtil.bump(userArticleFromDb.getUserId());
         
         return userArticle;
     }
@@ -156,7 +210,6 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
      * @param criteria Deletion criteria
      */
     public void markAsRead(UserArticleCriteria criteria) {
-        EntityManager em = ThreadLocalContext.get().getEntityManager();
         
         StringBuilder sb = new StringBuilder("update T_USER_ARTICLE as ua set USA_READDATE_D = :readDate where ua.USA_ID_C in (");
         sb.append("  select ua2.USA_ID_C from T_USER_ARTICLE ua2 ");
@@ -173,7 +226,7 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             sb.append("    and fs.FES_IDCATEGORY_C = :categoryId ");
         }
         sb.append(" and ua2.USA_IDUSER_C = :userId and ua2.USA_DELETEDATE_D is null and ua2.USA_READDATE_D is null) ");
-        Query q = em.createNativeQuery(sb.toString())
+        Query q = EntityManagerUtil.createNativeUpdate("T_USER_ARTICLE", sb.toString())
                 .setParameter("userId", criteria.getUserId())
                 .setParameter("readDate", new Date());
         if (criteria.getFeedSubscriptionId() != null) {
@@ -183,6 +236,10 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             q.setParameter("categoryId", criteria.getCategoryId());
         }
         q.executeUpdate();
+
+        // Update the timeline
+        new TimelineDao().markAsRead(criteria);
+        UserVersionUtil.bump(criteria.getUserId());
     }
     
     /**
@@ -200,6 +257,10 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
 
         // Delete the subscription
         userArticleFromDb.setDeleteDate(new Date());
+
+        // Remove the article from the timeline
+        new TimelineDao().deleteByUserArticle(id);
+        UserVersionUtil.bump(userArticleFromDb.getUserId());
     }
     
     /**
@@ -220,4 +281,91 @@ public class UserArticleDao extends BaseDao<UserArticleDto, UserArticleCriteria>
             return null;
         }
     }
+
+    /**
+     * Returns the IDs of the active user articles among a list.
+     *
+     * @param idList List of user article ID
+     * @param userId User ID
+     * @return Set of existing user article ID
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> findExistingId(List<String> idList, String userId) {
+        if (idList.isEmpty()) {
+            return new HashSet<String>();
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        Query q = em.createNativeQuery("select ua.USA_ID_C from T_USER_ARTICLE ua where ua.USA_ID_C in (:idList) and ua.USA_IDUSER_C = :userId and ua.USA_DELETEDATE_D is null")
+                .setParameter("idList", idList)
+                .setParameter("userId", userId);
+        return new HashSet<String>((List<String>) q.getResultList());
+    }
+
+    /**
+     * Marks a list of user articles as read or unread, and updates the unread count of the affected subscriptions.
+     *
+     * @param idList List of user article ID
+     * @param userId User ID
+     * @param read True to mark as read, false to mark as unread
+     */
+    @SuppressWarnings("unchecked")
+    public void updateRead(List<String> idList, String userId, boolean read) {
+        if (idList.isEmpty()) {
+            return;
+        }
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        String readDateCriteria = read ? "USA_READDATE_D is null" : "USA_READDATE_D is not null";
+
+        // Count the articles which change state, by subscription
+        Query q = em.createNativeQuery("select fs.FES_ID_C, count(ua.USA_ID_C) from T_USER_ARTICLE ua " +
+                "  join T_ARTICLE a on (a.ART_ID_C = ua.USA_IDARTICLE_C and a.ART_DELETEDATE_D is null) " +
+                "  join T_FEED_SUBSCRIPTION fs on (fs.FES_IDFEED_C = a.ART_IDFEED_C and fs.FES_IDUSER_C = ua.USA_IDUSER_C and fs.FES_DELETEDATE_D is null) " +
+                "  where ua.USA_ID_C in (:idList) and ua.USA_IDUSER_C = :userId and ua.USA_DELETEDATE_D is null and ua." + readDateCriteria +
+                "  group by fs.FES_ID_C")
+                .setParameter("idList", idList)
+                .setParameter("userId", userId);
+        List<Object[]> unreadCountList = q.getResultList();
+
+        // Update the articles
+        q = EntityManagerUtil.createNativeUpdate("T_USER_ARTICLE", "update T_USER_ARTICLE set USA_READDATE_D = " + (read ? ":readDate" : "null") +
+                "  where USA_ID_C in (:idList) and USA_IDUSER_C = :userId and USA_DELETEDATE_D is null and " + readDateCriteria)
+                .setParameter("idList", idList)
+                .setParameter("userId", userId);
+        if (read) {
+            q.setParameter("readDate", new Date());
+        }
+        q.executeUpdate();
+        new TimelineDao().updateUnread(idList, !read);
+
+        // Update the subscriptions
+        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+        for (Object[] o : unreadCountList) {
+            int count = ((Number) o[1]).intValue();
+            feedSubscriptionDao.addUnreadCount((String) o[0], read ? -count : count);
+        }
+        UserVersionUtil.bump(userId);
+    }
+
+    /**
+     * Marks a list of user articles as starred or unstarred.
+     *
+     * @param idList List of user article ID
+     * @param userId User ID
+     * @param starred True to star, false to unstar
+     */
+    public void updateStarred(List<String> idList, String userId, boolean starred) {
+        if (idList.isEmpty()) {
+            return;
+        }
+        Query q = EntityManagerUtil.createNativeUpdate("T_USER_ARTICLE", "update T_USER_ARTICLE set USA_STARREDDATE_D = " + (starred ? ":starredDate" : "null") +
+                "  where USA_ID_C in (:idList) and USA_IDUSER_C = :userId and USA_DELETEDATE_D is null and " +
+                (starred ? "USA_STARREDDATE_D is null" : "USA_STARREDDATE_D is not null"))
+                .setParameter("idList", idList)
+                .setParameter("userId", userId);
+        if (starred) {
+            q.setParameter("starredDate", new Date());
+        }
+        q.executeUpdate();
+        UserVersionUtil.bump(userId);
+    }
 }
@@ -5,6 +5,7 @@ import com.sismics.reader.core.dao.jpa.criteria.UserCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserDto;
 import com.sismics.reader.core.dao.jpa.mapper.UserMapper;
 import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.util.AuthenticationUtil;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.BaseDao;
 import com.sismics.util.jpa.QueryParam;
@@ -129,6 +130,7 @@ public class UserDao extends BaseDao<UserDto, UserCriteria> {
 
         // Update the user
         userFromDb.setPassword(hashPassword(user.getPassword()));
+        AuthenticationUtil.invalidateUser(userFromDb.getId());
         
         return user;
     }
@@ -203,6 +205,7 @@ public class UserDao extends BaseDao<UserDto, UserCriteria> {
         em.createQuery("delete from AuthenticationToken at where at.userId = :userId")
                 .setParameter("userId", userFromDb.getId())
                 .executeUpdate();
+        AuthenticationUtil.invalidateUser(userFromDb.getId());
 
         em.createQuery("update UserArticle ua set ua.deleteDate = :dateNow where ua.userId = :userId and ua.deleteDate is null")
                 .setParameter("userId", userFromDb.getId())
@@ -218,6 +221,7 @@ public class UserDao extends BaseDao<UserDto, UserCriteria> {
                 .setParameter("userId", userFromDb.getId())
                 .setParameter("dateNow", dateNow)
                 .executeUpdate();
+        new TimelineDao().deleteByUser(userFromDb.getId());
     }
 
     /**
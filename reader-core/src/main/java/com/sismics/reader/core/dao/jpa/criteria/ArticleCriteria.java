@@ -39,6 +39,11 @@ public class ArticleCriteria {
      */
     private String feedId;
 
+    /**
+     * Lower bound of the article ID (exclusive).
+     */
+    private String idMin;
+
     /**
      * Getter of id.
      *
@@ -152,4 +157,23 @@ public class ArticleCriteria {
         this.feedId = feedId;
         return this;
     }
+
+    /**
+     * Getter of idMin.
+     *
+     * @return idMin
+     */
+    public String getIdMin() {
+        return idMin;
+    }
+
+    /**
+     * Setter of idMin.
+     *
+     * @param idMin idMin
+     */
+    public ArticleCriteria setIdMin(String idMin) {
+        this.idMin = idMin;
+        return this;
+    }
 }
@@ -64,6 +64,11 @@ public class UserArticleCriteria {
      */
     private String userArticleId;
 
+    /**
+     * User article ID (inclusive).
+     */
+    private List<String> userArticleIdIn;
+
     /**
      * Return only articles before this publication date.
      */
@@ -89,6 +94,11 @@ public class UserArticleCriteria {
      */
     private boolean fetchAllFeedSubscription;
 
+    /**
+     * Fetch only a summary of the article description.
+     */
+    private boolean summary;
+
     /**
      * Getter of userId.
      *
@@ -382,4 +392,42 @@ public class UserArticleCriteria {
         this.fetchAllFeedSubscription = fetchAllFeedSubscription;
         return this;
     }
+
+    /**
+     * Getter of userArticleIdIn.
+     *
+     * @return userArticleIdIn
+     */
+    public List<String> getUserArticleIdIn() {
+        return userArticleIdIn;
+    }
+
+    /**
+     * Setter of userArticleIdIn.
+     *
+     * @param userArticleIdIn userArticleIdIn
+     */
+    public UserArticleCriteria setUserArticleIdIn(List<String> userArticleIdIn) {
+        this.userArticleIdIn = userArticleIdIn;
+        return this;
+    }
+
+    /**
+     * Getter of summary.
+     *
+     * @return summary
+     */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    /**
+     * Setter of summary.
+     *
+     * @param summary summary
+     */
+    public UserArticleCriteria setSummary(boolean summary) {
+        this.summary = summary;
+        return this;
+    }
 }
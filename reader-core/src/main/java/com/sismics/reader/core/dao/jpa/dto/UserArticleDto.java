@@ -67,6 +67,11 @@ public class UserArticleDto {
      */
     private String articleDescription;
 
+    /**
+     * Article summary (plain text), set instead of the description.
+     */
+    private String articleSummary;
+
     /**
      * Comment URL.
      */
@@ -313,6 +318,24 @@ public class UserArticleDto {
         this.articleDescription = articleDescription;
     }
 
+    /**
+     * Getter of articleSummary.
+     *
+     * @return articleSummary
+     */
+    public String getArticleSummary() {
+        return articleSummary;
+    }
+
+    /**
+     * Setter of articleSummary.
+     *
+     * @param articleSummary articleSummary
+     */
+    public void setArticleSummary(String articleSummary) {
+        this.articleSummary = articleSummary;
+    }
+
     /**
      * Getter of articleCommentUrl.
      *
@@ -28,7 +28,7 @@ public class FeedSubscriptionMapper extends ResultMapper<FeedSubscriptionDto> {
         dto.setCategoryName(stringValue(o[i++]));
         Boolean folded = booleanValue(o[i++]);
         dto.setCategoryFolded(folded != null ? folded : false);
-        dto.setSynchronizationFailCount(((Number) o[i]).intValue());
+        dto.setSynchronizationFailCount(intValue(o[i]));
 
         return dto;
     }
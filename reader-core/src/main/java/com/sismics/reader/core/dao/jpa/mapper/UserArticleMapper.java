@@ -1,6 +1,7 @@
 package com.sismics.reader.core.dao.jpa.mapper;
 
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.util.sanitizer.SummarySanitizer;
 import com.sismics.util.jpa.ResultMapper;
 
 import java.sql.Timestamp;
@@ -9,6 +10,20 @@ import java.sql.Timestamp;
  * @author jtremeaux
  */
 public class UserArticleMapper extends ResultMapper<UserArticleDto> {
+    /**
+     * If true, the description column contains the summary of the article.
+     */
+    private boolean summary;
+
+    /**
+     * Constructor of UserArticleMapper.
+     *
+     * @param summary If true, maps the summary instead of the description
+     */
+    public UserArticleMapper(boolean summary) {
+        this.summary = summary;
+    }
+
     @Override
     public UserArticleDto map(Object[] o) {
         int i = 0;
@@ -30,7 +45,13 @@ public class UserArticleMapper extends ResultMapper<UserArticleDto> {
         dto.setArticleGuid(stringValue(o[i++]));
         dto.setArticleTitle(stringValue(o[i++]));
         dto.setArticleCreator(stringValue(o[i++]));
-        dto.setArticleDescription(stringValue(o[i++]));
+        String description = stringValue(o[i++]);
+        if (summary) {
+            // Summaries migrated from older versions contain the raw beginning of the description
+            dto.setArticleSummary(SummarySanitizer.sanitize(description));
+        } else {
+            dto.setArticleDescription(description);
+        }
         dto.setArticleCommentUrl(stringValue(o[i++]));
         dto.setArticleCommentCount(intValue(o[i++]));
         dto.setArticleEnclosureUrl(stringValue(o[i++]));
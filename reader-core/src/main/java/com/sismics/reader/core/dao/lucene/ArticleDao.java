@@ -1,13 +1,19 @@
 package com.sismics.reader.core.dao.lucene;
 
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.service.IndexShard;
+import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.ShardedIndex;
 import com.sismics.reader.core.util.LuceneUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.TermsFilter;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -16,18 +22,23 @@ import org.apache.lucene.search.SortField.Type;
 import org.apache.lucene.search.grouping.GroupDocs;
 import org.apache.lucene.search.grouping.GroupingSearch;
 import org.apache.lucene.search.grouping.TopGroups;
-import org.apache.lucene.search.postingshighlight.Passage;
-import org.apache.lucene.search.postingshighlight.PassageFormatter;
 import org.apache.lucene.search.postingshighlight.PassageScorer;
 import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 
+import java.io.IOException;
 import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Lucene Article DAO.
@@ -35,78 +46,292 @@ import java.util.Map;
  * @author bgamard
  */
 public class ArticleDao {
+    /**
+     * Length of the content highlighted as a whole, in characters.
+     */
+    private static final int HIGHLIGHT_MAX_LENGTH = 1000000;
 
     /**
-     * Destroy and rebuild index.
-     * 
-     * @param articleList The list of articles
+     * Maximum number of passages (sentences) highlighted in a whole content.
      */
-    public void rebuildIndex(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Empty index
-            indexWriter.deleteAll();
+    private static final int HIGHLIGHT_MAX_PASSAGES = 1000;
 
-            // Add all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.addDocument(document);
-            }
-        });
+    /**
+     * Length of the beginning of a description searched for snippets, in characters.
+     * Bounds the highlighting time of the long articles.
+     */
+    private static final int SNIPPET_MAX_LENGTH = 10000;
+
+    /**
+     * Add a chunk of articles to an index being rebuilt.
+     * The index also receives the updates made during the rebuild, the articles updated or deleted
+     * since the chunk may have been read are skipped, the index already has their latest version.
+     * The index is thread-safe, chunks can be added concurrently.
+     * 
+     * @param index Index being rebuilt
+     * @param articleList Articles
+     */
+    public void addDocuments(final ShardedIndex index, List<ArticleDto> articleList) throws IOException {
+        for (final ArticleDto article : articleList) {
+            index.writeRebuild(article.getId(), () -> {
+                // The articles older than the retention are not indexed
+                IndexWriter indexWriter = index.getIndexWriter(article.getPublicationDate());
+                if (indexWriter != null) {
+                    Document document = getDocument(article.getId(), article.getFeedId(), article.getUrl(), article.getPublicationDate(),
+                            article.getTitle(), article.getDescription());
+                    indexWriter.updateDocument(new Term("id", article.getId()), document);
+                }
+            });
+        }
     }
 
-    
     /**
-     * Add articles to the index.
+     * Apply a batch of index updates.
      * 
-     * @param articleList The list of articles
+     * @param indexingService Indexing service
+     * @param createList Articles to add
+     * @param updateList Articles to update
+     * @param deleteList Articles to delete
      */
-    public void create(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Add all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.addDocument(document);
+    public void apply(IndexingService indexingService, final List<Article> createList, final List<Article> updateList, final List<Article> deleteList) {
+        LuceneUtil.handle(indexingService, index -> {
+            // The created articles may already be in an index being rebuilt
+            for (Article article : createList) {
+                updateDocument(index, article);
+            }
+            for (Article article : updateList) {
+                updateDocument(index, article);
+            }
+            
+            // The publication date of an article doesn't change, it is deleted from the shard of its date
+            for (Article article : deleteList) {
+                deleteDocument(index, article);
             }
         });
     }
     
     /**
-     * Update index.
+     * Add or replace an article in the shard of its publication date.
      * 
-     * @param articleList Article list
+     * @param index Article index
+     * @param article Article
      */
-    public void update(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Update all articles
-            for (Article article : articleList) {
-                Document document = getDocumentFromArticle(article);
-                indexWriter.updateDocument(new Term("id", article.getId()), document);
+    private void updateDocument(final ShardedIndex index, final Article article) throws IOException {
+        index.writeUpdate(article.getId(), () -> {
+            // The articles older than the retention are not indexed
+            IndexWriter indexWriter = index.getIndexWriter(article.getPublicationDate());
+            if (indexWriter != null) {
+                indexWriter.updateDocument(new Term("id", article.getId()), getDocumentFromArticle(article));
             }
         });
     }
-
+    
     /**
-     * Delete index.
+     * Delete an article from the shard of its publication date, or from all shards if unknown.
      * 
-     * @param articleList Article list
+     * @param index Article index
+     * @param article Article
      */
-    public void delete(final List<Article> articleList) {
-        LuceneUtil.handle(indexWriter -> {
-            // Delete all articles
-            for (Article article : articleList) {
-                indexWriter.deleteDocuments(new Term("id", article.getId()));
+    private void deleteDocument(final ShardedIndex index, final Article article) throws IOException {
+        index.writeUpdate(article.getId(), () -> {
+            Term term = new Term("id", article.getId());
+            if (article.getPublicationDate() != null) {
+                IndexShard shard = index.getShard(ShardedIndex.getShardName(article.getPublicationDate()));
+                if (shard != null) {
+                    shard.onChanged();
+                    shard.getIndexWriter().deleteDocuments(term);
+                }
+            } else {
+                for (IndexShard shard : index.getShards()) {
+                    shard.onChanged();
+                    shard.getIndexWriter().deleteDocuments(term);
+                }
             }
         });
     }
 
     /**
      * Search articles.
+     * The shards are searched from the most recent one, until the page is filled, the results being sorted by date.
+     * The older shards are not searched at all, so the total number of results only counts the searched shards,
+     * and the list is marked as having more results if the page is filled before the last shard.
+     * The descriptions are returned as snippets around the matches, see {@link #highlight(String, String)} for the whole description.
+     * 
+     * @param paginatedList The list of articles
+     * @param searchQuery The query
+     * @param filter Filter on the documents searched, see {@link #getFeedFilter(Collection)}
+     * @param snippetCount Maximum number of passages in a snippet
+     * @param snippetLength Maximum length of a passage
+     * @return List of articles
+     */
+    public Map<String, Article> search(PaginatedList<UserArticleDto> paginatedList, String searchQuery, Filter filter,
+            int snippetCount, int snippetLength) throws Exception {
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        return search(indexingService.getIndex(), paginatedList, searchQuery, filter, snippetCount, snippetLength);
+    }
+    
+    /**
+     * Search articles in an index.
      * 
+     * @param index Article index
      * @param paginatedList The list of articles
      * @param searchQuery The query
+     * @param filter Filter on the documents searched, see {@link #getFeedFilter(Collection)}
+     * @param snippetCount Maximum number of passages in a snippet
+     * @param snippetLength Maximum length of a passage
      * @return List of articles
      */
-    public Map<String, Article> search(PaginatedList<UserArticleDto> paginatedList, String searchQuery) throws Exception {
+    public Map<String, Article> search(ShardedIndex index, PaginatedList<UserArticleDto> paginatedList, String searchQuery, Filter filter,
+            int snippetCount, int snippetLength) throws Exception {
+        Query query = getQuery(searchQuery);
+        SnippetPassageFormatter snippetFormatter = new SnippetPassageFormatter(snippetLength);
+        int end = paginatedList.getOffset() + paginatedList.getLimit();
+        
+        // Searching, the articles of a shard are all more recent than the ones of the next shards
+        Map<String, Article> articleList = new HashMap<String, Article>();
+        Set<String> urlSet = new HashSet<String>();
+        boolean hasMore = false;
+        for (IndexShard shard : index.getShards()) {
+            if (urlSet.size() >= end) {
+                // The page is full, the older shards may have more results but are not searched
+                hasMore = true;
+                break;
+            }
+            IndexSearcher searcher;
+            try {
+                searcher = shard.acquireSearcher();
+            } catch (AlreadyClosedException e) {
+                // The shard expired meanwhile
+                continue;
+            }
+            try {
+                // Grouping, an article published by several feeds may be in several shards and is only kept in the most recent one.
+                // The shard is searched again with more groups if these duplicates leave the page incomplete.
+                List<ScoreDoc> scoreDocList = new ArrayList<ScoreDoc>();
+                int groupCount = end - urlSet.size();
+                int groupIndex = 0;
+                GroupingSearch groupingSearch;
+                while (true) {
+                    groupingSearch = new GroupingSearch("url");
+                    groupingSearch.setGroupSort(new Sort(new SortField("date", Type.LONG, true)));
+                    groupingSearch.setFillSortFields(true);
+                    groupingSearch.setCachingInMB(20, true);
+                    groupingSearch.setAllGroups(true);
+                    TopGroups<BytesRef> topGroups = groupingSearch.search(searcher, filter, query, 0, groupCount);
+                    for (; groupIndex < topGroups.groups.length && urlSet.size() < end; groupIndex++) {
+                        GroupDocs<BytesRef> groupDocs = topGroups.groups[groupIndex];
+                        if (urlSet.add(groupDocs.groupValue.utf8ToString()) && urlSet.size() > paginatedList.getOffset()) {
+                            scoreDocList.add(groupDocs.scoreDocs[0]);
+                        }
+                    }
+                    if (urlSet.size() >= end || topGroups.groups.length < groupCount) {
+                        break;
+                    }
+                    groupCount *= 2;
+                }
+                addGroups(urlSet, groupingSearch.getAllMatchingGroups());
+                if (scoreDocList.isEmpty()) {
+                    continue;
+                }
+                ScoreDoc[] scoreDocs = scoreDocList.toArray(new ScoreDoc[scoreDocList.size()]);
+                TopDocs topDocs = new TopDocs(scoreDocs.length, scoreDocs, 0);
+                
+                // Highlighting, the whole title and snippets of the beginning of the description
+                String[] titles = new PostingsHighlighter(HIGHLIGHT_MAX_LENGTH, BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), new HighlightPassageFormatter())
+                        .highlight("title", query, searcher, topDocs, 3);
+                String[] descriptions = new PostingsHighlighter(SNIPPET_MAX_LENGTH, BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), snippetFormatter)
+                        .highlight("description", query, searcher, topDocs, snippetCount);
+                
+                // Extract article ids
+                for (int i = 0; i < scoreDocs.length; i++) {
+                    Document document = searcher.doc(scoreDocs[i].doc);
+                    String id = document.get("id");
+                    String description = descriptions[i];
+                    if (description == null && document.get("description") != null) {
+                        // Only the title matches
+                        description = snippetFormatter.getPrefix(document.get("description"));
+                    }
+                    Article article = new Article();
+                    article.setId(id);
+                    article.setTitle(titles[i]);
+                    article.setDescription(description);
+                    articleList.put(id, article);
+                }
+            } finally {
+                shard.releaseSearcher(searcher);
+            }
+        }
+        paginatedList.setResultCount(urlSet.size());
+        paginatedList.setHasMore(hasMore || urlSet.size() > end);
+        
+        return articleList;
+    }
+    
+    /**
+     * Adds the URLs of matching groups to a set.
+     * 
+     * @param urlSet Set of URL
+     * @param groups Groups
+     */
+    private void addGroups(Set<String> urlSet, Collection<BytesRef> groups) {
+        for (BytesRef group : groups) {
+            if (group != null) {
+                urlSet.add(group.utf8ToString());
+            }
+        }
+    }
+    
+    /**
+     * Highlight the whole title and description of an article.
+     * 
+     * @param id Article ID
+     * @param searchQuery The query
+     * @return Article with the highlighted title and description, null if not indexed
+     */
+    public Article highlight(String id, String searchQuery) throws Exception {
+        Query query = getQuery(searchQuery);
+        
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        for (IndexShard shard : indexingService.getIndex().getShards()) {
+            IndexSearcher searcher;
+            try {
+                searcher = shard.acquireSearcher();
+            } catch (AlreadyClosedException e) {
+                // The shard expired meanwhile
+                continue;
+            }
+            try {
+                TopDocs topDocs = searcher.search(new TermQuery(new Term("id", id)), 1);
+                if (topDocs.scoreDocs.length == 0) {
+                    continue;
+                }
+                
+                PostingsHighlighter highlighter = new PostingsHighlighter(HIGHLIGHT_MAX_LENGTH, BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), new HighlightPassageFormatter());
+                Map<String, String[]> highlights = highlighter.highlightFields(new String[] { "title", "description" }, query, searcher, topDocs, HIGHLIGHT_MAX_PASSAGES);
+                
+                // The fields without matches are returned as is
+                Document document = searcher.doc(topDocs.scoreDocs[0].doc);
+                String title = highlights.get("title")[0];
+                String description = highlights.get("description")[0];
+                Article article = new Article();
+                article.setId(id);
+                article.setTitle(title != null ? title : document.get("title"));
+                article.setDescription(description != null ? description : document.get("description"));
+                return article;
+            } finally {
+                shard.releaseSearcher(searcher);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Build the query on the title and description of the articles.
+     * 
+     * @param searchQuery The query
+     * @return Query
+     */
+    private Query getQuery(String searchQuery) throws Exception {
         // Escape query and add quotes so QueryParser generate a PhraseQuery
         searchQuery = "\"" + QueryParserUtil.escape(searchQuery) + "\"";
         
@@ -120,65 +345,22 @@ public class ArticleDao {
         BooleanQuery query = new BooleanQuery();
         query.add(titleQuery, Occur.SHOULD);
         query.add(descriptionQuery, Occur.SHOULD);
-        
-        // Grouping
-        GroupingSearch groupingSearch = new GroupingSearch("url");
-        groupingSearch.setGroupSort(new Sort(new SortField("date", Type.LONG, true)));
-        groupingSearch.setFillSortFields(true);
-        groupingSearch.setCachingInMB(20, true);
-        groupingSearch.setAllGroups(true);
-        
-        // Searching
-        IndexSearcher searcher = new IndexSearcher(AppContext.getInstance().getIndexingService().getDirectoryReader());
-        TopGroups<BytesRef> topGroups = groupingSearch.search(searcher, query, paginatedList.getOffset(), paginatedList.getLimit());
-        int total = topGroups.totalGroupCount == null ? 0 : topGroups.totalGroupCount;
-        paginatedList.setResultCount(total);
-        ScoreDoc[] scoreDocs = new ScoreDoc[topGroups.groups.length];
-        int j = 0;
-        for (GroupDocs<BytesRef> groupDocs : topGroups.groups) {
-            scoreDocs[j++] = groupDocs.scoreDocs[0];
-        }
-        TopDocs topDocs = new TopDocs(total, scoreDocs, 0);
-        
-        // Highlighting
-        PostingsHighlighter highlighter = new PostingsHighlighter(1000000, BreakIterator.getSentenceInstance(Locale.ROOT), new PassageScorer(), new PassageFormatter() {
-            @Override
-            public String format(Passage passages[], String content) {
-                StringBuilder sb = new StringBuilder();
-                int pos = 0;
-                for (Passage passage : passages) {
-                    for (int i = 0; i < passage.getNumMatches(); i++) {
-                        int start = passage.getMatchStarts()[i];
-                        int end = passage.getMatchEnds()[i];
-                        sb.append(content.substring(pos, start));
-                        sb.append("<span class=\"highlight\">");
-                        sb.append(content.substring(start, end));
-                        sb.append("</span>");
-                        pos = end;
-                    }
-                }
-                if (pos < content.length()) {
-                    sb.append(content.substring(pos));
-                }
-                return sb.toString();
-            }
-        });
-        Map<String, String[]> highlights = highlighter.highlightFields(new String[] { "title", "description" }, query, searcher, topDocs, 3);
-        
-        // Extract article ids
-        Map<String, Article> articleList = new HashMap<String, Article>();
-        for (int i = 0; i < scoreDocs.length; i++) {
-            String id = searcher.doc(scoreDocs[i].doc).get("id");
-            String title = highlights.get("title")[i];
-            String description = highlights.get("description")[i];
-            Article article = new Article();
-            article.setId(id);
-            article.setTitle(title);
-            article.setDescription(description);
-            articleList.put(id, article);
+        return query;
+    }
+    
+    /**
+     * Build a filter on the articles of some feeds.
+     * The filter caches its matches per index segment, it should be reused as long as the feeds are the same.
+     * 
+     * @param feedIdList Feed IDs
+     * @return Filter
+     */
+    public Filter getFeedFilter(Collection<String> feedIdList) {
+        List<Term> termList = new ArrayList<Term>();
+        for (String feedId : feedIdList) {
+            termList.add(new Term("feed_id", feedId));
         }
-        
-        return articleList;
+        return new CachingWrapperFilter(new TermsFilter(termList));
     }
     
     /**
@@ -188,17 +370,34 @@ public class ArticleDao {
      * @return Document
      */
     private org.apache.lucene.document.Document getDocumentFromArticle(Article article) {
+        return getDocument(article.getId(), article.getFeedId(), article.getUrl(), article.getPublicationDate(),
+                article.getTitle(), article.getDescription());
+    }
+
+    /**
+     * Build Lucene document from the fields of an article.
+     * 
+     * @param id Article ID
+     * @param feedId Feed ID
+     * @param url Article URL
+     * @param publicationDate Publication date
+     * @param title Title
+     * @param description Description
+     * @return Document
+     */
+    private org.apache.lucene.document.Document getDocument(String id, String feedId, String url, Date publicationDate, String title, String description) {
         // Index character offsets for the highlighter
         FieldType fieldType = new FieldType(TextField.TYPE_STORED);
         fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
         
         // Building document
         org.apache.lucene.document.Document document = new org.apache.lucene.document.Document();
-        document.add(new StringField("id", article.getId(), Field.Store.YES));
-        document.add(new StringField("url", article.getUrl(), Field.Store.YES));
-        document.add(new LongField("date", article.getPublicationDate().getTime(), Field.Store.YES));
-        document.add(new Field("title", article.getTitle(), fieldType));
-        document.add(new Field("description", article.getDescription(), fieldType));
+        document.add(new StringField("id", id, Field.Store.YES));
+        document.add(new StringField("feed_id", feedId, Field.Store.NO));
+        document.add(new StringField("url", url, Field.Store.YES));
+        document.add(new LongField("date", publicationDate.getTime(), Field.Store.YES));
+        document.add(new Field("title", title, fieldType));
+        document.add(new Field("description", description, fieldType));
         
         return document;
     }
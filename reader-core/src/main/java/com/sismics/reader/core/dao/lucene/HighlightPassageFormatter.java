@@ -0,0 +1,42 @@
+package com.sismics.reader.core.dao.lucene;
+
+import org.apache.lucene.search.postingshighlight.Passage;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+
+/**
+ * Passage formatter returning the whole content, with the matches highlighted.
+ *
+ * @author bgamard
+ */
+public class HighlightPassageFormatter extends PassageFormatter {
+    /**
+     * Start of a highlighted match.
+     */
+    static final String HIGHLIGHT_START = "<span class=\"highlight\">";
+
+    /**
+     * End of a highlighted match.
+     */
+    static final String HIGHLIGHT_END = "</span>";
+
+    @Override
+    public String format(Passage passages[], String content) {
+        StringBuilder sb = new StringBuilder();
+        int pos = 0;
+        for (Passage passage : passages) {
+            for (int i = 0; i < passage.getNumMatches(); i++) {
+                int start = passage.getMatchStarts()[i];
+                int end = passage.getMatchEnds()[i];
+                sb.append(content.substring(pos, start));
+                sb.append(HIGHLIGHT_START);
+                sb.append(content.substring(start, end));
+                sb.append(HIGHLIGHT_END);
+                pos = end;
+            }
+        }
+        if (pos < content.length()) {
+            sb.append(content.substring(pos));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.sismics.reader.core.dao.lucene;
+
+import org.apache.lucene.search.postingshighlight.Passage;
+import org.apache.lucene.search.postingshighlight.PassageFormatter;
+
+/**
+ * Passage formatter returning text snippets around the matches.
+ * The content is HTML, the tags are removed from the snippets so that a passage never cuts the markup.
+ *
+ * @author bgamard
+ */
+public class SnippetPassageFormatter extends PassageFormatter {
+    /**
+     * Separator of the passages, and marker of a cut content.
+     */
+    private static final String ELLIPSIS = "…";
+
+    /**
+     * Maximum length of a passage, in characters of the content.
+     */
+    private final int passageLength;
+
+    /**
+     * Constructor of SnippetPassageFormatter.
+     *
+     * @param passageLength Maximum length of a passage
+     */
+    public SnippetPassageFormatter(int passageLength) {
+        this.passageLength = passageLength;
+    }
+
+    @Override
+    public String format(Passage passages[], String content) {
+        StringBuilder sb = new StringBuilder();
+        int previousEnd = 0;
+        for (Passage passage : passages) {
+            int start = passage.getStartOffset();
+            int end = passage.getEndOffset();
+
+            // Keep the part of a long passage around its first match
+            if (end - start > passageLength) {
+                int firstMatchStart = passage.getNumMatches() > 0 ? passage.getMatchStarts()[0] : start;
+                start = Math.max(start, Math.min(firstMatchStart - passageLength / 2, end - passageLength));
+                end = start + passageLength;
+            }
+            start = skipTag(content, start, end);
+            end = cutTag(content, start, end);
+
+            if (start > previousEnd) {
+                sb.append(ELLIPSIS);
+            }
+            int pos = start;
+            for (int i = 0; i < passage.getNumMatches(); i++) {
+                int matchStart = passage.getMatchStarts()[i];
+                int matchEnd = passage.getMatchEnds()[i];
+                if (matchStart < pos || matchEnd > end) {
+                    continue;
+                }
+                sb.append(stripTags(content.substring(pos, matchStart)));
+                sb.append(HighlightPassageFormatter.HIGHLIGHT_START);
+                // The offsets of a match may include the adjacent tags
+                sb.append(content.substring(matchStart, matchEnd).replaceAll("<[^>]*>", "").trim());
+                sb.append(HighlightPassageFormatter.HIGHLIGHT_END);
+                pos = matchEnd;
+            }
+            sb.append(stripTags(content.substring(pos, end)));
+            previousEnd = end;
+        }
+        if (previousEnd < content.length()) {
+            sb.append(ELLIPSIS);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the beginning of a content, used when no passage matches.
+     *
+     * @param content Content
+     * @return Snippet
+     */
+    public String getPrefix(String content) {
+        int end = cutTag(content, 0, Math.min(content.length(), passageLength));
+        String prefix = stripTags(content.substring(0, end));
+        return end < content.length() ? prefix + ELLIPSIS : prefix;
+    }
+
+    /**
+     * Moves the start of a passage after the tag it cuts, if any.
+     *
+     * @param content Content
+     * @param start Start of the passage
+     * @param end End of the passage
+     * @return Start of the passage
+     */
+    private static int skipTag(String content, int start, int end) {
+        if (start == 0 || content.lastIndexOf('<', start - 1) <= content.lastIndexOf('>', start - 1)) {
+            return start;
+        }
+        int tagEnd = content.indexOf('>', start);
+        return tagEnd == -1 || tagEnd >= end ? end : tagEnd + 1;
+    }
+
+    /**
+     * Moves the end of a passage before the tag it cuts, if any.
+     *
+     * @param content Content
+     * @param start Start of the passage
+     * @param end End of the passage
+     * @return End of the passage
+     */
+    private static int cutTag(String content, int start, int end) {
+        int tagStart = content.lastIndexOf('<', end - 1);
+        if (tagStart < start) {
+            return end;
+        }
+        int tagEnd = content.indexOf('>', tagStart);
+        return tagEnd == -1 || tagEnd >= end ? tagStart : end;
+    }
+
+    /**
+     * Removes the tags of an HTML fragment.
+     *
+     * @param html HTML fragment without cut tags
+     * @return Text
+     */
+    private static String stripTags(String html) {
+        return html.replaceAll("<[^>]*>", " ").replaceAll("\\s+", " ");
+    }
+}
@@ -8,9 +8,33 @@ import com.google.common.base.Objects;
  * @author bgamard
  */
 public class RebuildIndexAsyncEvent {
+    /**
+     * ID of the user requesting the rebuild, owner of the progress job.
+     */
+    private String userId;
+    
+    /**
+     * Getter of userId.
+     *
+     * @return userId
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Setter of userId.
+     *
+     * @param userId userId
+     */
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
+                .add("userId", userId)
                 .toString();
     }
 }
@@ -0,0 +1,16 @@
+package com.sismics.reader.core.event;
+
+import com.google.common.base.Objects;
+
+/**
+ * Event requesting the repair of the unread counts of all subscriptions.
+ *
+ * @author jtremeaux
+ */
+public class ReconcileUnreadCountAsyncEvent {
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .toString();
+    }
+}
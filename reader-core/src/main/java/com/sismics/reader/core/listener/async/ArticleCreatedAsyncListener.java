@@ -1,15 +1,11 @@
 package com.sismics.reader.core.listener.async;
 
 import com.google.common.eventbus.Subscribe;
-import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.ArticleCreatedAsyncEvent;
-import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.context.AppContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.MessageFormat;
-import java.util.List;
-
 /**
  * Listener on newly created articles.
  * 
@@ -31,17 +27,8 @@ public class ArticleCreatedAsyncListener {
         if (log.isInfoEnabled()) {
             log.info("Articles created event: " + articlesCreatedAsyncEvent.toString());
         }
-        long startTime = System.currentTimeMillis();
-        
-        final List<Article> articleList = articlesCreatedAsyncEvent.getArticleList();
         
-        // Index new articles
-        ArticleDao articleDao = new ArticleDao();
-        articleDao.create(articleList);
-
-        long endTime = System.currentTimeMillis();
-        if (log.isInfoEnabled()) {
-            log.info(MessageFormat.format("Index updated in {0}ms", endTime - startTime));
-        }
+        // Queue the index updates, they are applied in batches
+        AppContext.getInstance().getIndexingService().getIndexingQueue().create(articlesCreatedAsyncEvent.getArticleList());
     }
 }
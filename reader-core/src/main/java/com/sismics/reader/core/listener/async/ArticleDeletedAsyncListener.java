@@ -1,13 +1,11 @@
 package com.sismics.reader.core.listener.async;
 
 import com.google.common.eventbus.Subscribe;
-import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.ArticleDeletedAsyncEvent;
+import com.sismics.reader.core.model.context.AppContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.MessageFormat;
-
 /**
  * Listener on deleted articles.
  * 
@@ -29,15 +27,8 @@ public class ArticleDeletedAsyncListener {
         if (log.isInfoEnabled()) {
             log.info("Deleted article event: " + articlesDeletedAsyncEvent.toString());
         }
-        long startTime = System.currentTimeMillis();
         
-        // Delete index
-        ArticleDao articleDao = new ArticleDao();
-        articleDao.delete(articlesDeletedAsyncEvent.getArticleList());
-
-        long endTime = System.currentTimeMillis();
-        if (log.isInfoEnabled()) {
-            log.info(MessageFormat.format("Index deleted in {0}ms", endTime - startTime));
-        }
+        // Queue the index updates, they are applied in batches
+        AppContext.getInstance().getIndexingService().getIndexingQueue().delete(articlesDeletedAsyncEvent.getArticleList());
     }
 }
@@ -5,10 +5,12 @@ import com.sismics.reader.core.dao.file.html.FaviconDownloader;
 import com.sismics.reader.core.event.FaviconUpdateRequestedEvent;
 import com.sismics.reader.core.model.jpa.Feed;
 import com.sismics.reader.core.util.DirectoryUtil;
+import com.sismics.reader.core.util.FaviconUtil;
 import com.sismics.reader.core.util.TransactionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.text.MessageFormat;
 
 /**
@@ -42,12 +44,16 @@ public class FaviconUpdateRequestedAsyncListener {
             String localFilename = null;
             if (feed.getUrl() != null) {
                 // Try with the feed URL if available
-                downloader.downloadFaviconFromPage(feed.getUrl(), faviconDirectory, feed.getId());
+                localFilename = downloader.downloadFaviconFromPage(feed.getUrl(), faviconDirectory, feed.getId());
             }
 
             if (localFilename == null) {
                 // If nothing is found, try again with the RSS URL
-                downloader.downloadFaviconFromPage(feed.getRssUrl(), faviconDirectory, feed.getId());
+                localFilename = downloader.downloadFaviconFromPage(feed.getRssUrl(), faviconDirectory, feed.getId());
+            }
+
+            if (localFilename != null) {
+                FaviconUtil.putFavicon(feed.getId(), new File(localFilename));
             }
         });
     }
@@ -1,18 +1,40 @@
 package com.sismics.reader.core.listener.async;
 
 import com.google.common.eventbus.Subscribe;
+import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.jpa.JobDao;
+import com.sismics.reader.core.dao.jpa.JobEventDao;
+import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.RebuildIndexAsyncEvent;
-import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.Job;
+import com.sismics.reader.core.model.jpa.JobEvent;
+import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.ShardedIndex;
 import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.jpa.PaginatedList;
+import com.sismics.reader.core.util.jpa.SortCriteria;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Listener on rebuild index.
- * 
+ * The articles are read in chunks ordered by ID, each chunk in its own transaction,
+ * and indexed by several threads into new shards, which replace the current ones when complete.
+ *
  * @author bgamard
  */
 public class RebuildIndexAsyncListener {
@@ -21,25 +43,164 @@ public class RebuildIndexAsyncListener {
      */
     private static final Logger log = LoggerFactory.getLogger(RebuildIndexAsyncListener.class);
 
+    /**
+     * Number of articles read at once.
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Number of chunks between two progress events.
+     */
+    private static final int PROGRESS_INTERVAL = 10;
+
+    /**
+     * Maximum number of indexing threads.
+     */
+    private static final int MAX_THREAD_COUNT = 4;
+
     /**
      * Rebuild articles index.
-     * 
+     *
      * @param rebuildIndexAsyncEvent Index rebuild event
      */
     @Subscribe
-    public void onArticleCreated(final RebuildIndexAsyncEvent rebuildIndexAsyncEvent) throws Exception {
+    public void onRebuildIndex(final RebuildIndexAsyncEvent rebuildIndexAsyncEvent) throws Exception {
         if (log.isInfoEnabled()) {
             log.info("Rebuild index event: " + rebuildIndexAsyncEvent.toString());
         }
-        
-        // Fetch all articles
+
+        final Job job = createJob(rebuildIndexAsyncEvent.getUserId());
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        final ArticleDao articleDao = new ArticleDao();
+
+        // The database is read by this thread while the previous chunks are indexed, the queue is bounded to limit the memory used
+        int threadCount = Math.min(MAX_THREAD_COUNT, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threadCount), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            final ShardedIndex rebuildIndex = indexingService.startRebuild();
+            List<Future<?>> futureList = new ArrayList<Future<?>>();
+            final AtomicInteger indexedCount = new AtomicInteger();
+            int articleCount = 0;
+            int chunkCount = 0;
+            String idMin = null;
+            PaginatedList<ArticleDto> chunk;
+            do {
+                chunk = readChunk(idMin);
+                final List<ArticleDto> articleList = chunk.getResultList();
+                if (!articleList.isEmpty()) {
+                    futureList.add(executor.submit(() -> {
+                        articleDao.addDocuments(rebuildIndex, articleList);
+                        indexedCount.addAndGet(articleList.size());
+                        return null;
+                    }));
+                    idMin = articleList.get(articleList.size() - 1).getId();
+                    articleCount += articleList.size();
+                }
+
+                // Fail fast on indexing errors
+                for (Iterator<Future<?>> iterator = futureList.iterator(); iterator.hasNext(); ) {
+                    Future<?> future = iterator.next();
+                    if (future.isDone()) {
+                        future.get();
+                        iterator.remove();
+                    }
+                }
+
+                if (++chunkCount % PROGRESS_INTERVAL == 0) {
+                    // The articles are not ordered by date, flush the buffers of all the shards to bound the memory used
+                    rebuildIndex.commit();
+                    createJobEvent(job, Constants.JOB_EVENT_REBUILD_INDEX_PROGRESS, String.valueOf(indexedCount.get()));
+                }
+            } while (chunk.isHasMore());
+
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+            indexingService.finishRebuild();
+            createJobEvent(job, Constants.JOB_EVENT_REBUILD_INDEX_PROGRESS, String.valueOf(articleCount));
+            log.info("Index rebuilt with {} articles", articleCount);
+        } catch (Exception e) {
+            log.error("Error rebuilding the index", e);
+            indexingService.abortRebuild();
+            createJobEvent(job, Constants.JOB_EVENT_REBUILD_INDEX_FAILURE, e.getMessage());
+        } finally {
+            executor.shutdownNow();
+            endJob(job);
+        }
+    }
+
+    /**
+     * Reads a chunk of articles in its own transaction.
+     *
+     * @param idMin ID of the last article read, null for the first chunk
+     * @return Chunk of articles
+     */
+    private PaginatedList<ArticleDto> readChunk(final String idMin) throws Exception {
+        final AtomicReference<PaginatedList<ArticleDto>> chunk = new AtomicReference<PaginatedList<ArticleDto>>();
         TransactionUtil.handle(() -> {
-            com.sismics.reader.core.dao.jpa.ArticleDao jpaArticleDao = new com.sismics.reader.core.dao.jpa.ArticleDao();
-            List<Article> articleList = jpaArticleDao.findAll();
+            PaginatedList<ArticleDto> paginatedList = new PaginatedList<ArticleDto>(CHUNK_SIZE, 0, true);
+            new com.sismics.reader.core.dao.jpa.ArticleDao().findByCriteria(paginatedList,
+                    new ArticleCriteria().setIdMin(idMin), new SortCriteria("  order by a.ART_ID_C asc"), null);
+            chunk.set(paginatedList);
+        });
+        if (chunk.get() == null) {
+            throw new Exception("Error reading the articles after " + idMin);
+        }
+        return chunk.get();
+    }
+
+    /**
+     * Creates the job following the rebuild progress.
+     *
+     * @param userId User ID
+     * @return Job, or null if the rebuild was not requested by a user
+     */
+    private Job createJob(final String userId) {
+        if (userId == null) {
+            return null;
+        }
+        final AtomicReference<Job> job = new AtomicReference<Job>();
+        TransactionUtil.handle(() -> {
+            Job newJob = new Job(userId, Constants.JOB_REBUILD_INDEX);
+            newJob.setStartDate(new Date());
+            new JobDao().create(newJob);
+
+            PaginatedList<ArticleDto> paginatedList = new PaginatedList<ArticleDto>(1, 0);
+            new com.sismics.reader.core.dao.jpa.ArticleDao().findByCriteria(paginatedList, new ArticleCriteria(), null, null);
+            new JobEventDao().create(new JobEvent(newJob.getId(), Constants.JOB_EVENT_REBUILD_INDEX_ARTICLE_COUNT,
+                    String.valueOf(paginatedList.getResultCount())));
+            job.set(newJob);
+        });
+        return job.get();
+    }
 
-            // Rebuild index
-            ArticleDao articleDao = new ArticleDao();
-            articleDao.rebuildIndex(articleList);
+    /**
+     * Creates a job event.
+     *
+     * @param job Job
+     * @param eventType Event type
+     * @param message Message
+     */
+    private void createJobEvent(final Job job, final String eventType, final String message) {
+        if (job == null) {
+            return;
+        }
+        TransactionUtil.handle(() -> new JobEventDao().create(new JobEvent(job.getId(), eventType, message)));
+    }
+
+    /**
+     * Ends a job.
+     *
+     * @param job Job
+     */
+    private void endJob(final Job job) {
+        if (job == null) {
+            return;
+        }
+        TransactionUtil.handle(() -> {
+            job.setEndDate(new Date());
+            new JobDao().update(job);
         });
     }
 }
@@ -0,0 +1,37 @@
+package com.sismics.reader.core.listener.async;
+
+import com.google.common.eventbus.Subscribe;
+import com.sismics.reader.core.event.ReconcileUnreadCountAsyncEvent;
+import com.sismics.reader.core.model.context.AppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener on unread counts reconciliation requests.
+ *
+ * @author jtremeaux
+ */
+public class ReconcileUnreadCountAsyncListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ReconcileUnreadCountAsyncListener.class);
+
+    /**
+     * Repairs the unread counts of all subscriptions.
+     *
+     * @param reconcileUnreadCountAsyncEvent Unread counts reconciliation event
+     */
+    @Subscribe
+    public void onReconcileUnreadCount(final ReconcileUnreadCountAsyncEvent reconcileUnreadCountAsyncEvent) throws Exception {
+        if (log.isInfoEnabled()) {
+            log.info("Reconcile unread count event: " + reconcileUnreadCountAsyncEvent.toString());
+        }
+
+        long startTime = System.currentTimeMillis();
+        AppContext.getInstance().getFeedService().reconcileAllUnreadCount();
+        if (log.isInfoEnabled()) {
+            log.info("Reconciled the unread counts in {}ms", System.currentTimeMillis() - startTime);
+        }
+    }
+}
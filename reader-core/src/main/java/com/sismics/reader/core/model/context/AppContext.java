@@ -7,8 +7,10 @@ import com.sismics.reader.core.dao.jpa.ConfigDao;
 import com.sismics.reader.core.listener.async.*;
 import com.sismics.reader.core.listener.sync.DeadEventListener;
 import com.sismics.reader.core.model.jpa.Config;
+import com.sismics.reader.core.service.AuthenticationTokenService;
 import com.sismics.reader.core.service.FeedService;
 import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.util.FaviconUtil;
 import com.sismics.util.EnvironmentUtil;
 
 import java.util.ArrayList;
@@ -59,6 +61,11 @@ public class AppContext {
      */
     private IndexingService indexingService;
 
+    /**
+     * Authentication token service.
+     */
+    private AuthenticationTokenService authenticationTokenService;
+
     /**
      * Asynchronous executors.
      */
@@ -75,8 +82,15 @@ public class AppContext {
         
         ConfigDao configDao = new ConfigDao();
         Config luceneStorageConfig = configDao.getById(ConfigType.LUCENE_DIRECTORY_STORAGE);
-        indexingService = new IndexingService(luceneStorageConfig != null ? luceneStorageConfig.getValue() : null);
+        Config luceneShardRetentionConfig = configDao.getById(ConfigType.LUCENE_SHARD_RETENTION);
+        indexingService = new IndexingService(luceneStorageConfig != null ? luceneStorageConfig.getValue() : null,
+                luceneShardRetentionConfig != null ? Integer.parseInt(luceneShardRetentionConfig.getValue()) : 0);
         indexingService.startAndWait();
+
+        authenticationTokenService = new AuthenticationTokenService();
+        authenticationTokenService.startAndWait();
+
+        FaviconUtil.load();
     }
     
     /**
@@ -93,6 +107,7 @@ public class AppContext {
         asyncEventBus.register(new ArticleUpdatedAsyncListener());
         asyncEventBus.register(new ArticleDeletedAsyncListener());
         asyncEventBus.register(new RebuildIndexAsyncListener());
+        asyncEventBus.register(new ReconcileUnreadCountAsyncListener());
         asyncEventBus.register(new FaviconUpdateRequestedAsyncListener());
 
         mailEventBus = newAsyncEventBus();
@@ -122,20 +137,41 @@ public class AppContext {
             return;
         }
         try {
-            for (ExecutorService executor : asyncExecutorList) {
-                // Shutdown executor, don't accept any more tasks (can cause error with nested events)
-                try {
-                    executor.shutdown();
-                    executor.awaitTermination(60, TimeUnit.SECONDS);
-                } catch (InterruptedException e) {
-                    // NOP
-                }
-            }
+            shutDownAsyncExecutors();
         } finally {
             resetEventBus();
         }
     }
 
+    /**
+     * Stops the services, when the application is shut down.
+     * The pending index updates are applied and committed, and the pending last connection dates are written.
+     * The next call to {@link #getInstance()} starts a new application context.
+     */
+    public void shutDown() {
+        // Stop synchronizing the feeds, then let the events already posted update the index
+        feedService.stopAndWait();
+        shutDownAsyncExecutors();
+        indexingService.stopAndWait();
+        authenticationTokenService.stopAndWait();
+        instance = null;
+    }
+
+    /**
+     * Waits for the asynchronous events in progress, the executors don't accept any more tasks.
+     */
+    private void shutDownAsyncExecutors() {
+        for (ExecutorService executor : asyncExecutorList) {
+            // Shutdown executor, don't accept any more tasks (can cause error with nested events)
+            try {
+                executor.shutdown();
+                executor.awaitTermination(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // NOP
+            }
+        }
+    }
+
     /**
      * Creates a new asynchronous event bus.
      * 
@@ -206,4 +242,13 @@ public class AppContext {
     public IndexingService getIndexingService() {
         return indexingService;
     }
+
+    /**
+     * Getter of authenticationTokenService.
+     *
+     * @return authenticationTokenService
+     */
+    public AuthenticationTokenService getAuthenticationTokenService() {
+        return authenticationTokenService;
+    }
 }
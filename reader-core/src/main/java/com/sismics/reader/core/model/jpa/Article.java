@@ -63,6 +63,12 @@ public class Article {
     @Column(name = "ART_DESCRIPTION_C")
     private String description;
 
+    /**
+     * Plain text summary of the description.
+     */
+    @Column(name = "ART_SUMMARY_C", length = 1000)
+    private String summary;
+
     /**
      * Comment URL.
      */
@@ -255,6 +261,24 @@ public class Article {
         this.description = description;
     }
 
+    /**
+     * Getter of summary.
+     *
+     * @return summary
+     */
+    public String getSummary() {
+        return summary;
+    }
+
+    /**
+     * Setter of summary.
+     *
+     * @param summary summary
+     */
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
     /**
      * Getter of commentUrl.
      *
@@ -2,11 +2,15 @@ package com.sismics.reader.core.model.jpa;
 
 import java.util.Date;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.google.common.base.Objects;
 
 /**
@@ -16,6 +20,8 @@ import com.google.common.base.Objects;
  */
 @Entity
 @Table(name = "T_CATEGORY")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "category")
 public class Category {
     /**
      * Category ID.
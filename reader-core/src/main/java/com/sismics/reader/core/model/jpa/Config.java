@@ -1,5 +1,6 @@
 package com.sismics.reader.core.model.jpa;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
@@ -7,6 +8,9 @@ import javax.persistence.Enumerated;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.google.common.base.Objects;
 import com.sismics.reader.core.constant.ConfigType;
 
@@ -17,6 +21,8 @@ import com.sismics.reader.core.constant.ConfigType;
  */
 @Entity
 @Table(name = "T_CONFIG")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "config")
 public class Config {
     /**
      * Configuration parameter ID.
@@ -1,7 +1,10 @@
 package com.sismics.reader.core.model.jpa;
 
 import com.google.common.base.Objects;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -15,6 +18,8 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "T_FEED")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "feed")
 public class Feed {
     /**
      * Feed ID.
@@ -71,6 +76,12 @@ public class Feed {
     @Column(name = "FED_LASTFETCHDATE_D")
     private Date lastFetchDate;
     
+    /**
+     * Number of failed synchronizations among the last 5 synchronizations.
+     */
+    @Column(name = "FED_SYNCFAILCOUNT_N", nullable = false)
+    private Integer synchronizationFailCount;
+    
     /**
      * Deletion date.
      */
@@ -239,6 +250,24 @@ public class Feed {
         this.lastFetchDate = lastFetchDate;
     }
 
+    /**
+     * Getter of synchronizationFailCount.
+     *
+     * @return synchronizationFailCount
+     */
+    public Integer getSynchronizationFailCount() {
+        return synchronizationFailCount;
+    }
+
+    /**
+     * Setter of synchronizationFailCount.
+     *
+     * @param synchronizationFailCount synchronizationFailCount
+     */
+    public void setSynchronizationFailCount(Integer synchronizationFailCount) {
+        this.synchronizationFailCount = synchronizationFailCount;
+    }
+
     /**
      * Getter of deleteDate.
      *
@@ -1,10 +1,14 @@
 package com.sismics.reader.core.model.jpa;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.google.common.base.Objects;
 
 /**
@@ -14,6 +18,8 @@ import com.google.common.base.Objects;
  */
 @Entity
 @Table(name = "T_LOCALE")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "locale")
 public class Locale {
     /**
      * Locale ID (ex: fr_FR).
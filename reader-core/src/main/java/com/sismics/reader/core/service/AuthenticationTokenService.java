@@ -0,0 +1,53 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.reader.core.dao.jpa.AuthenticationTokenDao;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication token service.
+ * Periodically writes the last connection dates of the authentication tokens.
+ *
+ * @author jtremeaux
+ */
+public class AuthenticationTokenService extends AbstractScheduledService {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationTokenService.class);
+
+    @Override
+    protected void startUp() throws Exception {
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        // Don't lose the last connections
+        runOneIteration();
+    }
+
+    @Override
+    protected void runOneIteration() {
+        // Don't let Guava manage our exceptions, or they will be swallowed and the
+        // service will silently stop
+        try {
+            TransactionUtil.handle(() -> {
+                int count = new AuthenticationTokenDao().flushLastConnectionDate();
+                if (log.isDebugEnabled() && count > 0) {
+                    log.debug("Last connection date updated for {} authentication tokens", count);
+                }
+            });
+        } catch (Throwable t) {
+            log.error("Error updating the last connection dates", t);
+        }
+    }
+
+    @Override
+    protected Scheduler scheduler() {
+        return Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.MINUTES);
+    }
+}
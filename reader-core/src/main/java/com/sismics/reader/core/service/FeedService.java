@@ -19,10 +19,12 @@ import com.sismics.reader.core.event.ArticleCreatedAsyncEvent;
 import com.sismics.reader.core.event.ArticleDeletedAsyncEvent;
 import com.sismics.reader.core.event.ArticleUpdatedAsyncEvent;
 import com.sismics.reader.core.event.FaviconUpdateRequestedEvent;
+import com.sismics.reader.core.event.ReconcileUnreadCountAsyncEvent;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.*;
 import com.sismics.reader.core.util.EntityManagerUtil;
 import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.http.ReaderHttpClient;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
@@ -46,6 +48,7 @@ import java.net.UnknownHostException;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Feed service.
@@ -58,6 +61,16 @@ public class FeedService extends AbstractScheduledService {
      */
     private static final Logger log = LoggerFactory.getLogger(FeedService.class);
 
+    /**
+     * Number of subscriptions reconciled at each iteration.
+     */
+    private static final int RECONCILE_BATCH_SIZE = 1000;
+
+    /**
+     * Last subscription reconciled, the next iteration starts after it.
+     */
+    private volatile String reconcileCursor;
+
     @Override
     protected void startUp() throws Exception {
     }
@@ -75,6 +88,11 @@ public class FeedService extends AbstractScheduledService {
         } catch (Throwable t) {
             log.error("Error synchronizing feeds", t);
         }
+        try {
+            TransactionUtil.handle(() -> reconcileUnreadCount());
+        } catch (Throwable t) {
+            log.error("Error reconciling unread counts", t);
+        }
     }
 
     @Override
@@ -84,6 +102,35 @@ public class FeedService extends AbstractScheduledService {
         return Scheduler.newFixedDelaySchedule(0, 10, TimeUnit.MINUTES);
     }
 
+    /**
+     * Repairs the unread counts of the next batch of subscriptions.
+     * The counts can drift when articles are read and fetched concurrently, this incrementally goes through all subscriptions.
+     */
+    public void reconcileUnreadCount() {
+        reconcileCursor = new FeedSubscriptionDao().reconcileUnreadCount(reconcileCursor, RECONCILE_BATCH_SIZE);
+    }
+
+    /**
+     * Requests the repair of the unread counts of all subscriptions, which is done asynchronously.
+     */
+    public void requestReconcileAllUnreadCount() {
+        AppContext.getInstance().getAsyncEventBus().post(new ReconcileUnreadCountAsyncEvent());
+    }
+
+    /**
+     * Repairs the unread counts of all subscriptions, each batch in its own transaction.
+     * Called asynchronously (see requestReconcileAllUnreadCount()) outside of a transactional context,
+     * so that a batch commits its counts before the next one starts and the locks are held for one batch only.
+     */
+    public void reconcileAllUnreadCount() {
+        final AtomicReference<String> cursor = new AtomicReference<>();
+        do {
+            // Stop if a batch fails, instead of retrying it forever
+            final String afterId = cursor.getAndSet(null);
+            TransactionUtil.handle(() -> cursor.set(new FeedSubscriptionDao().reconcileUnreadCount(afterId, RECONCILE_BATCH_SIZE)));
+        } while (cursor.get() != null);
+    }
+
     /**
      * Synchronize all feeds.
      */
@@ -128,6 +175,10 @@ public class FeedService extends AbstractScheduledService {
                 feedSynchronizationDao.create(feedSynchronization);
                 feedSynchronizationDao.deleteOldFeedSynchronization(feedSynchronization.getFeedId(), 600);
             }
+            EntityManagerUtil.flush();
+            for (FeedSynchronization feedSynchronization : feedSynchronizationList) {
+                feedDao.updateSynchronizationFailCount(feedSynchronization.getFeedId());
+            }
             TransactionUtil.commit();
         }
     }
@@ -149,12 +200,19 @@ public class FeedService extends AbstractScheduledService {
         List<Article> articleToRemove = getArticleToRemove(articleList);
         handleRemovedArticles(articleToRemove);
 
-        Feed feed = createOrUpdateFeed(newFeed);
+        Feed feed = new FeedDao().getByRssUrl(newFeed.getRssUrl());
+        List<String> oldFeedData = feed != null ? getFeedData(feed) : null;
+        feed = createOrUpdateFeed(feed, newFeed);
 
-        updateExistingArticles(feed, articleList);
+        boolean articleUpdated = updateExistingArticles(feed, articleList);
 
         createNewArticles(feed, articleList);
 
+        // Notify the subscribers once, only if the displayed data changed, the fetch date is updated at each synchronization
+        if (oldFeedData != null && (articleUpdated || !oldFeedData.equals(getFeedData(feed)))) {
+            UserVersionUtil.bumpByFeed(feed.getId());
+        }
+
         long endTime = System.currentTimeMillis();
         if (log.isInfoEnabled()) {
             log.info(MessageFormat.format("Synchronized feed at URL {0} in {1}ms, {2} articles added, {3} deleted", url,
@@ -193,10 +251,9 @@ public class FeedService extends AbstractScheduledService {
         }
     }
 
-    private Feed createOrUpdateFeed(Feed newFeed) {
+    private Feed createOrUpdateFeed(Feed feed, Feed newFeed) {
         FeedDao feedDao = new FeedDao();
         String rssUrl = newFeed.getRssUrl();
-        Feed feed = feedDao.getByRssUrl(rssUrl);
         if (feed == null) {
             feed = new Feed();
             feed.setUrl(newFeed.getUrl());
@@ -236,7 +293,17 @@ public class FeedService extends AbstractScheduledService {
         return feed;
     }
 
-    private void updateExistingArticles(Feed feed, List<Article> articleList) {
+    /**
+     * Returns the feed data displayed to the subscribers.
+     *
+     * @param feed Feed
+     * @return Feed data
+     */
+    private List<String> getFeedData(Feed feed) {
+        return Lists.newArrayList(feed.getUrl(), feed.getBaseUri(), feed.getTitle(), feed.getLanguage(), feed.getDescription());
+    }
+
+    private boolean updateExistingArticles(Feed feed, List<Article> articleList) {
         Map<String, Article> articleMap = new HashMap<>();
         for (Article article : articleList) {
             articleMap.put(article.getGuid(), article);
@@ -285,8 +352,10 @@ public class FeedService extends AbstractScheduledService {
                 ArticleUpdatedAsyncEvent articleUpdatedAsyncEvent = new ArticleUpdatedAsyncEvent();
                 articleUpdatedAsyncEvent.setArticleList(articleUpdatedList);
                 AppContext.getInstance().getAsyncEventBus().post(articleUpdatedAsyncEvent);
+                return true;
             }
         }
+        return false;
     }
 
     private void createNewArticles(Feed feed, List<Article> articleList) {
@@ -314,7 +383,7 @@ public class FeedService extends AbstractScheduledService {
                 UserArticle userArticle = new UserArticle();
                 userArticle.setArticleId(article.getId());
                 userArticle.setUserId(feedSubscription.getUserId());
-                userArticleDao.create(userArticle);
+                userArticleDao.create(userArticle, false);
 
                 feedSubscription.setUnreadUserArticleCount(feedSubscription.getUnreadUserArticleCount() + 1);
                 feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(),
@@ -322,6 +391,16 @@ public class FeedService extends AbstractScheduledService {
             }
         }
 
+        // Add the new articles to the subscribers timeline
+        if (!articleMap.isEmpty() && !feedSubscriptionList.isEmpty()) {
+            EntityManagerUtil.flush();
+            List<String> articleIdList = new ArrayList<>();
+            for (Article article : articleMap.values()) {
+                articleIdList.add(article.getId());
+            }
+            new TimelineDao().createByArticle(articleIdList);
+        }
+
         ArticleCreatedAsyncEvent articleCreatedAsyncEvent = new ArticleCreatedAsyncEvent();
         articleCreatedAsyncEvent.setArticleList(Lists.newArrayList(articleMap.values()));
         AppContext.getInstance().getAsyncEventBus().post(articleCreatedAsyncEvent);
@@ -497,7 +576,7 @@ public class FeedService extends AbstractScheduledService {
                 .setFeedId(feedSubscription.getFeedId());
 
         UserArticleDao userArticleDao = new UserArticleDao();
-        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(); // TODO we could fetch as many articles
+        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(null, null, true); // TODO we could fetch as many articles
         // as in the feed, not 10
         userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
         for (UserArticleDto userArticleDto : paginatedList.getResultList()) {
@@ -505,7 +584,7 @@ public class FeedService extends AbstractScheduledService {
                 UserArticle userArticle = new UserArticle();
                 userArticle.setArticleId(userArticleDto.getArticleId());
                 userArticle.setUserId(userId);
-                userArticleDao.create(userArticle);
+                userArticleDao.create(userArticle, false);
                 feedSubscription.setUnreadCount(feedSubscription.getUnreadCount() + 1);
             } else if (userArticleDto.getReadTimestamp() == null) {
                 feedSubscription.setUnreadCount(feedSubscription.getUnreadCount() + 1);
@@ -514,5 +593,9 @@ public class FeedService extends AbstractScheduledService {
 
         FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
         feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadCount());
+
+        // Add the articles of this subscription to the user timeline
+        EntityManagerUtil.flush();
+        new TimelineDao().createByFeedSubscription(feedSubscription);
     }
 }
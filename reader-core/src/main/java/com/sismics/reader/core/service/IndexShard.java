@@ -0,0 +1,276 @@
+package com.sismics.reader.core.service;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shard of the article index, containing the articles published during a month.
+ * The shard is closed when it is removed from its index and the searches in progress on it are done.
+ *
+ * @author bgamard
+ */
+public class IndexShard {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(IndexShard.class);
+
+    /**
+     * Name of the shard, the month of publication of its articles (yyyyMM).
+     */
+    private final String name;
+
+    /**
+     * Directory of the index files, unused by the RAM storage.
+     */
+    private final File file;
+
+    /**
+     * Lucene directory.
+     */
+    private final Directory directory;
+
+    /**
+     * Index writer of the shard.
+     */
+    private final IndexWriter indexWriter;
+
+    /**
+     * Near-real-time searchers, null if the shard is not searched.
+     */
+    private final SearcherManager searcherManager;
+
+    /**
+     * True if the shard has changes not committed yet.
+     */
+    private final AtomicBoolean uncommittedChanges = new AtomicBoolean();
+
+    /**
+     * True if the index writer is closed.
+     */
+    private boolean writerClosed;
+
+    /**
+     * Number of users of the shard: the index containing it, and the searches in progress.
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * True if the index files are deleted when the shard is released.
+     */
+    private volatile boolean deleteFiles;
+
+    /**
+     * Constructor of IndexShard.
+     *
+     * @param name Name of the shard
+     * @param file Directory of the index files
+     * @param directory Lucene directory
+     * @param config Index writer config
+     * @param refreshListener Listener of the searcher refreshes, null if the shard is not searched
+     */
+    IndexShard(String name, File file, Directory directory, IndexWriterConfig config, RefreshListener refreshListener) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.directory = directory;
+
+        // The lock can only be left by a previous instance that didn't shut down properly
+        if (IndexWriter.isLocked(directory)) {
+            log.warn("Unlocking Lucene directory of shard {}", name);
+            IndexWriter.unlock(directory);
+        }
+        indexWriter = new IndexWriter(directory, config);
+        if (refreshListener != null) {
+            indexWriter.commit();
+            searcherManager = new SearcherManager(indexWriter, true, null);
+            searcherManager.addListener(refreshListener);
+        } else {
+            searcherManager = null;
+        }
+    }
+
+    /**
+     * Marks the shard as changed, the changes are committed by the next {@link #commit()}.
+     */
+    public void onChanged() {
+        uncommittedChanges.set(true);
+    }
+
+    /**
+     * Commits the changes of the shard, if any.
+     */
+    public void commit() throws IOException {
+        if (uncommittedChanges.getAndSet(false)) {
+            indexWriter.commit();
+        }
+    }
+
+    /**
+     * Makes the changes visible to the next searchers.
+     */
+    public void maybeRefresh() throws IOException {
+        if (searcherManager != null) {
+            searcherManager.maybeRefresh();
+        }
+    }
+
+    /**
+     * Acquires an up to date index searcher, must be released after use.
+     * The shard stays open until the searcher is released, even if it is dropped meanwhile.
+     *
+     * @return Index searcher
+     * @throws AlreadyClosedException If the shard is closed
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new AlreadyClosedException("Shard " + name + " is closed");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        
+        try {
+            return searcherManager.acquire();
+        } catch (RuntimeException e) {
+            decRef();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases an index searcher.
+     *
+     * @param searcher Index searcher acquired by {@link #acquireSearcher()}
+     */
+    public void releaseSearcher(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            log.error("Error releasing the index searcher", e);
+        } finally {
+            decRef();
+        }
+    }
+
+    /**
+     * Closes the shard, the changes are committed.
+     * The directory is closed when the searches in progress are done.
+     */
+    void close() {
+        closeWriter();
+        decRef();
+    }
+
+    /**
+     * Closes the shard, the changes not committed are dropped.
+     * The directory is closed when the searches in progress are done, the open files stay readable meanwhile.
+     *
+     * @param deleteFiles True to delete the index files once the directory is closed
+     */
+    void rollback(boolean deleteFiles) {
+        this.deleteFiles = deleteFiles;
+        if (!writerClosed) {
+            writerClosed = true;
+            closeSearcherManager();
+            try {
+                indexWriter.rollback();
+            } catch (IOException e) {
+                log.error("Error rolling back the index writer of shard " + name, e);
+            }
+        }
+        decRef();
+    }
+
+    /**
+     * Closes the index writer and the searchers, the changes are committed.
+     * The directory stays open, e.g. to be copied into another index.
+     */
+    void closeWriter() {
+        if (writerClosed) {
+            return;
+        }
+        writerClosed = true;
+        closeSearcherManager();
+        try {
+            indexWriter.close();
+        } catch (IOException e) {
+            log.error("Error closing the index writer of shard " + name, e);
+        }
+    }
+
+    /**
+     * Releases a reference to the shard, the last one closes it.
+     */
+    private void decRef() {
+        if (refCount.decrementAndGet() != 0) {
+            return;
+        }
+        try {
+            directory.close();
+        } catch (IOException e) {
+            log.error("Error closing the Lucene directory of shard " + name, e);
+        }
+        if (deleteFiles) {
+            File[] indexFiles = file.listFiles();
+            if (indexFiles != null) {
+                for (File indexFile : indexFiles) {
+                    indexFile.delete();
+                }
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Closes the searcher manager, the current reader is closed when the searchers in use are released.
+     */
+    private void closeSearcherManager() {
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                log.error("Error closing the searcher manager of shard " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Getter of name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter of directory.
+     *
+     * @return directory
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Getter of indexWriter.
+     *
+     * @return indexWriter
+     */
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+}
@@ -0,0 +1,260 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.reader.core.dao.lucene.ArticleDao;
+import com.sismics.reader.core.model.jpa.Article;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queue of the pending index updates.
+ * Successive operations on the same article are coalesced, and the operations are applied in batches,
+ * when the queue is full or when the oldest operation has waited for the batch window.
+ *
+ * @author bgamard
+ */
+public class IndexingQueue {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(IndexingQueue.class);
+
+    /**
+     * Number of pending articles triggering a batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Maximum time an operation waits before its batch is applied, in milliseconds.
+     */
+    private static final long BATCH_WINDOW = 2000;
+
+    /**
+     * Index operation.
+     */
+    enum Operation {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    /**
+     * Pending operations, by article ID, in the order of their first submission.
+     */
+    private Map<String, PendingOperation> pendingMap = new LinkedHashMap<String, PendingOperation>();
+
+    /**
+     * Lock serializing the batches, so that the operations on an article are applied in order.
+     */
+    private final Object batchLock = new Object();
+
+    /**
+     * Indexing service of the updated index.
+     */
+    private final IndexingService indexingService;
+
+    /**
+     * True if the operations are applied immediately.
+     */
+    private final boolean synchronous;
+
+    /**
+     * Constructor of IndexingQueue.
+     *
+     * @param indexingService Indexing service of the updated index
+     * @param synchronous True to apply the operations immediately instead of in batches
+     */
+    public IndexingQueue(IndexingService indexingService, boolean synchronous) {
+        this.indexingService = indexingService;
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Adds new articles to the index.
+     *
+     * @param articleList Articles
+     */
+    public void create(List<Article> articleList) {
+        add(Operation.CREATE, articleList);
+    }
+
+    /**
+     * Updates articles in the index.
+     *
+     * @param articleList Articles
+     */
+    public void update(List<Article> articleList) {
+        add(Operation.UPDATE, articleList);
+    }
+
+    /**
+     * Removes articles from the index.
+     *
+     * @param articleList Articles
+     */
+    public void delete(List<Article> articleList) {
+        add(Operation.DELETE, articleList);
+    }
+
+    /**
+     * Queues an operation on articles.
+     *
+     * @param operation Operation
+     * @param articleList Articles
+     */
+    void add(Operation operation, List<Article> articleList) {
+        boolean full;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Article article : articleList) {
+                PendingOperation pending = pendingMap.get(article.getId());
+                if (pending == null) {
+                    pendingMap.put(article.getId(), new PendingOperation(operation, article, now));
+                } else {
+                    pending.merge(operation, article);
+                }
+            }
+            full = pendingMap.size() >= BATCH_SIZE;
+        }
+
+        if (full || synchronous) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies the pending operations if the oldest one has waited for the batch window.
+     */
+    public void flushIfDue() {
+        if (getLag() >= BATCH_WINDOW) {
+            flush();
+        }
+    }
+
+    /**
+     * Applies all the pending operations in one batch.
+     */
+    public void flush() {
+        synchronized (batchLock) {
+            Map<String, PendingOperation> batchMap;
+            synchronized (this) {
+                if (pendingMap.isEmpty()) {
+                    return;
+                }
+                batchMap = pendingMap;
+                pendingMap = new LinkedHashMap<String, PendingOperation>();
+            }
+
+            long startTime = System.currentTimeMillis();
+            List<Article> createList = new ArrayList<Article>();
+            List<Article> updateList = new ArrayList<Article>();
+            List<Article> deleteList = new ArrayList<Article>();
+            for (PendingOperation pending : batchMap.values()) {
+                switch (pending.operation) {
+                    case CREATE:
+                        createList.add(pending.article);
+                        break;
+                    case UPDATE:
+                        updateList.add(pending.article);
+                        break;
+                    case DELETE:
+                        deleteList.add(pending.article);
+                        break;
+                }
+            }
+            new ArticleDao().apply(indexingService, createList, updateList, deleteList);
+            indexingService.getTitleSuggester().apply(createList, updateList, deleteList);
+
+            if (log.isInfoEnabled()) {
+                log.info(MessageFormat.format("Index updated in {0}ms: {1} created, {2} updated, {3} deleted",
+                        System.currentTimeMillis() - startTime, createList.size(), updateList.size(), deleteList.size()));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of articles waiting to be indexed.
+     *
+     * @return Queue depth
+     */
+    public synchronized int getDepth() {
+        return pendingMap.size();
+    }
+
+    /**
+     * Returns the time the oldest pending operation has been waiting.
+     *
+     * @return Lag in milliseconds, 0 if the queue is empty
+     */
+    public synchronized long getLag() {
+        if (pendingMap.isEmpty()) {
+            return 0;
+        }
+        return System.currentTimeMillis() - pendingMap.values().iterator().next().date;
+    }
+
+    /**
+     * Returns the pending operation on an article.
+     *
+     * @param articleId Article ID
+     * @return Operation, or null if none
+     */
+    synchronized Operation getOperation(String articleId) {
+        PendingOperation pending = pendingMap.get(articleId);
+        return pending != null ? pending.operation : null;
+    }
+
+    /**
+     * Pending operation on an article.
+     */
+    private static class PendingOperation {
+        /**
+         * Operation to apply.
+         */
+        private Operation operation;
+
+        /**
+         * Latest version of the article.
+         */
+        private Article article;
+
+        /**
+         * Date of the first submission.
+         */
+        private final long date;
+
+        /**
+         * Constructor of PendingOperation.
+         *
+         * @param operation Operation
+         * @param article Article
+         * @param date Date of submission
+         */
+        private PendingOperation(Operation operation, Article article, long date) {
+            this.operation = operation;
+            this.article = article;
+            this.date = date;
+        }
+
+        /**
+         * Coalesces a new operation on the same article.
+         *
+         * @param newOperation New operation
+         * @param newArticle Latest version of the article
+         */
+        private void merge(Operation newOperation, Article newArticle) {
+            article = newArticle;
+            if (newOperation == Operation.DELETE) {
+                operation = Operation.DELETE;
+            } else if (operation != Operation.CREATE) {
+                // The article may already be in the index, replace it
+                operation = Operation.UPDATE;
+            }
+        }
+    }
+}
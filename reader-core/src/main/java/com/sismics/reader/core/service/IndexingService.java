@@ -1,22 +1,36 @@
 package com.sismics.reader.core.service;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractScheduledService;
+import com.sismics.reader.core.constant.ConfigType;
 import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.dao.lucene.ArticleDao;
 import com.sismics.reader.core.event.RebuildIndexAsyncEvent;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.Article;
 import com.sismics.reader.core.model.jpa.UserArticle;
+import com.sismics.reader.core.util.ConfigUtil;
 import com.sismics.reader.core.util.DirectoryUtil;
-import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
-import org.apache.lucene.index.DirectoryReader;
+import com.sismics.util.EnvironmentUtil;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.store.SimpleFSDirectory;
 import org.apache.lucene.store.SimpleFSLockFactory;
@@ -27,8 +41,17 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Indexing service.
@@ -42,69 +65,278 @@ public class IndexingService extends AbstractScheduledService {
     private static final Logger log = LoggerFactory.getLogger(IndexingService.class);
 
     /**
-     * Lucene directory.
+     * Time between two refreshes of the searchers, in seconds.
      */
-    private Directory directory;
+    private static final int REFRESH_INTERVAL = 1;
+
+    /**
+     * Time between two commits of the index, in seconds.
+     */
+    private static final int COMMIT_INTERVAL = 60;
+
+    /**
+     * Maximum number of cached subscription filters.
+     */
+    private static final int FEED_FILTER_CACHE_SIZE = 1000;
+
+    /**
+     * Maximum number of cached search result pages.
+     */
+    private static final int SEARCH_CACHE_SIZE = 1000;
+
+    /**
+     * Article index, partitioned by month of publication.
+     */
+    private ShardedIndex index;
+    
+    /**
+     * Date of the last commit.
+     */
+    private long lastCommitDate = System.currentTimeMillis();
+    
+    /**
+     * Lock of the index writers, the updates and the searcher refreshes share the read lock, the swap of a rebuilt index takes the write lock.
+     */
+    private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Index being rebuilt, also receives the updates made during the rebuild.
+     */
+    private volatile ShardedIndex rebuildIndex;
     
     /**
-     * Index reader.
+     * True if the index must be rebuilt, because it was written by a previous version.
      */
-    private DirectoryReader directoryReader;
+    private volatile boolean rebuildRequired;
+    
+    /**
+     * Subscriptions read by the searches and completions, by user ID.
+     * The subscriptions are read again when the version of the user data changes.
+     */
+    private final Cache<String, UserSubscriptions> subscriptionCache = CacheBuilder.newBuilder()
+            .maximumSize(FEED_FILTER_CACHE_SIZE)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    
+    /**
+     * Filters on the subscribed feeds, by user ID.
+     */
+    private final Cache<String, FeedFilter> feedFilterCache = CacheBuilder.newBuilder()
+            .maximumSize(FEED_FILTER_CACHE_SIZE)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+    
+    /**
+     * Search result pages, emptied when the searchers are refreshed.
+     */
+    private final Cache<SearchKey, SearchResult> searchCache = CacheBuilder.newBuilder()
+            .maximumSize(SEARCH_CACHE_SIZE)
+            .recordStats()
+            .build();
+    
+    /**
+     * Number of refreshes of the searchers, a search result is cached only if no refresh happened during the search.
+     */
+    private final AtomicLong searcherGeneration = new AtomicLong();
+    
+    /**
+     * Empties the search result cache when the searchers of a shard are refreshed.
+     */
+    private final RefreshListener refreshListener = new RefreshListener() {
+        @Override
+        public void beforeRefresh() {
+            // NOP
+        }
+        
+        @Override
+        public void afterRefresh(boolean didRefresh) {
+            if (didRefresh) {
+                onSearchersChanged();
+            }
+        }
+    };
+    
+    /**
+     * Queue of the pending index updates.
+     */
+    private IndexingQueue indexingQueue;
+    
+    /**
+     * Completion of the article titles.
+     */
+    private final TitleSuggester titleSuggester = new TitleSuggester();
+    
+    /**
+     * True if the recent titles are loaded in the suggester, the unit tests start from an empty database.
+     */
+    private boolean titleSuggesterLoaded = EnvironmentUtil.isUnitTest();
+    
+    /**
+     * Executor loading the titles in the suggester, the load reads all subscribed feeds and must not delay the index updates.
+     */
+    private ExecutorService titleSuggesterExecutor;
     
     /**
      * Lucene storage config.
      */
     private String luceneStorageConfig;
     
-    public IndexingService(String luceneStorageConfig) {
+    /**
+     * Number of months of articles kept in the index, 0 to keep all articles.
+     */
+    private int retentionMonthCount;
+    
+    /**
+     * Directory of the shard directories.
+     */
+    private File luceneDirectory;
+    
+    public IndexingService(String luceneStorageConfig, int retentionMonthCount) {
+        // The unit tests expect the index to be up to date when the event is processed
+        this(luceneStorageConfig, retentionMonthCount, DirectoryUtil.getLuceneDirectory(), EnvironmentUtil.isUnitTest());
+    }
+    
+    /**
+     * Constructor of IndexingService.
+     * 
+     * @param luceneStorageConfig Lucene storage config
+     * @param retentionMonthCount Number of months of articles kept in the index, 0 to keep all articles
+     * @param luceneDirectory Directory of the shard directories
+     * @param synchronousQueue True to apply the index updates immediately instead of in batches
+     */
+    IndexingService(String luceneStorageConfig, int retentionMonthCount, File luceneDirectory, boolean synchronousQueue) {
         this.luceneStorageConfig = luceneStorageConfig;
+        this.retentionMonthCount = retentionMonthCount;
+        this.luceneDirectory = luceneDirectory;
+        indexingQueue = new IndexingQueue(this, synchronousQueue);
     }
 
     @Override
     protected void startUp() {
+        index = new ShardedIndex(luceneStorageConfig, luceneDirectory, retentionMonthCount, refreshListener);
+        try {
+            rebuildRequired = index.open();
+        } catch (IOException e) {
+            log.error("Error opening the Lucene index", e);
+        }
+        expireShards();
+        titleSuggesterExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Opens a Lucene directory.
+     * The file directories other than FILE don't synchronize the concurrent reads of a file:
+     * MMAP maps the files in memory (best on 64-bit JVMs), NIO uses positional reads (not on Windows).
+     * 
+     * @param luceneStorageConfig Lucene storage config, RAM by default
+     * @param file Directory of the index files, unused by the RAM storage
+     * @return Lucene directory
+     */
+    static Directory openDirectory(String luceneStorageConfig, File file) throws IOException {
+        if (Constants.LUCENE_DIRECTORY_STORAGE_FILE.equals(luceneStorageConfig)) {
+            log.info("Using file Lucene storage: {}", file);
+            return new SimpleFSDirectory(file, new SimpleFSLockFactory());
+        } else if (Constants.LUCENE_DIRECTORY_STORAGE_MMAP.equals(luceneStorageConfig)) {
+            log.info("Using memory-mapped file Lucene storage: {}", file);
+            return new MMapDirectory(file, new SimpleFSLockFactory());
+        } else if (Constants.LUCENE_DIRECTORY_STORAGE_NIO.equals(luceneStorageConfig)) {
+            log.info("Using NIO file Lucene storage: {}", file);
+            return new NIOFSDirectory(file, new SimpleFSLockFactory());
+        }
+        
         // RAM directory storage by default
-        if (luceneStorageConfig == null || luceneStorageConfig.equals(Constants.LUCENE_DIRECTORY_STORAGE_RAM)) {
-            directory = new RAMDirectory();
-            log.info("Using RAM Lucene storage");
-        } else if (luceneStorageConfig.equals(Constants.LUCENE_DIRECTORY_STORAGE_FILE)) {
-            File luceneDirectory = DirectoryUtil.getLuceneDirectory();
-            log.info("Using file Lucene storage: {}", luceneDirectory);
-            try {
-                directory = new SimpleFSDirectory(luceneDirectory, new SimpleFSLockFactory());
-            } catch (IOException e) {
-                log.error("Error initializing Lucene index", e);
-            }
+        if (luceneStorageConfig != null && !luceneStorageConfig.equals(Constants.LUCENE_DIRECTORY_STORAGE_RAM)) {
+            log.warn("Unknown Lucene storage {}, using RAM", luceneStorageConfig);
         }
+        log.info("Using RAM Lucene storage");
+        return new RAMDirectory();
     }
 
+    /**
+     * Applies the pending index updates and commits the index.
+     * Called when the application is shut down, see {@link AppContext#shutDown()}.
+     */
     @Override
     protected void shutDown() {
-        if (directoryReader != null) {
-            try {
-                directoryReader.close();
-            } catch (IOException e) {
-                log.error("Error closing the index reader", e);
-            }
+        titleSuggesterExecutor.shutdownNow();
+        try {
+            indexingQueue.flush();
+        } catch (Throwable t) {
+            log.error("Error applying the pending index updates", t);
         }
-        if (directory != null) {
-            try {
-                directory.close();
-            } catch (IOException e) {
-                log.error("Error closing Lucene index", e);
-            }
+        if (rebuildIndex != null) {
+            abortRebuild();
         }
+        index.close();
     }
     
     @Override
     protected void runOneIteration() throws Exception {
-        TransactionUtil.handle(() -> {
-            // NOP
-        });
+        try {
+            indexingQueue.flushIfDue();
+            onIndexChanged();
+            expireShards();
+            if (rebuildRequired) {
+                rebuildRequired = false;
+                rebuildIndex(null);
+            }
+            if (!titleSuggesterLoaded) {
+                titleSuggesterLoaded = true;
+                titleSuggesterExecutor.execute(() -> {
+                    try {
+                        titleSuggester.load();
+                    } catch (Throwable t) {
+                        log.error("Error loading the title suggester", t);
+                    }
+                });
+            }
+            if (System.currentTimeMillis() - lastCommitDate >= TimeUnit.SECONDS.toMillis(COMMIT_INTERVAL)) {
+                commit();
+            }
+        } catch (Throwable t) {
+            log.error("Error refreshing the index", t);
+        }
     }
     
     @Override
     protected Scheduler scheduler() {
-        return Scheduler.newFixedDelaySchedule(0, 1, TimeUnit.HOURS);
+        return Scheduler.newFixedDelaySchedule(REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Commits the changes of the index, if any.
+     */
+    public void commit() throws IOException {
+        lastCommitDate = System.currentTimeMillis();
+        index.commit();
+    }
+    
+    /**
+     * Drops the shards older than the retention.
+     * The shards are dropped as whole directories, without deleting their articles one by one.
+     */
+    private void expireShards() {
+        List<String> expiredShardNameList = index.getExpiredShardNames();
+        if (expiredShardNameList.isEmpty()) {
+            return;
+        }
+        indexLock.writeLock().lock();
+        try {
+            for (String name : expiredShardNameList) {
+                index.dropShard(name);
+            }
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        onSearchersChanged();
+    }
+    
+    /**
+     * Empties the search result cache, the searchers see new changes.
+     */
+    private void onSearchersChanged() {
+        searcherGeneration.incrementAndGet();
+        searchCache.invalidateAll();
     }
     
     /**
@@ -117,11 +349,36 @@ public class IndexingService extends AbstractScheduledService {
      * @return List of articles
      */
     public PaginatedList<UserArticleDto> searchArticles(String userId, String searchQuery, Integer offset, Integer limit) throws Exception {
-        // Search articles
-        ArticleDao articleDao = new ArticleDao();
         PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, offset);
-        Map<String, Article> articleMap = null;
-        articleMap = articleDao.search(paginatedList, searchQuery);
+        
+        // Only the articles of the subscribed feeds are searched
+        Set<String> feedIdSet = new HashSet<String>();
+        for (FeedSubscriptionDto feedSubscription : getFeedSubscriptionList(userId)) {
+            feedIdSet.add(feedSubscription.getFeedId());
+        }
+        if (feedIdSet.isEmpty()) {
+            paginatedList.setResultList(new ArrayList<UserArticleDto>());
+            return paginatedList;
+        }
+        
+        // Search articles, repeated searches are served from the cache until the index changes
+        Filter filter = getFeedFilter(userId, feedIdSet);
+        SearchKey searchKey = new SearchKey(userId, searchQuery, paginatedList.getOffset(), paginatedList.getLimit(), filter);
+        SearchResult searchResult = searchCache.getIfPresent(searchKey);
+        Map<String, Article> articleMap;
+        if (searchResult != null) {
+            paginatedList.setResultCount(searchResult.resultCount);
+            paginatedList.setHasMore(searchResult.hasMore);
+            articleMap = searchResult.articleMap;
+        } else {
+            long generation = searcherGeneration.get();
+            articleMap = new ArticleDao().search(paginatedList, searchQuery, filter,
+                    ConfigUtil.getConfigIntegerValue(ConfigType.SEARCH_SNIPPET_COUNT),
+                    ConfigUtil.getConfigIntegerValue(ConfigType.SEARCH_SNIPPET_LENGTH));
+            if (generation == searcherGeneration.get()) {
+                searchCache.put(searchKey, new SearchResult(paginatedList.getResultCount(), paginatedList.isHasMore(), articleMap));
+            }
+        }
         
         if (articleMap.size() > 0) {
             // Get linked UserArticle from database
@@ -131,7 +388,7 @@ public class IndexingService extends AbstractScheduledService {
                     .setArticleIdIn(Lists.newArrayList(articleMap.keySet()));
             
             UserArticleDao userArticleDao = new UserArticleDao();
-            PaginatedList<UserArticleDto> userArticledList = PaginatedLists.create(paginatedList.getLimit(), 0);
+            PaginatedList<UserArticleDto> userArticledList = PaginatedLists.create(paginatedList.getLimit(), 0, true);
             userArticleDao.findByCriteria(userArticledList, userArticleCriteria, null, null);
             paginatedList.setResultList(userArticledList.getResultList());
             
@@ -162,53 +419,322 @@ public class IndexingService extends AbstractScheduledService {
         return paginatedList;
     }
     
+    /**
+     * Highlights the whole title and description of an article found by a search.
+     * 
+     * @param articleId Article ID
+     * @param searchQuery The query
+     * @return Article with the highlighted title and description, null if not indexed
+     */
+    public Article highlightArticle(String articleId, String searchQuery) throws Exception {
+        return new ArticleDao().highlight(articleId, searchQuery);
+    }
+    
+    /**
+     * Returns the subscriptions of a user, without reading the database while the user data doesn't change.
+     * The returned list is shared and must not be modified.
+     * 
+     * @param userId User ID
+     * @return Feed subscriptions
+     */
+    public List<FeedSubscriptionDto> getFeedSubscriptionList(String userId) {
+        // Read the version first, a concurrent change bumps it after the subscriptions are read
+        String version = UserVersionUtil.getVersion(userId);
+        UserSubscriptions userSubscriptions = subscriptionCache.getIfPresent(userId);
+        if (userSubscriptions == null || !userSubscriptions.version.equals(version)) {
+            userSubscriptions = new UserSubscriptions(version,
+                    new FeedSubscriptionDao().findByCriteria(new FeedSubscriptionCriteria().setUserId(userId)));
+            subscriptionCache.put(userId, userSubscriptions);
+        }
+        return userSubscriptions.feedSubscriptionList;
+    }
+    
+    /**
+     * Returns the filter on the subscribed feeds of a user.
+     * The filter is reused while the subscriptions don't change, so that its matches stay cached.
+     * 
+     * @param userId User ID
+     * @param feedIdSet IDs of the subscribed feeds
+     * @return Filter
+     */
+    private Filter getFeedFilter(String userId, Set<String> feedIdSet) {
+        FeedFilter feedFilter = feedFilterCache.getIfPresent(userId);
+        if (feedFilter == null || !feedFilter.feedIdSet.equals(feedIdSet)) {
+            feedFilter = new FeedFilter(feedIdSet, new ArticleDao().getFeedFilter(feedIdSet));
+            feedFilterCache.put(userId, feedFilter);
+        }
+        return feedFilter.filter;
+    }
+    
     /**
      * Destroy and rebuild Lucene index.
+     * The index is rebuilt in the background, the current index is searched until the new one is ready.
      * 
+     * @param userId ID of the user requesting the rebuild
      */
-    public void rebuildIndex() throws Exception {
+    public void rebuildIndex(String userId) throws Exception {
         RebuildIndexAsyncEvent rebuildIndexAsyncEvent = new RebuildIndexAsyncEvent();
+        rebuildIndexAsyncEvent.setUserId(userId);
         AppContext.getInstance().getAsyncEventBus().post(rebuildIndexAsyncEvent);
     }
-
+    
     /**
-     * Getter of directory.
-     *
-     * @return the directory
+     * Starts the rebuild of the index into fresh directories.
+     * From now on, the index updates are applied to both indexes.
+     * 
+     * @return Index being rebuilt
      */
-    public Directory getDirectory() {
-        return directory;
+    public synchronized ShardedIndex startRebuild() throws IOException {
+        if (rebuildIndex != null) {
+            throw new IllegalStateException("The index is already being rebuilt");
+        }
+        
+        // Delete the leftovers of an interrupted rebuild
+        ShardedIndex newIndex = new ShardedIndex(luceneStorageConfig, DirectoryUtil.getLuceneRebuildDirectory(), retentionMonthCount, null);
+        newIndex.delete();
+        
+        indexLock.writeLock().lock();
+        try {
+            rebuildIndex = newIndex;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        return newIndex;
     }
     
     /**
-     * Returns a valid directory reader.
-     * Take care of reopening the reader if the index has changed
-     * and closing the previous one.
-     *
-     * @return the directoryReader
+     * Replaces the content of the index by the rebuilt one, shard by shard.
+     * The searchers see the old index until the swap is complete, then the new one.
      */
-    public DirectoryReader getDirectoryReader() {
-        if (directoryReader == null) {
-            if (!DirectoryReader.indexExists(directory)) {
-                log.info("Lucene directory not yet created");
-                return null;
-            }
-            try {
-                directoryReader = DirectoryReader.open(directory);
-            } catch (IOException e) {
-                log.error("Error creating the directory reader", e);
+    public synchronized void finishRebuild() throws IOException {
+        // Flush the bulk of the new index without blocking the updates
+        ShardedIndex newIndex = rebuildIndex;
+        newIndex.commit();
+        
+        indexLock.writeLock().lock();
+        try {
+            rebuildIndex = null;
+            Set<String> shardNameSet = new HashSet<String>();
+            for (IndexShard newShard : newIndex.getShards()) {
+                newShard.closeWriter();
+                IndexWriter indexWriter = index.getIndexWriter(newShard.getName());
+                if (indexWriter != null) {
+                    indexWriter.deleteAll();
+                    indexWriter.addIndexes(newShard.getDirectory());
+                    shardNameSet.add(newShard.getName());
+                }
             }
-        } else {
-            try {
-                DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
-                if (newReader != null) {
-                    directoryReader.close();
-                    directoryReader = newReader;
+            
+            // The months without articles anymore are dropped
+            for (IndexShard shard : index.getShards()) {
+                if (!shardNameSet.contains(shard.getName())) {
+                    index.dropShard(shard.getName());
                 }
-            } catch (IOException e) {
-                log.error("Error while reopening the directory reader", e);
             }
+            index.commit();
+            lastCommitDate = System.currentTimeMillis();
+            
+            // Switch all searchers to the new shards before releasing the lock
+            index.maybeRefresh();
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        onSearchersChanged();
+        
+        newIndex.delete();
+    }
+    
+    /**
+     * Drops the index being rebuilt, the current index is kept.
+     */
+    public synchronized void abortRebuild() {
+        ShardedIndex newIndex;
+        indexLock.writeLock().lock();
+        try {
+            newIndex = rebuildIndex;
+            rebuildIndex = null;
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+        if (newIndex != null) {
+            newIndex.delete();
+        }
+    }
+    
+    /**
+     * Returns the article index, shared by all index updates.
+     * The changes are committed periodically.
+     *
+     * @return Article index
+     */
+    public ShardedIndex getIndex() {
+        return index;
+    }
+    
+    /**
+     * Returns the index being rebuilt.
+     *
+     * @return Index being rebuilt, or null if the index is not being rebuilt
+     */
+    public ShardedIndex getRebuildIndex() {
+        return rebuildIndex;
+    }
+    
+    /**
+     * Returns the lock of the index writers.
+     * The read lock must be held while writing to the index.
+     *
+     * @return Lock
+     */
+    public ReadWriteLock getIndexLock() {
+        return indexLock;
+    }
+    
+    /**
+     * Returns the statistics of the search result cache.
+     *
+     * @return Cache statistics
+     */
+    public CacheStats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+    
+    /**
+     * Getter of indexingQueue.
+     *
+     * @return indexingQueue
+     */
+    public IndexingQueue getIndexingQueue() {
+        return indexingQueue;
+    }
+    
+    /**
+     * Getter of titleSuggester.
+     *
+     * @return titleSuggester
+     */
+    public TitleSuggester getTitleSuggester() {
+        return titleSuggester;
+    }
+    
+    /**
+     * Makes the changes of the index visible to the next searchers.
+     * The searchers are not refreshed while a rebuilt index is swapped in, they would see it half copied.
+     */
+    public void onIndexChanged() {
+        indexLock.readLock().lock();
+        try {
+            index.maybeRefresh();
+        } catch (IOException e) {
+            log.error("Error refreshing the index searchers", e);
+        } finally {
+            indexLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Subscriptions of a user.
+     */
+    private static class UserSubscriptions {
+        /**
+         * Version of the user data when the subscriptions were read.
+         */
+        private final String version;
+        
+        /**
+         * Feed subscriptions.
+         */
+        private final List<FeedSubscriptionDto> feedSubscriptionList;
+        
+        private UserSubscriptions(String version, List<FeedSubscriptionDto> feedSubscriptionList) {
+            this.version = version;
+            this.feedSubscriptionList = feedSubscriptionList;
+        }
+    }
+    
+    /**
+     * Filter on the subscribed feeds of a user.
+     */
+    private static class FeedFilter {
+        /**
+         * IDs of the subscribed feeds.
+         */
+        private final Set<String> feedIdSet;
+        
+        /**
+         * Filter.
+         */
+        private final Filter filter;
+        
+        private FeedFilter(Set<String> feedIdSet, Filter filter) {
+            this.feedIdSet = feedIdSet;
+            this.filter = filter;
+        }
+    }
+    
+    /**
+     * Key of a search result page.
+     * The filter is part of the key, since the searched feeds change with the subscriptions.
+     */
+    private static class SearchKey {
+        private final String userId;
+        
+        private final String searchQuery;
+        
+        private final int offset;
+        
+        private final int limit;
+        
+        private final Filter filter;
+        
+        private SearchKey(String userId, String searchQuery, int offset, int limit, Filter filter) {
+            this.userId = userId;
+            // The query is analyzed in lower case, and the blanks only separate the terms
+            this.searchQuery = searchQuery.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+            this.offset = offset;
+            this.limit = limit;
+            this.filter = filter;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SearchKey)) {
+                return false;
+            }
+            SearchKey other = (SearchKey) o;
+            return userId.equals(other.userId) && searchQuery.equals(other.searchQuery)
+                    && offset == other.offset && limit == other.limit && filter.equals(other.filter);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(userId, searchQuery, offset, limit, filter);
+        }
+    }
+    
+    /**
+     * Search result page, before the join with the user articles.
+     */
+    private static class SearchResult {
+        /**
+         * Number of results in the searched shards.
+         */
+        private final int resultCount;
+        
+        /**
+         * True if more results may exist after the page.
+         */
+        private final boolean hasMore;
+        
+        /**
+         * Highlighted articles, by ID.
+         */
+        private final Map<String, Article> articleMap;
+        
+        private SearchResult(int resultCount, boolean hasMore, Map<String, Article> articleMap) {
+            this.resultCount = resultCount;
+            this.hasMore = hasMore;
+            this.articleMap = articleMap;
         }
-        return directoryReader;
     }
 }
@@ -0,0 +1,391 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.util.concurrent.Striped;
+import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.lucene.ReaderStandardAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
+import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+
+/**
+ * Article index partitioned by month of publication.
+ * Each shard is a separate Lucene index stored in a sub-directory named after its month,
+ * so that the recent articles are searched first and the old ones are dropped as whole directories.
+ *
+ * @author bgamard
+ */
+public class ShardedIndex {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ShardedIndex.class);
+
+    /**
+     * Size of the indexing buffer of a shard being rebuilt, in MB.
+     */
+    private static final double REBUILD_RAM_BUFFER_SIZE = 64;
+
+    /**
+     * Name of a shard directory.
+     */
+    private static final Pattern SHARD_NAME_PATTERN = Pattern.compile("[0-9]{6}");
+
+    /**
+     * Number of locks of the articles of an index being rebuilt.
+     */
+    private static final int ARTICLE_LOCK_COUNT = 64;
+
+    /**
+     * Lucene storage config.
+     */
+    private final String luceneStorageConfig;
+
+    /**
+     * Directory of the shard directories.
+     */
+    private final File baseDirectory;
+
+    /**
+     * Number of months of articles kept in the index, 0 to keep all articles.
+     */
+    private final int retentionMonthCount;
+
+    /**
+     * Listener of the searcher refreshes, null for an index being rebuilt.
+     */
+    private final RefreshListener refreshListener;
+
+    /**
+     * Shards, most recent first.
+     */
+    private final ConcurrentNavigableMap<String, IndexShard> shardMap = new ConcurrentSkipListMap<String, IndexShard>(Collections.<String>reverseOrder());
+
+    /**
+     * IDs of the articles updated during a rebuild, null if the index is not being rebuilt.
+     * The content of these articles read from the database by the rebuild may be stale.
+     */
+    private final Set<String> updatedIdSet;
+
+    /**
+     * Locks of the articles of an index being rebuilt, an article is never written by an update and by the rebuild at the same time.
+     */
+    private final Striped<Lock> articleLock = Striped.lock(ARTICLE_LOCK_COUNT);
+
+    /**
+     * Constructor of ShardedIndex.
+     *
+     * @param luceneStorageConfig Lucene storage config
+     * @param baseDirectory Directory of the shard directories, unused by the RAM storage
+     * @param retentionMonthCount Number of months of articles kept in the index, 0 to keep all articles
+     * @param refreshListener Listener of the searcher refreshes, null for an index being rebuilt, which is written in bulk and not searched
+     */
+    public ShardedIndex(String luceneStorageConfig, File baseDirectory, int retentionMonthCount, RefreshListener refreshListener) {
+        this.luceneStorageConfig = luceneStorageConfig;
+        this.baseDirectory = baseDirectory;
+        this.retentionMonthCount = retentionMonthCount;
+        this.refreshListener = refreshListener;
+        this.updatedIdSet = refreshListener == null ? Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()) : null;
+    }
+
+    /**
+     * Opens the existing shards.
+     * The files of an index not partitioned, written by a previous version, are deleted.
+     *
+     * @return True if the index must be rebuilt
+     */
+    public boolean open() throws IOException {
+        File[] files = isFileStorage() ? baseDirectory.listFiles() : null;
+        if (files == null) {
+            return false;
+        }
+
+        boolean rebuildRequired = false;
+        for (File file : files) {
+            if (file.isDirectory() && SHARD_NAME_PATTERN.matcher(file.getName()).matches()) {
+                getOrOpenShard(file.getName());
+            } else if (file.isFile()) {
+                file.delete();
+                rebuildRequired = true;
+            }
+        }
+        if (rebuildRequired) {
+            log.warn("Deleted the Lucene index not partitioned in {}, it must be rebuilt", baseDirectory);
+        }
+        return rebuildRequired;
+    }
+
+    /**
+     * Returns the index writer of the shard of a publication date, the shard is created if needed.
+     * The shard is marked as changed.
+     *
+     * @param date Publication date
+     * @return Index writer, or null if the articles of this date are expired
+     */
+    public IndexWriter getIndexWriter(Date date) throws IOException {
+        return getIndexWriter(getShardName(date));
+    }
+
+    /**
+     * Returns the index writer of a shard, the shard is created if needed.
+     * The shard is marked as changed.
+     *
+     * @param name Name of the shard
+     * @return Index writer, or null if the shard is expired
+     */
+    public IndexWriter getIndexWriter(String name) throws IOException {
+        if (isExpired(name)) {
+            return null;
+        }
+        IndexShard shard = getOrOpenShard(name);
+        shard.onChanged();
+        return shard.getIndexWriter();
+    }
+
+    /**
+     * Writes an update of an article.
+     * If the index is being rebuilt, the article is not written by the rebuild anymore,
+     * since its content was possibly read from the database before the update.
+     *
+     * @param id Article ID
+     * @param write Write of the update
+     */
+    public void writeUpdate(String id, ArticleWrite write) throws IOException {
+        if (updatedIdSet == null) {
+            write.run();
+            return;
+        }
+        Lock lock = articleLock.get(id);
+        lock.lock();
+        try {
+            write.run();
+            updatedIdSet.add(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes an article read from the database by the rebuild, unless it was updated meanwhile.
+     *
+     * @param id Article ID
+     * @param write Write of the article
+     */
+    public void writeRebuild(String id, ArticleWrite write) throws IOException {
+        if (updatedIdSet == null) {
+            write.run();
+            return;
+        }
+        Lock lock = articleLock.get(id);
+        lock.lock();
+        try {
+            if (!updatedIdSet.contains(id)) {
+                write.run();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the shards.
+     *
+     * @return Shards, most recent first
+     */
+    public List<IndexShard> getShards() {
+        return new ArrayList<IndexShard>(shardMap.values());
+    }
+
+    /**
+     * Returns a shard.
+     *
+     * @param name Name of the shard
+     * @return Shard, or null if none
+     */
+    public IndexShard getShard(String name) {
+        return shardMap.get(name);
+    }
+
+    /**
+     * Returns the shards older than the retention.
+     *
+     * @return Names of the expired shards
+     */
+    public List<String> getExpiredShardNames() {
+        List<String> nameList = new ArrayList<String>();
+        for (String name : shardMap.keySet()) {
+            if (isExpired(name)) {
+                nameList.add(name);
+            }
+        }
+        return nameList;
+    }
+
+    /**
+     * Closes a shard and deletes its directory.
+     * The shard must not be written meanwhile. The searches in progress on the shard complete,
+     * the shard is closed and its directory deleted when the last one is done.
+     *
+     * @param name Name of the shard
+     */
+    public void dropShard(String name) {
+        IndexShard shard = shardMap.remove(name);
+        if (shard == null) {
+            return;
+        }
+        shard.rollback(isFileStorage());
+        log.info("Dropped the Lucene shard {}", name);
+    }
+
+    /**
+     * Commits the changes of the shards, if any.
+     */
+    public void commit() throws IOException {
+        for (IndexShard shard : shardMap.values()) {
+            shard.commit();
+        }
+    }
+
+    /**
+     * Makes the changes visible to the next searchers.
+     */
+    public void maybeRefresh() throws IOException {
+        for (IndexShard shard : shardMap.values()) {
+            shard.maybeRefresh();
+        }
+    }
+
+    /**
+     * Closes the shards, the changes are committed.
+     */
+    public void close() {
+        for (IndexShard shard : shardMap.values()) {
+            shard.close();
+        }
+        shardMap.clear();
+    }
+
+    /**
+     * Closes the shards and deletes their directories.
+     */
+    public void delete() {
+        for (IndexShard shard : shardMap.values()) {
+            shard.rollback(false);
+        }
+        shardMap.clear();
+        File[] files = isFileStorage() ? baseDirectory.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory() && SHARD_NAME_PATTERN.matcher(file.getName()).matches()) {
+                File[] indexFiles = file.listFiles();
+                if (indexFiles != null) {
+                    for (File indexFile : indexFiles) {
+                        indexFile.delete();
+                    }
+                }
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the shard of a publication date.
+     *
+     * @param date Publication date
+     * @return Name of the shard (yyyyMM)
+     */
+    public static String getShardName(Date date) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.setTime(date);
+        return String.format(Locale.ROOT, "%04d%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /**
+     * Returns true if the articles of a shard are older than the retention.
+     *
+     * @param name Name of the shard
+     * @return True if expired
+     */
+    private boolean isExpired(String name) {
+        if (retentionMonthCount <= 0) {
+            return false;
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.add(Calendar.MONTH, 1 - retentionMonthCount);
+        return name.compareTo(getShardName(calendar.getTime())) < 0;
+    }
+
+    /**
+     * Returns a shard, opened if needed.
+     *
+     * @param name Name of the shard
+     * @return Shard
+     */
+    private IndexShard getOrOpenShard(String name) throws IOException {
+        IndexShard shard = shardMap.get(name);
+        if (shard != null) {
+            return shard;
+        }
+        synchronized (this) {
+            shard = shardMap.get(name);
+            if (shard == null) {
+                IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_42, new ReaderStandardAnalyzer(Version.LUCENE_42));
+                if (refreshListener == null) {
+                    // Overwrite the leftovers of an interrupted rebuild, and merge concurrently since the documents are added by several threads
+                    config.setOpenMode(OpenMode.CREATE);
+                    config.setRAMBufferSizeMB(REBUILD_RAM_BUFFER_SIZE);
+                } else {
+                    // Merge sequentially, because Lucene writing is already done asynchronously
+                    config.setMergeScheduler(new SerialMergeScheduler());
+                }
+                File file = new File(baseDirectory, name);
+                shard = new IndexShard(name, file, IndexingService.openDirectory(luceneStorageConfig, file), config, refreshListener);
+                shardMap.put(name, shard);
+            }
+            return shard;
+        }
+    }
+
+    /**
+     * Returns true if the shards are stored in files.
+     *
+     * @return True if file storage
+     */
+    private boolean isFileStorage() {
+        return Constants.LUCENE_DIRECTORY_STORAGE_FILE.equals(luceneStorageConfig)
+                || Constants.LUCENE_DIRECTORY_STORAGE_MMAP.equals(luceneStorageConfig)
+                || Constants.LUCENE_DIRECTORY_STORAGE_NIO.equals(luceneStorageConfig);
+    }
+
+    /**
+     * Write of an article to the index.
+     */
+    public interface ArticleWrite {
+        /**
+         * Writes the article.
+         */
+        void run() throws IOException;
+    }
+}
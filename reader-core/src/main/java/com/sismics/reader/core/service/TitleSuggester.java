@@ -0,0 +1,349 @@
+package com.sismics.reader.core.service;
+
+import com.sismics.reader.core.dao.jpa.ArticleDao;
+import com.sismics.reader.core.dao.jpa.FeedDao;
+import com.sismics.reader.core.dao.jpa.criteria.FeedCriteria;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.dto.FeedDto;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory completion of the article titles, by feed.
+ * The most recent titles of each feed are kept in a sorted array of their word suffixes,
+ * a completion is a binary search in the arrays of the subscribed feeds.
+ * The arrays of a feed are replaced when its articles are indexed, the searches never wait.
+ *
+ * @author bgamard
+ */
+public class TitleSuggester {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TitleSuggester.class);
+
+    /**
+     * Maximum number of titles kept by feed.
+     */
+    private static final int MAX_TITLES_PER_FEED = 200;
+
+    /**
+     * Maximum number of completed words in a title.
+     */
+    private static final int MAX_WORDS_PER_TITLE = 32;
+
+    /**
+     * Minimum length of a completed prefix.
+     */
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    /**
+     * Titles, by feed ID.
+     */
+    private final Map<String, FeedTitles> feedTitlesMap = new ConcurrentHashMap<String, FeedTitles>();
+
+    /**
+     * Loads the most recent titles of the subscribed feeds.
+     * Each feed is read in its own transaction, the titles indexed meanwhile are kept.
+     */
+    public void load() {
+        long startTime = System.currentTimeMillis();
+        final AtomicReference<List<FeedDto>> feedList = new AtomicReference<List<FeedDto>>();
+        TransactionUtil.handle(() -> feedList.set(new FeedDao().findByCriteria(new FeedCriteria().setWithUserSubscription(true))));
+        if (feedList.get() == null) {
+            return;
+        }
+
+        for (final FeedDto feed : feedList.get()) {
+            TransactionUtil.handle(() -> {
+                List<TitleEntry> entryList = new ArrayList<TitleEntry>();
+                for (ArticleDto article : new ArticleDao().findTitleByFeedId(feed.getId(), MAX_TITLES_PER_FEED)) {
+                    entryList.add(new TitleEntry(article.getId(), article.getTitle(), article.getPublicationDate()));
+                }
+                merge(feed.getId(), entryList, Collections.<String>emptySet(), false);
+            });
+        }
+        log.info("Title suggester loaded with {} feeds in {}ms", feedTitlesMap.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Applies a batch of index updates.
+     *
+     * @param createList Created articles
+     * @param updateList Updated articles
+     * @param deleteList Deleted articles
+     */
+    public void apply(List<Article> createList, List<Article> updateList, List<Article> deleteList) {
+        Map<String, List<TitleEntry>> entryMap = new HashMap<String, List<TitleEntry>>();
+        Map<String, Set<String>> deletedIdMap = new HashMap<String, Set<String>>();
+        List<Article> articleList = new ArrayList<Article>(createList);
+        articleList.addAll(updateList);
+        for (Article article : articleList) {
+            getOrCreate(entryMap, article.getFeedId(), new ArrayList<TitleEntry>())
+                    .add(new TitleEntry(article.getId(), article.getTitle(), article.getPublicationDate()));
+        }
+        for (Article article : deleteList) {
+            getOrCreate(deletedIdMap, article.getFeedId(), new LinkedHashSet<String>()).add(article.getId());
+        }
+
+        Set<String> feedIdSet = new LinkedHashSet<String>(entryMap.keySet());
+        feedIdSet.addAll(deletedIdMap.keySet());
+        for (String feedId : feedIdSet) {
+            List<TitleEntry> entryList = entryMap.get(feedId);
+            Set<String> deletedIdSet = deletedIdMap.get(feedId);
+            merge(feedId, entryList != null ? entryList : Collections.<TitleEntry>emptyList(),
+                    deletedIdSet != null ? deletedIdSet : Collections.<String>emptySet(), true);
+        }
+    }
+
+    /**
+     * Returns the most recent titles of the feeds having a word starting with a prefix.
+     *
+     * @param feedIds IDs of the searched feeds
+     * @param prefix Prefix typed by the user
+     * @param limit Maximum number of titles
+     * @return Titles, most recent first
+     */
+    public List<String> suggest(Collection<String> feedIds, String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.length() < MIN_PREFIX_LENGTH) {
+            return new ArrayList<String>();
+        }
+
+        List<TitleEntry> matchList = new ArrayList<TitleEntry>();
+        for (String feedId : feedIds) {
+            FeedTitles feedTitles = feedTitlesMap.get(feedId);
+            if (feedTitles != null) {
+                feedTitles.collect(normalizedPrefix, matchList);
+            }
+        }
+        Collections.sort(matchList, (e1, e2) -> Long.compare(e2.date, e1.date));
+
+        // The same article may be published by several feeds
+        Set<String> titleSet = new LinkedHashSet<String>();
+        for (TitleEntry entry : matchList) {
+            if (titleSet.size() >= limit) {
+                break;
+            }
+            titleSet.add(entry.title);
+        }
+        return new ArrayList<String>(titleSet);
+    }
+
+    /**
+     * Returns true if a word of a name starts with a prefix.
+     *
+     * @param name Name, e.g. the title of a subscription
+     * @param prefix Prefix typed by the user
+     * @return True if the name matches
+     */
+    public boolean matches(String name, String prefix) {
+        String normalizedPrefix = normalize(prefix);
+        if (name == null || normalizedPrefix.length() < MIN_PREFIX_LENGTH) {
+            return false;
+        }
+        return (" " + normalize(name)).contains(" " + normalizedPrefix);
+    }
+
+    /**
+     * Returns the number of feeds having titles.
+     *
+     * @return Number of feeds
+     */
+    public int getFeedCount() {
+        return feedTitlesMap.size();
+    }
+
+    /**
+     * Replaces the titles of a feed by the merge of its current titles and new ones.
+     *
+     * @param feedId Feed ID
+     * @param entryList New titles
+     * @param deletedIdSet IDs of the deleted articles
+     * @param replace True if the new titles replace the current ones of the same articles
+     */
+    private synchronized void merge(String feedId, List<TitleEntry> entryList, Set<String> deletedIdSet, boolean replace) {
+        Map<String, TitleEntry> entryMap = new LinkedHashMap<String, TitleEntry>();
+        FeedTitles feedTitles = feedTitlesMap.get(feedId);
+        if (feedTitles != null) {
+            for (TitleEntry entry : feedTitles.entries) {
+                entryMap.put(entry.articleId, entry);
+            }
+        }
+        for (TitleEntry entry : entryList) {
+            if (entry.normalizedTitle.isEmpty()) {
+                entryMap.remove(entry.articleId);
+            } else if (replace || !entryMap.containsKey(entry.articleId)) {
+                entryMap.put(entry.articleId, entry);
+            }
+        }
+        entryMap.keySet().removeAll(deletedIdSet);
+
+        if (entryMap.isEmpty()) {
+            feedTitlesMap.remove(feedId);
+            return;
+        }
+        List<TitleEntry> mergedList = new ArrayList<TitleEntry>(entryMap.values());
+        Collections.sort(mergedList, (e1, e2) -> Long.compare(e2.date, e1.date));
+        if (mergedList.size() > MAX_TITLES_PER_FEED) {
+            mergedList = mergedList.subList(0, MAX_TITLES_PER_FEED);
+        }
+        feedTitlesMap.put(feedId, new FeedTitles(mergedList.toArray(new TitleEntry[mergedList.size()])));
+    }
+
+    /**
+     * Normalizes a text for the completion: lower case words separated by a space.
+     *
+     * @param text Text
+     * @return Normalized text
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static <K, V> V getOrCreate(Map<K, V> map, K key, V value) {
+        V current = map.get(key);
+        if (current == null) {
+            map.put(key, value);
+            return value;
+        }
+        return current;
+    }
+
+    /**
+     * Title of an article.
+     */
+    private static class TitleEntry {
+        private final String articleId;
+
+        private final String title;
+
+        /**
+         * Lower case title, searched by the completions.
+         */
+        private final String normalizedTitle;
+
+        /**
+         * Publication date, in milliseconds.
+         */
+        private final long date;
+
+        private TitleEntry(String articleId, String title, Date date) {
+            this.articleId = articleId;
+            this.title = title;
+            this.normalizedTitle = normalize(title);
+            this.date = date != null ? date.getTime() : 0;
+        }
+    }
+
+    /**
+     * Immutable titles of a feed.
+     */
+    private static class FeedTitles {
+        /**
+         * Titles, most recent first.
+         */
+        private final TitleEntry[] entries;
+
+        /**
+         * Suffixes of the titles starting at a word, sorted.
+         * A suffix is encoded as the index of its title in the high bits and its offset in the low bits.
+         */
+        private final long[] suffixes;
+
+        private FeedTitles(TitleEntry[] entries) {
+            this.entries = entries;
+
+            List<Long> suffixList = new ArrayList<Long>();
+            for (int i = 0; i < entries.length; i++) {
+                String title = entries[i].normalizedTitle;
+                int wordCount = 0;
+                for (int offset = 0; offset < title.length() && wordCount < MAX_WORDS_PER_TITLE; offset++) {
+                    if (offset == 0 || title.charAt(offset - 1) == ' ') {
+                        suffixList.add(((long) i << 32) | offset);
+                        wordCount++;
+                    }
+                }
+            }
+            Collections.sort(suffixList, (s1, s2) -> getTitle(s1).substring(getOffset(s1)).compareTo(getTitle(s2).substring(getOffset(s2))));
+            suffixes = new long[suffixList.size()];
+            for (int i = 0; i < suffixes.length; i++) {
+                suffixes[i] = suffixList.get(i);
+            }
+        }
+
+        /**
+         * Adds the titles having a suffix starting with a prefix.
+         *
+         * @param prefix Normalized prefix
+         * @param matchList Matching titles
+         */
+        private void collect(String prefix, List<TitleEntry> matchList) {
+            // Lower bound of the suffixes starting with the prefix, they are contiguous
+            int low = 0;
+            int high = suffixes.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (comparePrefix(suffixes[middle], prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            Set<Integer> indexSet = new LinkedHashSet<Integer>();
+            for (int i = low; i < suffixes.length && comparePrefix(suffixes[i], prefix) == 0; i++) {
+                if (indexSet.add((int) (suffixes[i] >>> 32))) {
+                    matchList.add(entries[(int) (suffixes[i] >>> 32)]);
+                }
+            }
+        }
+
+        /**
+         * Compares the beginning of a suffix with a prefix.
+         *
+         * @param suffix Encoded suffix
+         * @param prefix Prefix
+         * @return 0 if the suffix starts with the prefix, the order of the suffix otherwise
+         */
+        private int comparePrefix(long suffix, String prefix) {
+            String title = getTitle(suffix);
+            int offset = getOffset(suffix);
+            int length = Math.min(title.length() - offset, prefix.length());
+            for (int i = 0; i < length; i++) {
+                int diff = title.charAt(offset + i) - prefix.charAt(i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length < prefix.length() ? -1 : 0;
+        }
+
+        private String getTitle(long suffix) {
+            return entries[(int) (suffix >>> 32)].normalizedTitle;
+        }
+
+        private static int getOffset(long suffix) {
+            return (int) suffix;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.sismics.reader.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.sismics.reader.core.model.jpa.AuthenticationToken;
+import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of the data read on each authenticated request.
+ * The authentication tokens and the base functions of the roles are cached for a short time,
+ * and the last connection dates of the tokens are written to the database periodically instead of on each request.
+ *
+ * @author jtremeaux
+ */
+public class AuthenticationUtil {
+    /**
+     * Maximum number of cached authentication tokens.
+     */
+    private static final int TOKEN_CACHE_SIZE = 10000;
+
+    /**
+     * Time to live of a cached entry in minutes, bounds the staleness when the data is modified by another node.
+     */
+    private static final int CACHE_TTL = 5;
+
+    /**
+     * Authentication tokens, by token ID.
+     */
+    private static final Cache<String, AuthenticationToken> tokenCache = CacheBuilder.newBuilder()
+            .maximumSize(TOKEN_CACHE_SIZE)
+            .expireAfterWrite(CACHE_TTL, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Base functions, by role ID.
+     */
+    private static final Cache<String, Set<String>> baseFunctionCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(CACHE_TTL, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Last connection dates not written to the database yet, by token ID.
+     */
+    private static final ConcurrentMap<String, Date> lastConnectionDateMap = new ConcurrentHashMap<String, Date>();
+
+    /**
+     * Number of invalidations, a token read from the database is cached only if no invalidation happened meanwhile.
+     */
+    private static final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Invalidations to repeat at the end of the current transaction.
+     */
+    private static final ThreadLocal<PendingInvalidation> pendingInvalidation = new ThreadLocal<PendingInvalidation>();
+
+    /**
+     * Returns a cached authentication token.
+     *
+     * @param id Authentication token ID
+     * @return Copy of the authentication token, or null if not cached
+     */
+    public static AuthenticationToken getToken(String id) {
+        AuthenticationToken authenticationToken = tokenCache.getIfPresent(id);
+        if (authenticationToken == null) {
+            return null;
+        }
+        AuthenticationToken copy = copy(authenticationToken);
+        Date lastConnectionDate = lastConnectionDateMap.get(id);
+        if (lastConnectionDate != null) {
+            copy.setLastConnectionDate(lastConnectionDate);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the number of invalidations, to read before reading a token from the database.
+     *
+     * @return Number of invalidations
+     */
+    public static long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Caches an authentication token read from the database.
+     * The token is not cached if an invalidation happened since it was read, it may be stale.
+     *
+     * @param authenticationToken Authentication token
+     * @param readInvalidationCount Number of invalidations before the token was read, see {@link #getInvalidationCount()}
+     */
+    public static void putToken(AuthenticationToken authenticationToken, long readInvalidationCount) {
+        tokenCache.put(authenticationToken.getId(), copy(authenticationToken));
+        if (invalidationCount.get() != readInvalidationCount) {
+            tokenCache.invalidate(authenticationToken.getId());
+        }
+    }
+
+    /**
+     * Removes an authentication token from the cache.
+     * The token is removed again after the completion of the current transaction, since a concurrent request
+     * can cache it until the deletion is committed.
+     * The pending last connection date is dropped, since the token is about to be deleted.
+     *
+     * @param id Authentication token ID
+     */
+    public static void invalidateToken(String id) {
+        getPendingInvalidation().tokenIdSet.add(id);
+        removeToken(id);
+        lastConnectionDateMap.remove(id);
+    }
+
+    /**
+     * Removes all authentication tokens of a user from the cache.
+     * The tokens are removed again after the completion of the current transaction, like {@link #invalidateToken(String)}.
+     *
+     * @param userId User ID
+     */
+    public static void invalidateUser(String userId) {
+        getPendingInvalidation().userIdSet.add(userId);
+        removeUser(userId);
+    }
+
+    /**
+     * Removes an authentication token from the cache.
+     *
+     * @param id Authentication token ID
+     */
+    private static void removeToken(String id) {
+        invalidationCount.incrementAndGet();
+        tokenCache.invalidate(id);
+    }
+
+    /**
+     * Removes all authentication tokens of a user from the cache.
+     *
+     * @param userId User ID
+     */
+    private static void removeUser(String userId) {
+        invalidationCount.incrementAndGet();
+        for (AuthenticationToken authenticationToken : tokenCache.asMap().values()) {
+            if (userId.equals(authenticationToken.getUserId())) {
+                tokenCache.invalidate(authenticationToken.getId());
+            }
+        }
+    }
+
+    /**
+     * Returns the invalidations to repeat at the end of the current transaction.
+     *
+     * @return Pending invalidation, not registered if no transaction is active
+     */
+    private static PendingInvalidation getPendingInvalidation() {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        if (em == null || !em.getTransaction().isActive()) {
+            return new PendingInvalidation();
+        }
+
+        PendingInvalidation invalidation = pendingInvalidation.get();
+        if (invalidation == null || invalidation.completed) {
+            invalidation = new PendingInvalidation();
+            em.unwrap(Session.class).getTransaction().registerSynchronization(invalidation);
+            pendingInvalidation.set(invalidation);
+        }
+        return invalidation;
+    }
+
+    /**
+     * Returns the cached base functions of a role.
+     *
+     * @param roleId Role ID
+     * @return Set of base functions, or null if not cached
+     */
+    public static Set<String> getBaseFunctionSet(String roleId) {
+        return baseFunctionCache.getIfPresent(roleId);
+    }
+
+    /**
+     * Caches the base functions of a role.
+     *
+     * @param roleId Role ID
+     * @param baseFunctionSet Set of base functions
+     */
+    public static void putBaseFunctionSet(String roleId, Set<String> baseFunctionSet) {
+        baseFunctionCache.put(roleId, ImmutableSet.copyOf(baseFunctionSet));
+    }
+
+    /**
+     * Records a connection with an authentication token, to be written later.
+     *
+     * @param id Authentication token ID
+     * @param date Connection date
+     */
+    public static void updateLastConnectionDate(String id, Date date) {
+        lastConnectionDateMap.put(id, date);
+    }
+
+    /**
+     * Removes and returns the last connection dates not written to the database yet.
+     * Successive connections with the same token are coalesced into the latest one.
+     *
+     * @return Last connection dates, by token ID
+     */
+    public static Map<String, Date> drainLastConnectionDate() {
+        Map<String, Date> dateMap = new HashMap<String, Date>();
+        for (Map.Entry<String, Date> entry : lastConnectionDateMap.entrySet()) {
+            // Keep the entry if the token was used again in the meantime
+            if (lastConnectionDateMap.remove(entry.getKey(), entry.getValue())) {
+                dateMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return dateMap;
+    }
+
+    /**
+     * Copies an authentication token, so that cached tokens are never shared with an entity manager.
+     *
+     * @param authenticationToken Authentication token
+     * @return Copy
+     */
+    private static AuthenticationToken copy(AuthenticationToken authenticationToken) {
+        AuthenticationToken copy = new AuthenticationToken();
+        copy.setId(authenticationToken.getId());
+        copy.setUserId(authenticationToken.getUserId());
+        copy.setLongLasted(authenticationToken.isLongLasted());
+        copy.setCreationDate(authenticationToken.getCreationDate());
+        copy.setLastConnectionDate(authenticationToken.getLastConnectionDate());
+        return copy;
+    }
+
+    /**
+     * Invalidations to repeat at the end of a transaction.
+     */
+    private static class PendingInvalidation implements Synchronization {
+        /**
+         * Tokens invalidated during the transaction.
+         */
+        private final Set<String> tokenIdSet = new HashSet<String>();
+
+        /**
+         * Users invalidated during the transaction.
+         */
+        private final Set<String> userIdSet = new HashSet<String>();
+
+        /**
+         * True if the transaction is completed.
+         */
+        private boolean completed;
+
+        @Override
+        public void beforeCompletion() {
+            // NOP
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            completed = true;
+            if (pendingInvalidation.get() == this) {
+                pendingInvalidation.remove();
+            }
+            for (String id : tokenIdSet) {
+                removeToken(id);
+            }
+            for (String userId : userIdSet) {
+                removeUser(userId);
+            }
+        }
+    }
+}
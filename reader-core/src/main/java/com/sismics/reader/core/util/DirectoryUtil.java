@@ -70,6 +70,15 @@ public class DirectoryUtil {
     public static File getLuceneDirectory() {
         return getDataSubDirectory("lucene");
     }
+
+    /**
+     * Returns the directory of the lucene index being rebuilt.
+     * 
+     * @return Lucene rebuild directory.
+     */
+    public static File getLuceneRebuildDirectory() {
+        return getDataSubDirectory("lucene_rebuild");
+    }
     
     /**
      * Returns the log directory.
@@ -1,6 +1,9 @@
 package com.sismics.reader.core.util;
 
 import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.SQLQuery;
+
+import javax.persistence.Query;
 
 /**
  * Entity manager utils.
@@ -14,4 +17,18 @@ public class EntityManagerUtil {
     public static void flush() {
         ThreadLocalContext.get().getEntityManager().flush();
     }
+
+    /**
+     * Creates a native statement modifying a table.
+     * Hibernate evicts the whole second-level cache after a native statement, unless the modified table is declared.
+     *
+     * @param table Modified table
+     * @param sql Native SQL statement
+     * @return Query
+     */
+    public static Query createNativeUpdate(String table, String sql) {
+        Query q = ThreadLocalContext.get().getEntityManager().createNativeQuery(sql);
+        q.unwrap(SQLQuery.class).addSynchronizedQuerySpace(table);
+        return q;
+    }
 }
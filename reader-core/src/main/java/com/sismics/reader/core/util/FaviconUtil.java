@@ -0,0 +1,203 @@
+package com.sismics.reader.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the favicons stored in the favicon directory.
+ * The favicon of a feed is stored in a file named after the feed ID, with an extension depending on its type.
+ * The directory is scanned once, then the index is updated when a favicon is downloaded.
+ *
+ * @author jtremeaux
+ */
+public class FaviconUtil {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(FaviconUtil.class);
+
+    /**
+     * Favicon files, by feed ID.
+     */
+    private static final ConcurrentMap<String, File> faviconMap = new ConcurrentHashMap<String, File>();
+
+    /**
+     * True if the favicon directory has been scanned.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * Version of the index, incremented when a favicon is added, replaced or removed.
+     */
+    private static final AtomicLong version = new AtomicLong();
+
+    /**
+     * Favicons larger than this are not inlined in the bundles, in bytes.
+     */
+    private static final long BUNDLE_MAX_FAVICON_SIZE = 32 * 1024;
+
+    /**
+     * Bundles of the favicons of a user, with their entity tag, by user ID.
+     */
+    private static final Cache<String, Map.Entry<String, String>> bundleCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * Favicons encoded as data URIs, by file path and modification date.
+     */
+    private static final Cache<String, String> dataUriCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    /**
+     * Media types of the favicons, by file extension.
+     */
+    private static final Map<String, String> MIME_TYPE_MAP = ImmutableMap.<String, String>builder()
+            .put("bmp", "image/bmp")
+            .put("gif", "image/gif")
+            .put("jpg", "image/jpeg")
+            .put("png", "image/png")
+            .put("ico", "image/x-icon")
+            .build();
+
+    /**
+     * Scans the favicon directory, if not done yet.
+     */
+    public static void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (FaviconUtil.class) {
+            if (loaded) {
+                return;
+            }
+            File[] faviconFiles = DirectoryUtil.getFaviconDirectory().listFiles();
+            if (faviconFiles != null) {
+                for (File faviconFile : faviconFiles) {
+                    String name = faviconFile.getName();
+                    int index = name.indexOf('.');
+                    if (faviconFile.isFile() && index > 0) {
+                        faviconMap.putIfAbsent(name.substring(0, index), faviconFile);
+                    }
+                }
+            }
+            loaded = true;
+            if (log.isInfoEnabled()) {
+                log.info("Indexed " + faviconMap.size() + " favicons");
+            }
+        }
+    }
+
+    /**
+     * Returns the favicon of a feed.
+     *
+     * @param feedId Feed ID
+     * @return Favicon file, or null if the feed has no favicon
+     */
+    public static File getFavicon(String feedId) {
+        load();
+        File faviconFile = faviconMap.get(feedId);
+        if (faviconFile != null && !faviconFile.isFile()) {
+            // The file has been removed from the directory
+            if (faviconMap.remove(feedId, faviconFile)) {
+                version.incrementAndGet();
+            }
+            return null;
+        }
+        return faviconFile;
+    }
+
+    /**
+     * Indexes the favicon of a feed, the previous favicon is deleted if it has another type.
+     *
+     * @param feedId Feed ID
+     * @param faviconFile Favicon file
+     */
+    public static void putFavicon(String feedId, File faviconFile) {
+        load();
+        File previousFile = faviconMap.put(feedId, faviconFile);
+        version.incrementAndGet();
+        if (previousFile != null && !previousFile.equals(faviconFile)) {
+            if (!previousFile.delete() && log.isWarnEnabled()) {
+                log.warn("Cannot delete the previous favicon " + previousFile.getPath());
+            }
+        }
+    }
+
+    /**
+     * Returns the version of the index, to build the entity tags of the bundles.
+     *
+     * @return Version
+     */
+    public static long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns a favicon as a data URI, to be inlined in a bundle.
+     *
+     * @param faviconFile Favicon file
+     * @return Data URI, or null if the favicon is too large or cannot be read
+     */
+    public static String getDataUri(File faviconFile) {
+        if (faviconFile.length() > BUNDLE_MAX_FAVICON_SIZE) {
+            return null;
+        }
+        String mimeType = MIME_TYPE_MAP.get(Files.getFileExtension(faviconFile.getName()).toLowerCase());
+        if (mimeType == null) {
+            return null;
+        }
+        String key = faviconFile.getPath() + "-" + faviconFile.lastModified();
+        String dataUri = dataUriCache.getIfPresent(key);
+        if (dataUri != null) {
+            return dataUri;
+        }
+        try {
+            dataUri = "data:" + mimeType + ";base64," + BaseEncoding.base64().encode(Files.toByteArray(faviconFile));
+            dataUriCache.put(key, dataUri);
+            return dataUri;
+        } catch (IOException e) {
+            log.warn("Cannot read the favicon " + faviconFile.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached bundle of the favicons of a user.
+     *
+     * @param userId User ID
+     * @param tag Entity tag of the current bundle
+     * @return Bundle, or null if not cached or outdated
+     */
+    public static String getBundle(String userId, String tag) {
+        Map.Entry<String, String> bundle = bundleCache.getIfPresent(userId);
+        return bundle != null && bundle.getKey().equals(tag) ? bundle.getValue() : null;
+    }
+
+    /**
+     * Caches the bundle of the favicons of a user.
+     *
+     * @param userId User ID
+     * @param tag Entity tag of the bundle
+     * @param bundle Bundle
+     */
+    public static void putBundle(String userId, String tag, String bundle) {
+        bundleCache.put(userId, new AbstractMap.SimpleImmutableEntry<String, String>(tag, bundle));
+    }
+}
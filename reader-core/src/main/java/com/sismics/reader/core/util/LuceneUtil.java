@@ -1,16 +1,12 @@
 package com.sismics.reader.core.util;
 
-import com.sismics.reader.core.dao.lucene.ReaderStandardAnalyzer;
 import com.sismics.reader.core.model.context.AppContext;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.SerialMergeScheduler;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.util.Version;
+import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.ShardedIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Lucene utils.
@@ -25,50 +21,38 @@ public class LuceneUtil {
 
     /**
      * Encapsulate a process into a Lucene context.
+     * The index is shared, the changes are visible to the searches when the process is done,
+     * and committed periodically by the indexing service.
+     * If the index is being rebuilt, the process is also run on the new index.
      * 
      * @param runnable Runnable
      */
     public static void handle(LuceneRunnable runnable) {
-        // Standard analyzer
-        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_42, new ReaderStandardAnalyzer(Version.LUCENE_42));
-        
-        // Merge sequentially, because Lucene writing is already done asynchronously 
-        config.setMergeScheduler(new SerialMergeScheduler());
-        
-        // Creating index writer
-        Directory directory = AppContext.getInstance().getIndexingService().getDirectory();
-        IndexWriter indexWriter = null;
-        try {
-            indexWriter = new IndexWriter(directory, config);
-        } catch (IOException e) {
-            log.error("Cannot create IndexWriter", e);
-        }
-
-        // Unlock index if needed
+        handle(AppContext.getInstance().getIndexingService(), runnable);
+    }
+    
+    /**
+     * Encapsulate a process into the Lucene context of an indexing service.
+     * 
+     * @param indexingService Indexing service
+     * @param runnable Runnable
+     */
+    public static void handle(IndexingService indexingService, LuceneRunnable runnable) {
+        Lock lock = indexingService.getIndexLock().readLock();
+        lock.lock();
         try {
-            if (IndexWriter.isLocked(directory)) {
-                IndexWriter.unlock(directory);
+            runnable.run(indexingService.getIndex());
+            ShardedIndex rebuildIndex = indexingService.getRebuildIndex();
+            if (rebuildIndex != null) {
+                runnable.run(rebuildIndex);
             }
-        } catch (IOException e) {
-            log.error("Cannot unlock Lucene directory", e);
-        }
-        
-        try {
-            runnable.run(indexWriter);
         } catch (Exception e) {
+            // The writers are shared, the changes already made are kept
             log.error("Error in running index writing transaction", e);
-            try {
-                indexWriter.rollback();
-            } catch (IOException e1) {
-                log.error("Cannot rollback index writing transaction", e1);
-            }
-        }
-        
-        try {
-            indexWriter.close();
-        } catch (IOException e) {
-            log.error("Cannot close IndexWriter", e);
+        } finally {
+            lock.unlock();
         }
+        indexingService.onIndexChanged();
     }
     
     /**
@@ -80,8 +64,8 @@ public class LuceneUtil {
         /**
          * Code to run in a Lucene context.
          * 
-         * @param indexWriter Index writer
+         * @param index Article index
          */
-        abstract void run(IndexWriter indexWriter) throws Exception;
+        abstract void run(ShardedIndex index) throws Exception;
     }
 }
@@ -0,0 +1,68 @@
+package com.sismics.reader.core.util;
+
+import com.sismics.util.context.ThreadLocalContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Read-only transaction on the read replica, in place of the transaction of the current context.
+ * The entity manager of the context is restored when the transaction is closed.
+ * It is opened in a try-with-resources statement whose body doesn't reference it,
+ * the methods doing so are annotated with @SuppressWarnings("try").
+ *
+ * @author jtremeaux
+ */
+public class ReplicaTransaction implements AutoCloseable {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ReplicaTransaction.class);
+
+    /**
+     * Entity manager of the context.
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Entity manager of the replica, null if the context reads from the primary database.
+     */
+    private final EntityManager replicaEntityManager;
+
+    /**
+     * Constructor of ReplicaTransaction.
+     *
+     * @param entityManager Entity manager of the context
+     * @param replicaEntityManager Entity manager of the replica, null to read from the primary database
+     */
+    ReplicaTransaction(EntityManager entityManager, EntityManager replicaEntityManager) {
+        this.entityManager = entityManager;
+        this.replicaEntityManager = replicaEntityManager;
+    }
+
+    /**
+     * Returns true if the context reads from the replica.
+     *
+     * @return Condition
+     */
+    public boolean isReplica() {
+        return replicaEntityManager != null;
+    }
+
+    @Override
+    public void close() {
+        if (replicaEntityManager == null) {
+            return;
+        }
+        ThreadLocalContext.get().setEntityManager(entityManager);
+        try {
+            if (replicaEntityManager.getTransaction().isActive()) {
+                replicaEntityManager.getTransaction().rollback();
+            }
+            replicaEntityManager.close();
+        } catch (Exception e) {
+            log.error("Error closing replica entity manager", e);
+        }
+    }
+}
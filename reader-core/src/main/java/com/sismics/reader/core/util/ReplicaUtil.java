@@ -0,0 +1,50 @@
+package com.sismics.reader.core.util;
+
+import com.sismics.util.jpa.EMF;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Routing of the reads to the read replica.
+ * A user reads from the primary database for a short time after its data is modified, so that its own writes
+ * are visible despite the replication lag.
+ *
+ * @author jtremeaux
+ */
+public class ReplicaUtil {
+    /**
+     * Date of the last modification of the data, by user ID.
+     */
+    private static final ConcurrentMap<String, Long> writeDateMap = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Marks the data of a user as modified on the primary database.
+     *
+     * @param userId User ID
+     */
+    public static void markWrite(String userId) {
+        writeDateMap.put(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns true if the data of a user can be read from the replica.
+     *
+     * @param userId User ID
+     * @return Condition
+     */
+    public static boolean isReadable(String userId) {
+        if (EMF.getReplica() == null) {
+            return false;
+        }
+        Long writeDate = writeDateMap.get(userId);
+        if (writeDate == null) {
+            return true;
+        }
+        if (System.currentTimeMillis() - writeDate < EMF.getReplicaWindow()) {
+            return false;
+        }
+        writeDateMap.remove(userId, writeDate);
+        return true;
+    }
+}
@@ -3,6 +3,8 @@ package com.sismics.reader.core.util;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -82,6 +84,39 @@ public class TransactionUtil {
         }
     }
     
+    /**
+     * Reads the data of a user from the read replica until the returned transaction is closed.
+     * The data is read from the primary database if no replica is configured, if the user modified its data recently,
+     * or if the replica is not available.
+     * 
+     * @param userId User ID
+     * @return Replica transaction, to close when the reads are done
+     */
+    public static ReplicaTransaction openReplica(String userId) {
+        ThreadLocalContext context = ThreadLocalContext.get();
+        EntityManager em = context.getEntityManager();
+        if (!ReplicaUtil.isReadable(userId)) {
+            return new ReplicaTransaction(em, null);
+        }
+        
+        EntityManager replicaEm = null;
+        try {
+            replicaEm = EMF.getReplica().createEntityManager();
+            Session session = replicaEm.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            replicaEm.getTransaction().begin();
+        } catch (Exception e) {
+            log.error("Cannot open a transaction on the replica, reading from the primary database", e);
+            if (replicaEm != null && replicaEm.isOpen()) {
+                replicaEm.close();
+            }
+            return new ReplicaTransaction(em, null);
+        }
+        context.setEntityManager(replicaEm);
+        return new ReplicaTransaction(em, replicaEm);
+    }
+    
     /**
      * Commits the current transaction, and flushes the changes to the database.
      */
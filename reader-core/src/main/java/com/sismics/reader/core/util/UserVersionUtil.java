@@ -0,0 +1,139 @@
+package com.sismics.reader.core.util;
+
+import com.sismics.util.context.ThreadLocalContext;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory version of the data of each user (subscriptions, articles, read states...).
+ * The version is bumped after the transaction modifying the data is completed, so that a version is never
+ * associated with data that is not committed yet. It is used to answer conditional requests without reading the database.
+ *
+ * @author jtremeaux
+ */
+public class UserVersionUtil {
+    /**
+     * Prefix of all versions, changes at each startup since the versions are not persisted.
+     */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Current version, by user ID.
+     */
+    private static final ConcurrentMap<String, AtomicLong> versionMap = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Users to bump at the end of the current transaction.
+     */
+    private static final ThreadLocal<PendingBump> pendingBump = new ThreadLocal<PendingBump>();
+
+    /**
+     * Returns the current version of the data of a user.
+     *
+     * @param userId User ID
+     * @return Version
+     */
+    public static String getVersion(String userId) {
+        AtomicLong version = versionMap.get(userId);
+        return EPOCH + "-" + (version != null ? version.get() : 0);
+    }
+
+    /**
+     * Marks the data of a user as modified.
+     * If a transaction is active, the version is bumped after its completion, otherwise immediately.
+     *
+     * @param userId User ID
+     */
+    public static void bump(String userId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        if (em == null || !em.getTransaction().isActive()) {
+            increment(userId);
+            return;
+        }
+
+        PendingBump bump = pendingBump.get();
+        if (bump == null || bump.completed) {
+            bump = new PendingBump();
+            em.unwrap(Session.class).getTransaction().registerSynchronization(bump);
+            pendingBump.set(bump);
+        }
+        bump.userIdSet.add(userId);
+    }
+
+    /**
+     * Marks the data of all subscribers of a feed as modified, e.g. after its articles or its status are updated.
+     *
+     * @param feedId Feed ID
+     */
+    @SuppressWarnings("unchecked")
+    public static void bumpByFeed(String feedId) {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        List<String> userIdList = em.createNativeQuery("select distinct fs.FES_IDUSER_C from T_FEED_SUBSCRIPTION fs" +
+                "  where fs.FES_IDFEED_C = :feedId and fs.FES_DELETEDATE_D is null")
+                .setParameter("feedId", feedId)
+                .getResultList();
+        for (String userId : userIdList) {
+            bump(userId);
+        }
+    }
+
+    /**
+     * Increments the version of a user.
+     *
+     * @param userId User ID
+     */
+    private static void increment(String userId) {
+        AtomicLong version = versionMap.get(userId);
+        if (version == null) {
+            AtomicLong newVersion = new AtomicLong();
+            version = versionMap.putIfAbsent(userId, newVersion);
+            if (version == null) {
+                version = newVersion;
+            }
+        }
+        version.incrementAndGet();
+
+        // The user reads its own writes from the primary database
+        ReplicaUtil.markWrite(userId);
+    }
+
+    /**
+     * Users to bump at the end of a transaction.
+     */
+    private static class PendingBump implements Synchronization {
+        /**
+         * Users modified during the transaction.
+         */
+        private final Set<String> userIdSet = new HashSet<String>();
+
+        /**
+         * True if the transaction is completed.
+         */
+        private boolean completed;
+
+        @Override
+        public void beforeCompletion() {
+            // NOP
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // Also bump on rollback, a spurious bump only costs a full response
+            completed = true;
+            if (pendingBump.get() == this) {
+                pendingBump.remove();
+            }
+            for (String userId : userIdSet) {
+                increment(userId);
+            }
+        }
+    }
+}
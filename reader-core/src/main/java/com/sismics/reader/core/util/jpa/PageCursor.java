@@ -0,0 +1,98 @@
+package com.sismics.reader.core.util.jpa;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+import java.util.Date;
+
+/**
+ * Opaque cursor used for keyset pagination.
+ * A cursor encodes the sort key (a date) and the tie-breaker ID of the last item of a page,
+ * so that the next page can be requested without looking up the last item again.
+ *
+ * @author jtremeaux
+ */
+public class PageCursor {
+    /**
+     * Separator between the date and the ID.
+     */
+    private static final char SEPARATOR = ':';
+
+    /**
+     * Sort key of the last item.
+     */
+    private Date date;
+
+    /**
+     * ID of the last item.
+     */
+    private String id;
+
+    /**
+     * Constructor of PageCursor.
+     *
+     * @param date Sort key of the last item
+     * @param id ID of the last item
+     */
+    public PageCursor(Date date, String id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    /**
+     * Encodes a cursor.
+     *
+     * @param timestamp Sort key of the last item
+     * @param id ID of the last item
+     * @return Opaque cursor
+     */
+    public static String encode(Long timestamp, String id) {
+        if (timestamp == null || id == null) {
+            return null;
+        }
+        String cursor = Long.toString(timestamp, 36) + SEPARATOR + id;
+        return BaseEncoding.base64Url().omitPadding().encode(cursor.getBytes(Charsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor.
+     *
+     * @param cursor Opaque cursor
+     * @return Decoded cursor, or null if the cursor is not valid
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            String decoded = new String(BaseEncoding.base64Url().omitPadding().decode(cursor), Charsets.UTF_8);
+            int index = decoded.indexOf(SEPARATOR);
+            if (index <= 0 || index == decoded.length() - 1) {
+                return null;
+            }
+            long timestamp = Long.parseLong(decoded.substring(0, index), 36);
+            return new PageCursor(new Date(timestamp), decoded.substring(index + 1));
+        } catch (IllegalArgumentException e) {
+            // Also catches NumberFormatException
+            return null;
+        }
+    }
+
+    /**
+     * Getter of date.
+     *
+     * @return date
+     */
+    public Date getDate() {
+        return date;
+    }
+
+    /**
+     * Getter of id.
+     *
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+}
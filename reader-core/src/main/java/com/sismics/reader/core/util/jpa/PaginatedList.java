@@ -19,7 +19,7 @@ public class PaginatedList<T> {
     private int offset;
 
     /**
-     * Total number of records.
+     * Total number of records (not computed if the count is skipped).
      */
     private int resultCount;
     
@@ -27,6 +27,16 @@ public class PaginatedList<T> {
      * List of records of the current page.
      */
     private List<T> resultList;
+
+    /**
+     * If true, the total number of records is not counted.
+     */
+    private boolean skipCount;
+
+    /**
+     * True if there are more records after the current page.
+     */
+    private boolean hasMore;
     
     /**
      * Constructor of PaginatedList.
@@ -35,8 +45,20 @@ public class PaginatedList<T> {
      * @param offset Offset
      */
     public PaginatedList(int pageSize, int offset) {
+        this(pageSize, offset, false);
+    }
+
+    /**
+     * Constructor of PaginatedList.
+     *
+     * @param pageSize Page size
+     * @param offset Offset
+     * @param skipCount If true, the total number of records is not counted
+     */
+    public PaginatedList(int pageSize, int offset, boolean skipCount) {
         this.limit = pageSize;
         this.offset = offset;
+        this.skipCount = skipCount;
     }
 
     /**
@@ -84,6 +106,33 @@ public class PaginatedList<T> {
         return limit;
     }
 
+    /**
+     * Getter of skipCount.
+     *
+     * @return skipCount
+     */
+    public boolean isSkipCount() {
+        return skipCount;
+    }
+
+    /**
+     * Getter of hasMore.
+     *
+     * @return hasMore
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Setter of hasMore.
+     *
+     * @param hasMore hasMore
+     */
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
     /**
      * Getter of offset.
      *
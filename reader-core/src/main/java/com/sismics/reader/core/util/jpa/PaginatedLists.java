@@ -4,10 +4,16 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.sismics.util.context.ThreadLocalContext;
 import com.sismics.util.jpa.QueryParam;
+import com.sismics.util.jpa.ResultHandler;
 import com.sismics.util.jpa.filter.FilterColumn;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +33,11 @@ public class PaginatedLists {
      */
     private static final int MAX_PAGE_SIZE = 100;
 
+    /**
+     * Number of rows fetched from the database at once when scrolling.
+     */
+    private static final int SCROLL_FETCH_SIZE = 500;
+
     /**
      * Constructs a paginated list.
      * 
@@ -35,6 +46,20 @@ public class PaginatedLists {
      * @return Paginated list
      */
     public static <E> PaginatedList<E> create(Integer pageSize, Integer offset) {
+        return create(pageSize, offset, false);
+    }
+
+    /**
+     * Constructs a paginated list.
+     * If the count is skipped, one more record is fetched to know if there is a next page,
+     * which spares the count query for lists that never display the total (e.g. infinite scroll).
+     *
+     * @param pageSize Size of the page
+     * @param offset Offset of the page
+     * @param skipCount If true, the total number of records is not counted
+     * @return Paginated list
+     */
+    public static <E> PaginatedList<E> create(Integer pageSize, Integer offset, boolean skipCount) {
         if (pageSize == null) {
             pageSize = DEFAULT_PAGE_SIZE;
         }
@@ -47,7 +72,7 @@ public class PaginatedLists {
         if (pageSize == 0) {
             pageSize = 1; // Page size of zero counterintuitively returns all rows, we don't want to kill the database
         }
-        return new PaginatedList<E>(pageSize, offset);
+        return new PaginatedList<E>(pageSize, offset, skipCount);
     }
     
     /**
@@ -84,6 +109,55 @@ public class PaginatedLists {
         }
     }
 
+    /**
+     * Executes a non paginated query, and passes the results to a handler one by one.
+     * The rows are read with a forward-only cursor and mapped as they are fetched,
+     * so that the whole result set is never held in memory.
+     *
+     * @param queryParam Query parameters
+     * @param resultHandler Result handler
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> void executeScrollQuery(QueryParam queryParam, ResultHandler<E> resultHandler) throws Exception {
+        StringBuilder sb = new StringBuilder(getQueryString(queryParam));
+        if (queryParam.getSortCriteria() != null) {
+            sb.append(getOrderByClause(queryParam.getSortCriteria()));
+        }
+
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        SQLQuery query = em.unwrap(Session.class).createSQLQuery(sb.toString());
+        for (Map.Entry<String, Object> parameter : queryParam.getParameterMap().entrySet()) {
+            if (parameter.getValue() instanceof Collection) {
+                query.setParameterList(parameter.getKey(), (Collection<?>) parameter.getValue());
+            } else {
+                query.setParameter(parameter.getKey(), parameter.getValue());
+            }
+        }
+        if (queryParam.getFilterCriteria() != null) {
+            for (FilterColumn filterColumn : queryParam.getFilterCriteria().getFilterColumnList()) {
+                if (filterColumn.hasParam()) {
+                    query.setParameter(filterColumn.getParamName(), filterColumn.getParamValue());
+                }
+            }
+        }
+        query.setFetchSize(SCROLL_FETCH_SIZE);
+        query.setReadOnly(true);
+
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                Object[] row = results.get();
+                if (queryParam.getResultMapper() != null) {
+                    resultHandler.handle((E) queryParam.getResultMapper().map(row));
+                } else {
+                    resultHandler.handle((E) row);
+                }
+            }
+        } finally {
+            results.close();
+        }
+    }
+
     private static String getQueryString(QueryParam queryParam) {
         StringBuilder sb = new StringBuilder(queryParam.getQueryString());
 
@@ -152,9 +226,22 @@ public class PaginatedLists {
         mapFilterColumn(query, queryParam);
 
         query.setFirstResult(paginatedList.getOffset());
-        query.setMaxResults(paginatedList.getLimit());
+        if (paginatedList.isSkipCount()) {
+            // Fetch one more record to know if there is a next page
+            query.setMaxResults(paginatedList.getLimit() + 1);
+        } else {
+            query.setMaxResults(paginatedList.getLimit());
+        }
 
         List<E> resultList = query.getResultList();
+        if (paginatedList.isSkipCount()) {
+            paginatedList.setHasMore(resultList.size() > paginatedList.getLimit());
+            if (paginatedList.isHasMore()) {
+                resultList = resultList.subList(0, paginatedList.getLimit());
+            }
+        } else {
+            paginatedList.setHasMore(paginatedList.getOffset() + resultList.size() < paginatedList.getResultCount());
+        }
         if (queryParam.getResultMapper() != null) {
             paginatedList.setResultList(queryParam.getResultMapper().map(resultList));
         } else {
@@ -164,6 +251,7 @@ public class PaginatedLists {
     
     /**
      * Executes a paginated request with 2 native queries (one to count the number of results, and one to return the page).
+     * The count query is not executed if the paginated list skips the count.
      *
      * @param paginatedList Paginated list object containing parameters, and into which results are added by side effects
      * @param queryParam Query parameters
@@ -173,7 +261,9 @@ public class PaginatedLists {
         if (sortCriteria != null) {
             queryParam.setSortCriteria(sortCriteria);
         }
-        executeCountQuery(paginatedList, queryParam);
+        if (!paginatedList.isSkipCount()) {
+            executeCountQuery(paginatedList, queryParam);
+        }
         executeResultQuery(paginatedList, queryParam);
     }
 
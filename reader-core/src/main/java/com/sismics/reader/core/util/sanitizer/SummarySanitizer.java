@@ -0,0 +1,35 @@
+package com.sismics.reader.core.util.sanitizer;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Builds the plain text summary of an article description.
+ *
+ * @author jtremeaux
+ */
+public class SummarySanitizer {
+    /**
+     * Maximum length of a summary.
+     */
+    private static final int SUMMARY_LENGTH = 200;
+
+    /**
+     * HTML tags, including a tag truncated at the end of the text.
+     */
+    private static final Pattern TAG_PATTERN = Pattern.compile("<[^>]+>|<[^>]*$");
+
+    /**
+     * Removes the tags of the description and abbreviates it.
+     *
+     * @param html Description (or its beginning) to summarize
+     * @return Summary
+     */
+    public static String sanitize(String html) {
+        if (html == null) {
+            return null;
+        }
+        return StringUtils.abbreviate(TAG_PATTERN.matcher(html).replaceAll("").trim(), SUMMARY_LENGTH);
+    }
+}
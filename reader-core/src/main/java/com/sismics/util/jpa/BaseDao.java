@@ -16,7 +16,7 @@ public abstract class BaseDao<T, C> {
     /**
      * Search items by criteria.
      *
-     * @param list Paginated list (updated by side effects)
+     * @param list Paginated list (updated by side effects), the results are not counted if the list skips the count
      * @param criteria Search criteria
      * @param sortCriteria Sort criteria
      * @param filterCriteria Filter criteria
@@ -59,5 +59,15 @@ public abstract class BaseDao<T, C> {
         return !list.isEmpty() ? list.iterator().next() : null;
     }
 
+    /**
+     * Search items by criteria, and passes them to a handler one by one without loading the whole list.
+     *
+     * @param criteria Search criteria
+     * @param resultHandler Result handler
+     */
+    public void scrollByCriteria(C criteria, ResultHandler<T> resultHandler) throws Exception {
+        PaginatedLists.executeScrollQuery(getQueryParam(criteria, null), resultHandler);
+    }
+
     protected abstract QueryParam getQueryParam(C criteria, FilterCriteria filterCriteria);
 }
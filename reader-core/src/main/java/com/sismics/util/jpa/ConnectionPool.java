@@ -0,0 +1,280 @@
+package com.sismics.util.jpa;
+
+import com.google.common.base.Objects;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.mchange.v2.resourcepool.TimeoutException;
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of JDBC connections, shared by the database upgrade and the entity manager factory.
+ * The pool is configured by the following Hibernate properties:
+ * <ul>
+ *     <li>hibernate.c3p0.min_size: minimum number of connections (default 1)</li>
+ *     <li>hibernate.c3p0.max_size: maximum number of connections (default 30)</li>
+ *     <li>hibernate.c3p0.acquire_increment: number of connections opened at once (default 3)</li>
+ *     <li>hibernate.c3p0.timeout: idle time in seconds before a connection is closed (default 5000)</li>
+ *     <li>hibernate.c3p0.idle_test_period: period in seconds of the idle connections test (default 10)</li>
+ *     <li>hibernate.c3p0.max_statements: size of the statement cache (default 0)</li>
+ *     <li>hibernate.c3p0.checkout_timeout: time in milliseconds to wait for a connection (default 30000)</li>
+ *     <li>hibernate.c3p0.unreturned_connection_timeout: time in seconds after which a connection not returned
+ *     to the pool is considered leaked, its checkout stack trace is logged and it is closed (default 0, disabled)</li>
+ * </ul>
+ *
+ * @author jtremeaux
+ */
+public class ConnectionPool implements DataSource {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    /**
+     * Prefix of the pool properties.
+     */
+    private static final String PROPERTY_PREFIX = "hibernate.c3p0.";
+
+    /**
+     * Checkouts longer than this are logged, in milliseconds.
+     */
+    private static final long SLOW_CHECKOUT_THRESHOLD = 1000;
+
+    /**
+     * Pooled data source.
+     */
+    private final ComboPooledDataSource dataSource;
+
+    /**
+     * Number of connections checked out.
+     */
+    private final AtomicLong checkoutCount = new AtomicLong();
+
+    /**
+     * Total time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * Longest time spent waiting for a connection, in nanoseconds.
+     */
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
+    /**
+     * Number of checkouts that timed out.
+     */
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * Constructor of ConnectionPool.
+     *
+     * @param name Name of the pool
+     * @param properties Hibernate properties
+     */
+    public ConnectionPool(String name, Map<Object, Object> properties) throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDataSourceName(name);
+        dataSource.setDriverClass((String) properties.get("hibernate.connection.driver_class"));
+        dataSource.setJdbcUrl((String) properties.get("hibernate.connection.url"));
+        dataSource.setUser((String) properties.get("hibernate.connection.username"));
+        dataSource.setPassword((String) properties.get("hibernate.connection.password"));
+
+        int minSize = getInt(properties, "min_size", 1);
+        dataSource.setMinPoolSize(minSize);
+        dataSource.setInitialPoolSize(minSize);
+        dataSource.setMaxPoolSize(getInt(properties, "max_size", 30));
+        dataSource.setAcquireIncrement(getInt(properties, "acquire_increment", 3));
+        dataSource.setMaxIdleTime(getInt(properties, "timeout", 5000));
+        dataSource.setIdleConnectionTestPeriod(getInt(properties, "idle_test_period", 10));
+        dataSource.setMaxStatements(getInt(properties, "max_statements", 0));
+        dataSource.setCheckoutTimeout(getInt(properties, "checkout_timeout", 30000));
+        int unreturnedConnectionTimeout = getInt(properties, "unreturned_connection_timeout", 0);
+        dataSource.setUnreturnedConnectionTimeout(unreturnedConnectionTimeout);
+        dataSource.setDebugUnreturnedConnectionStackTraces(unreturnedConnectionTimeout > 0);
+    }
+
+    /**
+     * Returns an integer property of the pool.
+     *
+     * @param properties Hibernate properties
+     * @param name Property name, without prefix
+     * @param defaultValue Default value
+     * @return Value
+     */
+    private static int getInt(Map<Object, Object> properties, String name, int defaultValue) {
+        Object value = properties.get(PROPERTY_PREFIX + name);
+        return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            if (ExceptionUtils.indexOfThrowable(e, TimeoutException.class) >= 0) {
+                timeoutCount.incrementAndGet();
+                log.error("Timeout waiting for a database connection, " + getActiveCount() + " connections are in use");
+            }
+            throw e;
+        } finally {
+            long wait = System.nanoTime() - start;
+            checkoutCount.incrementAndGet();
+            waitTime.addAndGet(wait);
+            long max = maxWaitTime.get();
+            while (wait > max && !maxWaitTime.compareAndSet(max, wait)) {
+                max = maxWaitTime.get();
+            }
+            if (log.isWarnEnabled() && wait > TimeUnit.MILLISECONDS.toNanos(SLOW_CHECKOUT_THRESHOLD)) {
+                log.warn("Waited " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms for a database connection");
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Hibernate passes the configured credentials, don't create a separate pool for them
+        if (Objects.equal(username, dataSource.getUser()) && Objects.equal(password, dataSource.getPassword())) {
+            return getConnection();
+        }
+        return dataSource.getConnection(username, password);
+    }
+
+    /**
+     * Closes all connections of the pool.
+     */
+    public void close() {
+        dataSource.close();
+    }
+
+    /**
+     * Returns the number of connections in use.
+     *
+     * @return Number of connections in use
+     */
+    public int getActiveCount() {
+        try {
+            return dataSource.getNumBusyConnectionsDefaultUser();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return Number of idle connections
+     */
+    public int getIdleCount() {
+        try {
+            return dataSource.getNumIdleConnectionsDefaultUser();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of threads waiting for a connection.
+     *
+     * @return Number of threads waiting for a connection
+     */
+    public int getWaitingCount() {
+        try {
+            return dataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     *
+     * @return Maximum number of connections
+     */
+    public int getMaxSize() {
+        return dataSource.getMaxPoolSize();
+    }
+
+    /**
+     * Returns the number of connections checked out since the start.
+     *
+     * @return Number of checkouts
+     */
+    public long getCheckoutCount() {
+        return checkoutCount.get();
+    }
+
+    /**
+     * Returns the total time spent waiting for a connection since the start.
+     *
+     * @return Wait time in milliseconds
+     */
+    public long getWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTime.get());
+    }
+
+    /**
+     * Returns the longest time spent waiting for a connection since the start.
+     *
+     * @return Wait time in milliseconds
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get());
+    }
+
+    /**
+     * Returns the number of checkouts that timed out since the start.
+     *
+     * @return Number of timeouts
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+}
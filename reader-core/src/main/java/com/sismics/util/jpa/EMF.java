@@ -3,6 +3,8 @@ package com.sismics.util.jpa;
 import com.sismics.reader.core.util.DirectoryUtil;
 import com.sismics.util.EnvironmentUtil;
 import com.sismics.util.ResourceUtil;
+import com.sismics.util.jpa.cache.LocalRegionFactory;
+import org.hibernate.cache.internal.StandardQueryCache;
 import org.hibernate.cfg.Environment;
 import org.hibernate.internal.util.config.ConfigurationHelper;
 import org.hibernate.service.ServiceRegistry;
@@ -16,6 +18,7 @@ import java.io.File;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Entity manager factory.
@@ -29,12 +32,31 @@ public final class EMF {
 
     private static EntityManagerFactory emfInstance;
 
+    private static ConnectionPool connectionPool;
+
+    /**
+     * Prefix of the read replica properties.
+     */
+    public static final String REPLICA_PROPERTY_PREFIX = "hibernate.replica.";
+
+    private static EntityManagerFactory replicaEmfInstance;
+
+    private static ConnectionPool replicaConnectionPool;
+
+    private static long replicaWindow;
+
     static {
         try {
             properties = getEntityManagerProperties();
 
             Environment.verifyProperties(properties);
             ConfigurationHelper.resolvePlaceHolders(properties);
+
+            // Share a single connection pool between the database upgrade and the entity manager factory
+            if (!properties.containsKey(Environment.DATASOURCE) && !properties.containsKey(Environment.CONNECTION_PROVIDER)) {
+                connectionPool = new ConnectionPool("reader", properties);
+                properties.put(Environment.DATASOURCE, connectionPool);
+            }
             ServiceRegistry reg = new ServiceRegistryBuilder().applySettings(properties).buildServiceRegistry();
 
             DbOpenHelper openHelper = new DbOpenHelper(reg) {
@@ -53,14 +75,61 @@ public final class EMF {
             };
             openHelper.open();
             
-            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", getEntityManagerProperties());
+            emfInstance = Persistence.createEntityManagerFactory("transactions-optional", properties);
             
         } catch (Throwable t) {
             log.error("Error creating EMF", t);
         }
+
+        try {
+            if (properties != null && properties.containsKey(REPLICA_PROPERTY_PREFIX + "url")) {
+                createReplica();
+            }
+        } catch (Throwable t) {
+            log.error("Error creating the read replica EMF, reading from the primary database", t);
+        }
+    }
+
+    /**
+     * Creates the entity manager factory of the read replica.
+     * The replica is configured by the following properties:
+     * <ul>
+     *     <li>hibernate.replica.url: JDBC URL of the replica</li>
+     *     <li>hibernate.replica.username, hibernate.replica.password: credentials (default to the primary ones)</li>
+     *     <li>hibernate.replica.window: time in seconds during which a user reads from the primary database
+     *     after modifying its data, must be greater than the replication lag (default 10)</li>
+     * </ul>
+     * The schema of the replica is maintained by the replication, and its data is never cached.
+     */
+    private static void createReplica() throws Exception {
+        Map<Object, Object> replicaProperties = new HashMap<Object, Object>(properties);
+        replicaProperties.remove(Environment.DATASOURCE);
+        replicaProperties.put("hibernate.connection.url", properties.get(REPLICA_PROPERTY_PREFIX + "url"));
+        if (properties.containsKey(REPLICA_PROPERTY_PREFIX + "username")) {
+            replicaProperties.put("hibernate.connection.username", properties.get(REPLICA_PROPERTY_PREFIX + "username"));
+        }
+        if (properties.containsKey(REPLICA_PROPERTY_PREFIX + "password")) {
+            replicaProperties.put("hibernate.connection.password", properties.get(REPLICA_PROPERTY_PREFIX + "password"));
+        }
+        replicaProperties.put("hibernate.cache.use_second_level_cache", "false");
+        replicaProperties.put("hibernate.cache.use_query_cache", "false");
+        replicaProperties.remove("hibernate.cache.region.factory_class");
+
+        replicaConnectionPool = new ConnectionPool("reader-replica", replicaProperties);
+        replicaProperties.put(Environment.DATASOURCE, replicaConnectionPool);
+        replicaWindow = TimeUnit.SECONDS.toMillis(ConfigurationHelper.getInt(REPLICA_PROPERTY_PREFIX + "window", properties, 10));
+
+        log.info("Reading from the replica: " + replicaProperties.get("hibernate.connection.url"));
+        replicaEmfInstance = Persistence.createEntityManagerFactory("transactions-optional", replicaProperties);
     }
     
     private static Map<Object, Object> getEntityManagerProperties() {
+        Map<Object, Object> props = loadEntityManagerProperties();
+        setCacheProperties(props);
+        return props;
+    }
+
+    private static Map<Object, Object> loadEntityManagerProperties() {
         // Use external properties file if it exists
         String propertiesFile = EnvironmentUtil.getHibernateProperties();
         if (propertiesFile != null) {
@@ -98,10 +167,45 @@ public final class EMF {
         props.put("hibernate.show_sql", "false");
         props.put("hibernate.format_sql", "false");
         props.put("hibernate.max_fetch_depth", "5");
-        props.put("hibernate.cache.use_second_level_cache", "false");
+        props.put("hibernate.cache.use_second_level_cache", "true");
         return props;
     }
 
+    /**
+     * Configures the second-level cache regions, if not configured explicitly.
+     * The slow-changing entities (configuration, locales, roles, users, categories, feeds) are cached locally.
+     *
+     * @param props Entity manager properties
+     */
+    private static void setCacheProperties(Map<Object, Object> props) {
+        if (!props.containsKey("hibernate.cache.use_second_level_cache")) {
+            props.put("hibernate.cache.use_second_level_cache", "true");
+        }
+        if (!props.containsKey("hibernate.cache.use_query_cache")) {
+            props.put("hibernate.cache.use_query_cache", props.get("hibernate.cache.use_second_level_cache"));
+        }
+        if (!props.containsKey("hibernate.cache.region.factory_class")) {
+            props.put("hibernate.cache.region.factory_class", LocalRegionFactory.class.getName());
+        }
+        setCacheRegionProperties(props, "config", 100, 3600);
+        setCacheRegionProperties(props, "locale", 100, 0);
+        setCacheRegionProperties(props, "role", 1000, 0);
+        setCacheRegionProperties(props, "user", 1000, 600);
+        setCacheRegionProperties(props, "category", 10000, 600);
+        setCacheRegionProperties(props, "feed", 10000, 600);
+        setCacheRegionProperties(props, StandardQueryCache.class.getName(), 1000, 600);
+    }
+
+    private static void setCacheRegionProperties(Map<Object, Object> props, String region, int maxEntries, int ttl) {
+        String prefix = LocalRegionFactory.PROPERTY_PREFIX + region;
+        if (!props.containsKey(prefix + ".max_entries")) {
+            props.put(prefix + ".max_entries", String.valueOf(maxEntries));
+        }
+        if (!props.containsKey(prefix + ".ttl")) {
+            props.put(prefix + ".ttl", String.valueOf(ttl));
+        }
+    }
+
     /**
      * Private constructor.
      */
@@ -117,6 +221,61 @@ public final class EMF {
         return emfInstance;
     }
 
+    /**
+     * Closes the entity manager factories and their connection pools.
+     * Called when the application is shut down, after the services using the database are stopped.
+     */
+    public static void close() {
+        if (replicaEmfInstance != null) {
+            replicaEmfInstance.close();
+        }
+        if (replicaConnectionPool != null) {
+            replicaConnectionPool.close();
+        }
+        if (emfInstance != null) {
+            emfInstance.close();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    /**
+     * Returns the connection pool.
+     * 
+     * @return Connection pool, or null if the connections are provided by an external data source
+     */
+    public static ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Returns the entity manager factory of the read replica.
+     * 
+     * @return Instance of EMF, or null if no replica is configured
+     */
+    public static EntityManagerFactory getReplica() {
+        return replicaEmfInstance;
+    }
+
+    /**
+     * Returns the connection pool of the read replica.
+     * 
+     * @return Connection pool, or null if no replica is configured
+     */
+    public static ConnectionPool getReplicaConnectionPool() {
+        return replicaConnectionPool;
+    }
+
+    /**
+     * Returns the time during which a user reads from the primary database after modifying its data.
+     * 
+     * @return Time in milliseconds
+     */
+    public static long getReplicaWindow() {
+        return replicaWindow;
+    }
+
     public static boolean isDriverHsql() {
         String driver = getDriver();
         return driver.contains("hsqldb");
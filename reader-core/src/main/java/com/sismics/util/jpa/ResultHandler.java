@@ -0,0 +1,15 @@
+package com.sismics.util.jpa;
+
+/**
+ * Handles the results of a query one by one, as they are read from the database.
+ *
+ * @author jtremeaux
+ */
+public interface ResultHandler<T> {
+    /**
+     * Handles a result.
+     *
+     * @param result Mapped result
+     */
+    void handle(T result) throws Exception;
+}
@@ -28,7 +28,7 @@ public abstract class ResultMapper<T> {
      * @return The mapped objects
      */
     public List<T> map(List<Object[]> rows) {
-        List<T> resultList = new ArrayList<T>();
+        List<T> resultList = new ArrayList<T>(rows.size());
         for (Object[] row : rows) {
             resultList.add(map(row));
         }
@@ -0,0 +1,166 @@
+package com.sismics.util.jpa.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+
+/**
+ * Entity region of the local second-level cache.
+ * Only the read-only and nonstrict read-write strategies are supported: modified entities are evicted
+ * and read again from the database, stale entries are bounded by the time to live of the region.
+ *
+ * @author jtremeaux
+ */
+public class LocalEntityRegion extends LocalRegion implements EntityRegion {
+    /**
+     * Description of the cached data.
+     */
+    private final CacheDataDescription cacheDataDescription;
+
+    /**
+     * Constructor of LocalEntityRegion.
+     *
+     * @param name Region name
+     * @param regionFactory Region factory
+     * @param maxEntries Maximum number of entries, unbounded if 0
+     * @param ttl Time to live of the entries in seconds, no expiration if 0
+     * @param cacheDataDescription Description of the cached data
+     */
+    public LocalEntityRegion(String name, LocalRegionFactory regionFactory, long maxEntries, long ttl, CacheDataDescription cacheDataDescription) {
+        super(name, regionFactory, maxEntries, ttl);
+        this.cacheDataDescription = cacheDataDescription;
+    }
+
+    @Override
+    public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+        if (accessType != AccessType.READ_ONLY && accessType != AccessType.NONSTRICT_READ_WRITE) {
+            throw new CacheException("Unsupported access type for region " + getName() + ": " + accessType.getExternalName());
+        }
+        return new AccessStrategy(accessType == AccessType.READ_ONLY);
+    }
+
+    @Override
+    public boolean isTransactionAware() {
+        return false;
+    }
+
+    @Override
+    public CacheDataDescription getCacheDataDescription() {
+        return cacheDataDescription;
+    }
+
+    /**
+     * Access strategy to the entity region.
+     */
+    private class AccessStrategy implements EntityRegionAccessStrategy {
+        /**
+         * True if the entities are never updated.
+         */
+        private final boolean readOnly;
+
+        /**
+         * Constructor of AccessStrategy.
+         *
+         * @param readOnly True if the entities are never updated
+         */
+        private AccessStrategy(boolean readOnly) {
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return LocalEntityRegion.this;
+        }
+
+        @Override
+        public Object get(Object key, long txTimestamp) throws CacheException {
+            return LocalEntityRegion.this.get(key);
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version) throws CacheException {
+            return putFromLoad(key, value, txTimestamp, version, false);
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version, boolean minimalPutOverride) throws CacheException {
+            if (minimalPutOverride && contains(key)) {
+                return false;
+            }
+            put(key, value);
+            return true;
+        }
+
+        @Override
+        public SoftLock lockItem(Object key, Object version) throws CacheException {
+            evict(key);
+            return null;
+        }
+
+        @Override
+        public SoftLock lockRegion() throws CacheException {
+            evictAll();
+            return null;
+        }
+
+        @Override
+        public void unlockItem(Object key, SoftLock lock) throws CacheException {
+            // Evict again, the entity may have been read between the update and the commit
+            evict(key);
+        }
+
+        @Override
+        public void unlockRegion(SoftLock lock) throws CacheException {
+            evictAll();
+        }
+
+        @Override
+        public boolean insert(Object key, Object value, Object version) throws CacheException {
+            // The entity is cached on its first read, the transaction may still be rolled back
+            return false;
+        }
+
+        @Override
+        public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        public boolean update(Object key, Object value, Object currentVersion, Object previousVersion) throws CacheException {
+            if (readOnly) {
+                throw new UnsupportedOperationException("Cannot update a read-only entity in region " + getName());
+            }
+            evict(key);
+            return false;
+        }
+
+        @Override
+        public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion, SoftLock lock) throws CacheException {
+            unlockItem(key, lock);
+            return false;
+        }
+
+        @Override
+        public void remove(Object key) throws CacheException {
+            evict(key);
+        }
+
+        @Override
+        public void removeAll() throws CacheException {
+            evictAll();
+        }
+
+        @Override
+        public void evict(Object key) throws CacheException {
+            LocalEntityRegion.this.evict(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            LocalEntityRegion.this.evictAll();
+        }
+    }
+}
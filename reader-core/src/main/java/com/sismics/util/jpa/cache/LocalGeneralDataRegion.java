@@ -0,0 +1,23 @@
+package com.sismics.util.jpa.cache;
+
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+
+/**
+ * Region of the local second-level cache used by the query cache (query results and table update timestamps).
+ *
+ * @author jtremeaux
+ */
+public class LocalGeneralDataRegion extends LocalRegion implements QueryResultsRegion, TimestampsRegion {
+    /**
+     * Constructor of LocalGeneralDataRegion.
+     *
+     * @param name Region name
+     * @param regionFactory Region factory
+     * @param maxEntries Maximum number of entries, unbounded if 0
+     * @param ttl Time to live of the entries in seconds, no expiration if 0
+     */
+    public LocalGeneralDataRegion(String name, LocalRegionFactory regionFactory, long maxEntries, long ttl) {
+        super(name, regionFactory, maxEntries, ttl);
+    }
+}
@@ -0,0 +1,145 @@
+package com.sismics.util.jpa.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.Region;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region of the local second-level cache, backed by a bounded in-memory cache.
+ *
+ * @author jtremeaux
+ */
+public abstract class LocalRegion implements Region {
+    /**
+     * Region name.
+     */
+    private final String name;
+
+    /**
+     * Region factory.
+     */
+    private final LocalRegionFactory regionFactory;
+
+    /**
+     * Cached data.
+     */
+    private final Cache<Object, Object> cache;
+
+    /**
+     * Constructor of LocalRegion.
+     *
+     * @param name Region name
+     * @param regionFactory Region factory
+     * @param maxEntries Maximum number of entries, unbounded if 0
+     * @param ttl Time to live of the entries in seconds, no expiration if 0
+     */
+    protected LocalRegion(String name, LocalRegionFactory regionFactory, long maxEntries, long ttl) {
+        this.name = name;
+        this.regionFactory = regionFactory;
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats();
+        if (maxEntries > 0) {
+            cacheBuilder.maximumSize(maxEntries);
+        }
+        if (ttl > 0) {
+            cacheBuilder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+        }
+        cache = cacheBuilder.build();
+    }
+
+    /**
+     * Returns a cached value.
+     *
+     * @param key Key
+     * @return Value, or null if not cached
+     */
+    public Object get(Object key) throws CacheException {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Caches a value.
+     *
+     * @param key Key
+     * @param value Value
+     */
+    public void put(Object key, Object value) throws CacheException {
+        cache.put(key, value);
+    }
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key Key
+     */
+    public void evict(Object key) throws CacheException {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Removes all values from the cache.
+     */
+    public void evictAll() throws CacheException {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the statistics of the region (hits, misses, evictions).
+     *
+     * @return Statistics
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void destroy() throws CacheException {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    @Override
+    public long getSizeInMemory() {
+        // Not computed
+        return -1;
+    }
+
+    @Override
+    public long getElementCountInMemory() {
+        return cache.size();
+    }
+
+    @Override
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    @Override
+    public Map toMap() {
+        return new HashMap<Object, Object>(cache.asMap());
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return regionFactory.nextTimestamp();
+    }
+
+    @Override
+    public int getTimeout() {
+        return LocalRegionFactory.TIMEOUT;
+    }
+}
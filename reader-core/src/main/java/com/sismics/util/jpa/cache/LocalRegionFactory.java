@@ -0,0 +1,170 @@
+package com.sismics.util.jpa.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.*;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.Settings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Factory of the local second-level cache regions.
+ * Each region is a bounded in-memory cache, configured by the following Hibernate properties:
+ * <ul>
+ *     <li>hibernate.cache.local.[region].max_entries: maximum number of entries (default 10000, 0 for unbounded)</li>
+ *     <li>hibernate.cache.local.[region].ttl: time to live of the entries in seconds (default 600, 0 for no expiration)</li>
+ * </ul>
+ * The cache is local to the JVM, it must not be enabled when several nodes share the same database.
+ *
+ * @author jtremeaux
+ */
+public class LocalRegionFactory implements RegionFactory {
+    /**
+     * Prefix of the region properties.
+     */
+    public static final String PROPERTY_PREFIX = "hibernate.cache.local.";
+
+    /**
+     * Default maximum number of entries of a region.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /**
+     * Default time to live of the entries of a region, in seconds.
+     */
+    private static final int DEFAULT_TTL = 600;
+
+    /**
+     * Number of timestamp values per millisecond.
+     */
+    private static final long TIMESTAMP_PER_MS = 4096;
+
+    /**
+     * Lock timeout (60 seconds), in timestamp units.
+     */
+    static final int TIMEOUT = (int) (60000 * TIMESTAMP_PER_MS);
+
+    /**
+     * Regions created by all factories, by name.
+     */
+    private static final ConcurrentMap<String, LocalRegion> regionMap = new ConcurrentHashMap<String, LocalRegion>();
+
+    /**
+     * Last timestamp.
+     */
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    /**
+     * Hibernate properties.
+     */
+    private Properties properties;
+
+    /**
+     * Returns the regions of the second-level cache, for monitoring.
+     *
+     * @return List of regions
+     */
+    public static List<LocalRegion> getRegionList() {
+        return new ArrayList<LocalRegion>(regionMap.values());
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        this.properties = properties;
+    }
+
+    @Override
+    public void stop() {
+        for (LocalRegion region : regionMap.values()) {
+            region.destroy();
+        }
+        regionMap.clear();
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        // Puts are cheap in memory
+        return false;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.NONSTRICT_READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        // Strictly increasing, several timestamps can be generated in the same millisecond
+        long now = System.currentTimeMillis() * TIMESTAMP_PER_MS;
+        while (true) {
+            long last = lastTimestamp.get();
+            long next = now > last ? now : last + 1;
+            if (lastTimestamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        return register(new LocalEntityRegion(regionName, this, getMaxEntries(regionName), getTtl(regionName), metadata));
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        throw new CacheException("Natural ID regions are not supported: " + regionName);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties, CacheDataDescription metadata) throws CacheException {
+        throw new CacheException("Collection regions are not supported: " + regionName);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
+        return register(new LocalGeneralDataRegion(regionName, this, getMaxEntries(regionName), getTtl(regionName)));
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
+        // The update timestamps must never be evicted, or the query cache would return stale results
+        return register(new LocalGeneralDataRegion(regionName, this, 0, 0));
+    }
+
+    /**
+     * Registers a new region.
+     *
+     * @param region Region
+     * @return Region
+     */
+    private <T extends LocalRegion> T register(T region) {
+        regionMap.put(region.getName(), region);
+        return region;
+    }
+
+    /**
+     * Returns the maximum number of entries of a region.
+     *
+     * @param regionName Region name
+     * @return Maximum number of entries
+     */
+    private long getMaxEntries(String regionName) {
+        return ConfigurationHelper.getInt(PROPERTY_PREFIX + regionName + ".max_entries", properties, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Returns the time to live of the entries of a region.
+     *
+     * @param regionName Region name
+     * @return Time to live in seconds
+     */
+    private long getTtl(String regionName) {
+        return ConfigurationHelper.getInt(PROPERTY_PREFIX + regionName + ".ttl", properties, DEFAULT_TTL);
+    }
+}
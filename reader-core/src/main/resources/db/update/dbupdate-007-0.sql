@@ -0,0 +1,8 @@
+create cached table T_TIMELINE ( TIM_IDUSERARTICLE_C varchar(36) not null, TIM_IDUSER_C varchar(36) not null, TIM_PUBLICATIONDATE_D datetime not null, TIM_IDARTICLE_C varchar(36) not null, TIM_IDFEED_C varchar(36) not null, TIM_IDFEEDSUBSCRIPTION_C varchar(36) not null, TIM_IDCATEGORY_C varchar(36) not null, TIM_UNREAD_B bit not null, primary key (TIM_IDUSERARTICLE_C) );
+create index IDX_TIM_IDUSER_C on T_TIMELINE (TIM_IDUSER_C, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C);
+create index IDX_TIM_UNREAD_B on T_TIMELINE (TIM_IDUSER_C, TIM_UNREAD_B, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C);
+create index IDX_TIM_IDCATEGORY_C on T_TIMELINE (TIM_IDCATEGORY_C, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C);
+create index IDX_TIM_IDFEEDSUBSCRIPTION_C on T_TIMELINE (TIM_IDFEEDSUBSCRIPTION_C, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C);
+create index FK_TIM_IDARTICLE_C on T_TIMELINE (TIM_IDARTICLE_C);
+insert into T_TIMELINE (TIM_IDUSERARTICLE_C, TIM_IDUSER_C, TIM_PUBLICATIONDATE_D, TIM_IDARTICLE_C, TIM_IDFEED_C, TIM_IDFEEDSUBSCRIPTION_C, TIM_IDCATEGORY_C, TIM_UNREAD_B) select ua.USA_ID_C, ua.USA_IDUSER_C, a.ART_PUBLICATIONDATE_D, a.ART_ID_C, a.ART_IDFEED_C, fs.FES_ID_C, fs.FES_IDCATEGORY_C, (ua.USA_READDATE_D is null) from T_USER_ARTICLE ua join T_ARTICLE a on (a.ART_ID_C = ua.USA_IDARTICLE_C and a.ART_DELETEDATE_D is null) join T_FEED_SUBSCRIPTION fs on (fs.FES_IDFEED_C = a.ART_IDFEED_C and fs.FES_IDUSER_C = ua.USA_IDUSER_C and fs.FES_DELETEDATE_D is null) where ua.USA_DELETEDATE_D is null;
+update T_CONFIG set CFG_VALUE_C='7' where CFG_ID_C='DB_VERSION';
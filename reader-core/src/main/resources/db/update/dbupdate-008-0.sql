@@ -0,0 +1,3 @@
+alter table T_FEED add column FED_SYNCFAILCOUNT_N int default 0 not null;
+update T_FEED f set FED_SYNCFAILCOUNT_N = (select count(fsy.FSY_ID_C) from (select * from T_FEED_SYNCHRONIZATION fsy where fsy.FSY_IDFEED_C = f.FED_ID_C order by fsy.FSY_CREATEDATE_D desc limit 5) fsy where fsy.FSY_SUCCESS_B = false);
+update T_CONFIG set CFG_VALUE_C='8' where CFG_ID_C='DB_VERSION';
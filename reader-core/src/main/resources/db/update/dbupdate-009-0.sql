@@ -0,0 +1,3 @@
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('SEARCH_SNIPPET_COUNT', '3');
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('SEARCH_SNIPPET_LENGTH', '200');
+update T_CONFIG set CFG_VALUE_C='9' where CFG_ID_C='DB_VERSION';
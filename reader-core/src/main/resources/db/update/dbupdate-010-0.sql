@@ -0,0 +1,2 @@
+insert into T_CONFIG(CFG_ID_C, CFG_VALUE_C) values('LUCENE_SHARD_RETENTION', '0');
+update T_CONFIG set CFG_VALUE_C='10' where CFG_ID_C='DB_VERSION';
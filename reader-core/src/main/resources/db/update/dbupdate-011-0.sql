@@ -0,0 +1,3 @@
+alter table T_ARTICLE add column ART_SUMMARY_C varchar(1000);
+update T_ARTICLE set ART_SUMMARY_C = substring(ART_DESCRIPTION_C, 1, 1000);
+update T_CONFIG set CFG_VALUE_C='11' where CFG_ID_C='DB_VERSION';
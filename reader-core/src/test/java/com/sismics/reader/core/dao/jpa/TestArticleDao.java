@@ -0,0 +1,124 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Tests the article DAO.
+ *
+ * @author jtremeaux
+ */
+public class TestArticleDao extends BaseTransactionalTest {
+    @Test
+    public void testScroll() throws Exception {
+        // Create a feed with 3 articles
+        Feed feed = new Feed();
+        feed.setRssUrl("http://localhost/scroll.xml");
+        String feedId = new FeedDao().create(feed);
+        EntityManagerUtil.flush();
+
+        ArticleDao articleDao = new ArticleDao();
+        for (int i = 0; i < 3; i++) {
+            Article article = new Article();
+            article.setFeedId(feedId);
+            article.setGuid("scroll" + i);
+            article.setTitle("Article " + i);
+            article.setDescription("Description " + i);
+            article.setPublicationDate(new Date(1000000000000L + i));
+            articleDao.create(article);
+        }
+
+        // Scroll the articles of the feed, the results are the same as the list
+        final List<ArticleDto> articleList = Lists.newArrayList();
+        articleDao.scrollByCriteria(new ArticleCriteria().setFeedId(feedId), articleList::add);
+        assertEquals(3, articleList.size());
+        assertEquals(articleDao.findByCriteria(new ArticleCriteria().setFeedId(feedId)).size(), articleList.size());
+        assertEquals("Article 0", articleList.get(0).getTitle());
+
+        // Scroll with a list parameter
+        articleList.clear();
+        articleDao.scrollByCriteria(new ArticleCriteria().setGuidIn(Lists.newArrayList("scroll1", "scroll2", "unknown")), articleList::add);
+        assertEquals(2, articleList.size());
+
+        // Only the titles of the most recent articles are read
+        List<ArticleDto> titleList = articleDao.findTitleByFeedId(feedId, 2);
+        assertEquals(2, titleList.size());
+        assertEquals("Article 2", titleList.get(0).getTitle());
+        assertEquals("Article 1", titleList.get(1).getTitle());
+        assertNull(titleList.get(0).getDescription());
+
+        TransactionUtil.commit();
+    }
+
+    @Test
+    public void testUpdateVersion() throws Exception {
+        // Create a user with a subscription to a feed, and an article
+        User user = new User();
+        user.setUsername("articleversion");
+        user.setEmail("articleversion@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        Category category = new Category();
+        category.setUserId(userId);
+        category.setOrder(0);
+        String categoryId = new CategoryDao().create(category);
+
+        Feed feed = new Feed();
+        feed.setRssUrl("http://localhost/articleversion.xml");
+        String feedId = new FeedDao().create(feed);
+
+        FeedSubscription feedSubscription = new FeedSubscription();
+        feedSubscription.setUserId(userId);
+        feedSubscription.setFeedId(feedId);
+        feedSubscription.setCategoryId(categoryId);
+        feedSubscription.setOrder(0);
+        feedSubscription.setUnreadCount(0);
+        new FeedSubscriptionDao().create(feedSubscription);
+        EntityManagerUtil.flush();
+
+        ArticleDao articleDao = new ArticleDao();
+        Article article = new Article();
+        article.setFeedId(feedId);
+        article.setGuid("articleversion");
+        article.setTitle("Article");
+        article.setPublicationDate(new Date());
+        String articleId = articleDao.create(article);
+        UserArticle userArticle = new UserArticle();
+        userArticle.setArticleId(articleId);
+        userArticle.setUserId(userId);
+        new UserArticleDao().create(userArticle);
+        TransactionUtil.commit();
+
+        // Updating an article doesn't query the subscribers, the synchronization bumps them once per feed
+        String version = UserVersionUtil.getVersion(userId);
+        article.setTitle("Updated article");
+        articleDao.update(article);
+        TransactionUtil.commit();
+        assertEquals(version, UserVersionUtil.getVersion(userId));
+        UserVersionUtil.bumpByFeed(feedId);
+        TransactionUtil.commit();
+        assertFalse(version.equals(UserVersionUtil.getVersion(userId)));
+
+        // The version of the subscribers changes when the article is deleted
+        version = UserVersionUtil.getVersion(userId);
+        articleDao.delete(articleId);
+        TransactionUtil.commit();
+        assertFalse(version.equals(UserVersionUtil.getVersion(userId)));
+    }
+}
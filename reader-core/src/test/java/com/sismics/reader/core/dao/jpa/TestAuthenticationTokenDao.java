@@ -0,0 +1,102 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.model.jpa.AuthenticationToken;
+import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.util.AuthenticationUtil;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the authentication token DAO.
+ *
+ * @author jtremeaux
+ */
+public class TestAuthenticationTokenDao extends BaseTransactionalTest {
+    @Test
+    public void testCache() throws Exception {
+        // Create a user with a token
+        User user = new User();
+        user.setUsername("token");
+        user.setEmail("token@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+        AuthenticationToken authenticationToken = new AuthenticationToken();
+        authenticationToken.setUserId(userId);
+        String token = authenticationTokenDao.create(authenticationToken);
+        EntityManagerUtil.flush();
+
+        // The token is cached and detached
+        AuthenticationToken cachedToken = authenticationTokenDao.get(token);
+        assertNotNull(cachedToken);
+        cachedToken = authenticationTokenDao.get(token);
+        assertEquals(userId, cachedToken.getUserId());
+        assertTrue(cachedToken != authenticationTokenDao.get(token));
+
+        // The connections are coalesced and written later
+        authenticationTokenDao.updateLastConnectionDate(token);
+        authenticationTokenDao.updateLastConnectionDate(token);
+        assertNotNull(authenticationTokenDao.get(token).getLastConnectionDate());
+        assertEquals(1, authenticationTokenDao.flushLastConnectionDate());
+        assertEquals(0, authenticationTokenDao.flushLastConnectionDate());
+        Date lastConnectionDate = (Date) ThreadLocalContext.get().getEntityManager()
+                .createNativeQuery("select AUT_LASTCONNECTIONDATE_D from T_AUTHENTICATION_TOKEN where AUT_ID_C = :id")
+                .setParameter("id", token)
+                .getSingleResult();
+        assertNotNull(lastConnectionDate);
+
+        // The base functions are cached
+        RoleBaseFunctionDao roleBaseFunctionDao = new RoleBaseFunctionDao();
+        assertEquals(roleBaseFunctionDao.findByRoleId("admin"), roleBaseFunctionDao.findByRoleId("admin"));
+
+        // Deleted tokens are not served from the cache
+        authenticationTokenDao.delete(token);
+        assertNull(authenticationTokenDao.get(token));
+
+        TransactionUtil.commit();
+    }
+
+    @Test
+    public void testInvalidationAfterCommit() throws Exception {
+        // Create a user with a cached token
+        User user = new User();
+        user.setUsername("token_commit");
+        user.setEmail("token_commit@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        AuthenticationTokenDao authenticationTokenDao = new AuthenticationTokenDao();
+        AuthenticationToken authenticationToken = new AuthenticationToken();
+        authenticationToken.setUserId(userId);
+        String token = authenticationTokenDao.create(authenticationToken);
+        TransactionUtil.commit();
+        AuthenticationToken cachedToken = authenticationTokenDao.get(token);
+        assertNotNull(cachedToken);
+
+        // A request reading the token before the deletion doesn't cache it
+        long invalidationCount = AuthenticationUtil.getInvalidationCount();
+        authenticationTokenDao.delete(token);
+        AuthenticationUtil.putToken(cachedToken, invalidationCount);
+        assertNull(AuthenticationUtil.getToken(token));
+
+        // A request reading the token until the deletion is committed caches it, it is removed on commit
+        AuthenticationUtil.putToken(cachedToken, AuthenticationUtil.getInvalidationCount());
+        assertNotNull(AuthenticationUtil.getToken(token));
+        TransactionUtil.commit();
+        assertNull(AuthenticationUtil.getToken(token));
+        assertNull(authenticationTokenDao.get(token));
+    }
+}
@@ -0,0 +1,81 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Tests the feed DAO.
+ *
+ * @author jtremeaux
+ */
+public class TestFeedDao extends BaseTransactionalTest {
+    @Test
+    public void testSynchronizationFailCount() throws Exception {
+        // Create a user with a subscription to a feed
+        User user = new User();
+        user.setUsername("syncfail");
+        user.setEmail("syncfail@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        Category category = new Category();
+        category.setUserId(userId);
+        category.setOrder(0);
+        String categoryId = new CategoryDao().create(category);
+
+        FeedDao feedDao = new FeedDao();
+        Feed feed = new Feed();
+        feed.setRssUrl("http://localhost/syncfail.xml");
+        String feedId = feedDao.create(feed);
+
+        FeedSubscription feedSubscription = new FeedSubscription();
+        feedSubscription.setUserId(userId);
+        feedSubscription.setFeedId(feedId);
+        feedSubscription.setCategoryId(categoryId);
+        feedSubscription.setOrder(0);
+        feedSubscription.setUnreadCount(0);
+        new FeedSubscriptionDao().create(feedSubscription);
+        EntityManagerUtil.flush();
+
+        // No synchronization yet
+        FeedSubscriptionCriteria criteria = new FeedSubscriptionCriteria().setUserId(userId);
+        FeedSubscriptionDto feedSubscriptionDto = new FeedSubscriptionDao().findByCriteria(criteria).get(0);
+        assertEquals(0, (int) feedSubscriptionDto.getSynchronizationFailCount());
+
+        // Record 2 failed synchronizations
+        FeedSynchronizationDao feedSynchronizationDao = new FeedSynchronizationDao();
+        for (int i = 0; i < 2; i++) {
+            FeedSynchronization feedSynchronization = new FeedSynchronization();
+            feedSynchronization.setFeedId(feedId);
+            feedSynchronization.setSuccess(false);
+            feedSynchronization.setDuration(0);
+            feedSynchronizationDao.create(feedSynchronization);
+        }
+        EntityManagerUtil.flush();
+        TransactionUtil.commit();
+        String version = UserVersionUtil.getVersion(userId);
+        feedDao.updateSynchronizationFailCount(feedId);
+        EntityManagerUtil.flush();
+
+        feedSubscriptionDto = new FeedSubscriptionDao().findByCriteria(criteria).get(0);
+        assertEquals(2, (int) feedSubscriptionDto.getSynchronizationFailCount());
+
+        // The subscribers are notified only when the count changes
+        TransactionUtil.commit();
+        assertFalse(version.equals(UserVersionUtil.getVersion(userId)));
+        version = UserVersionUtil.getVersion(userId);
+        feedDao.updateSynchronizationFailCount(feedId);
+        TransactionUtil.commit();
+        assertEquals(version, UserVersionUtil.getVersion(userId));
+    }
+}
@@ -3,10 +3,17 @@ package com.sismics.reader.core.dao.jpa;
 import com.sismics.reader.BaseTransactionalTest;
 import com.sismics.reader.core.model.jpa.User;
 import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.ConnectionPool;
+import com.sismics.util.jpa.EMF;
 import org.junit.Test;
 
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Tests the persistance layer.
@@ -32,4 +39,49 @@ public class TestJpa extends BaseTransactionalTest {
         assertNotNull(user);
         assertEquals("toto@reader.com", user.getEmail());
     }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        // The entity manager uses the pool
+        ConnectionPool connectionPool = EMF.getConnectionPool();
+        assertNotNull(connectionPool);
+        assertTrue(connectionPool.getCheckoutCount() > 0);
+        assertTrue(connectionPool.getMaxSize() > 0);
+
+        // Close the entity manager of the test, its connection is released
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        int activeCount = connectionPool.getActiveCount() - 1;
+        em.getTransaction().commit();
+        em.close();
+        ThreadLocalContext.get().setEntityManager(null);
+        waitForActiveCount(connectionPool, activeCount);
+        int idleCount = connectionPool.getIdleCount();
+        assertTrue(idleCount > 0);
+
+        // Check out a connection
+        long checkoutCount = connectionPool.getCheckoutCount();
+        Connection connection = connectionPool.getConnection();
+        assertEquals(checkoutCount + 1, connectionPool.getCheckoutCount());
+        assertEquals(activeCount + 1, connectionPool.getActiveCount());
+        assertEquals(idleCount - 1, connectionPool.getIdleCount());
+
+        // Release the connection
+        connection.close();
+        waitForActiveCount(connectionPool, activeCount);
+        assertEquals(idleCount, connectionPool.getIdleCount());
+        assertEquals(0, connectionPool.getTimeoutCount());
+    }
+
+    /**
+     * Waits for the connections to be checked back in the pool, c3p0 checks them in asynchronously.
+     *
+     * @param connectionPool Connection pool
+     * @param activeCount Expected number of connections in use
+     */
+    private void waitForActiveCount(ConnectionPool connectionPool, int activeCount) throws InterruptedException {
+        for (int i = 0; i < 50 && connectionPool.getActiveCount() != activeCount; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(activeCount, connectionPool.getActiveCount());
+    }
 }
@@ -0,0 +1,122 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.model.jpa.Feed;
+import com.sismics.reader.core.model.jpa.FeedSynchronization;
+import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.util.context.ThreadLocalContext;
+import com.sismics.util.jpa.cache.LocalRegion;
+import com.sismics.util.jpa.cache.LocalRegionFactory;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+
+/**
+ * Tests the second-level cache.
+ *
+ * @author jtremeaux
+ */
+public class TestSecondLevelCache extends BaseTransactionalTest {
+    @Test
+    public void testUserCache() throws Exception {
+        // Create a user
+        User user = new User();
+        user.setUsername("cache");
+        user.setEmail("cache@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        UserDao userDao = new UserDao();
+        String userId = userDao.create(user);
+        TransactionUtil.commit();
+        LocalRegion region = getRegion("user");
+
+        // The first read loads the user, the next ones hit the cache
+        clear();
+        assertNotNull(userDao.getById(userId));
+        long hitCount = region.getStats().hitCount();
+        clear();
+        assertNotNull(userDao.getById(userId));
+        assertEquals(hitCount + 1, region.getStats().hitCount());
+
+        // Native statements on other tables keep the cache
+        new TimelineDao().deleteByUser(userId);
+        TransactionUtil.commit();
+        clear();
+        assertNotNull(userDao.getById(userId));
+        assertEquals(hitCount + 2, region.getStats().hitCount());
+
+        // Updated users are evicted
+        user = userDao.getById(userId);
+        user.setEmail("cache2@reader.com");
+        userDao.update(user);
+        TransactionUtil.commit();
+        clear();
+        assertEquals("cache2@reader.com", userDao.getById(userId).getEmail());
+        assertEquals(hitCount + 2, region.getStats().hitCount());
+
+        TransactionUtil.commit();
+    }
+
+    @Test
+    public void testFeedCache() throws Exception {
+        // Create 2 feeds
+        FeedDao feedDao = new FeedDao();
+        Feed feed1 = new Feed();
+        feed1.setRssUrl("http://localhost/cache1.xml");
+        String feed1Id = feedDao.create(feed1);
+        Feed feed2 = new Feed();
+        feed2.setRssUrl("http://localhost/cache2.xml");
+        String feed2Id = feedDao.create(feed2);
+        TransactionUtil.commit();
+        LocalRegion region = getRegion("feed");
+
+        // Load the feeds in the cache
+        clear();
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+        assertNotNull(em.find(Feed.class, feed1Id));
+        assertNotNull(em.find(Feed.class, feed2Id));
+        clear();
+        long hitCount = region.getStats().hitCount();
+
+        // Synchronize the first feed, with a failure
+        feed1 = em.find(Feed.class, feed1Id);
+        feed1.setLastFetchDate(new Date());
+        feedDao.update(feed1);
+        FeedSynchronization feedSynchronization = new FeedSynchronization();
+        feedSynchronization.setFeedId(feed1Id);
+        feedSynchronization.setSuccess(false);
+        feedSynchronization.setDuration(0);
+        new FeedSynchronizationDao().create(feedSynchronization);
+        EntityManagerUtil.flush();
+        feedDao.updateSynchronizationFailCount(feed1Id);
+        TransactionUtil.commit();
+
+        // The other feed is still cached, the synchronized feed is reloaded with its new fail count
+        clear();
+        assertNotNull(em.find(Feed.class, feed2Id));
+        assertEquals(hitCount + 2, region.getStats().hitCount());
+        assertEquals(1, (int) em.find(Feed.class, feed1Id).getSynchronizationFailCount());
+
+        TransactionUtil.commit();
+    }
+
+    private void clear() {
+        EntityManagerUtil.flush();
+        ThreadLocalContext.get().getEntityManager().clear();
+    }
+
+    private LocalRegion getRegion(String name) {
+        for (LocalRegion region : LocalRegionFactory.getRegionList()) {
+            if (region.getName().equals(name)) {
+                return region;
+            }
+        }
+        return null;
+    }
+}
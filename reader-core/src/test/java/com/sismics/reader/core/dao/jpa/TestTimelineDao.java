@@ -0,0 +1,106 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests the timeline DAO.
+ *
+ * @author jtremeaux
+ */
+public class TestTimelineDao extends BaseTransactionalTest {
+    @Test
+    public void testTimeline() throws Exception {
+        // Create a user with a subscription to a feed
+        User user = new User();
+        user.setUsername("timeline");
+        user.setEmail("timeline@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        Category category = new Category();
+        category.setUserId(userId);
+        category.setOrder(0);
+        String categoryId = new CategoryDao().create(category);
+
+        Feed feed = new Feed();
+        feed.setRssUrl("http://localhost/timeline.xml");
+        String feedId = new FeedDao().create(feed);
+
+        FeedSubscription feedSubscription = new FeedSubscription();
+        feedSubscription.setUserId(userId);
+        feedSubscription.setFeedId(feedId);
+        feedSubscription.setCategoryId(categoryId);
+        feedSubscription.setOrder(0);
+        feedSubscription.setUnreadCount(0);
+        new FeedSubscriptionDao().create(feedSubscription);
+        EntityManagerUtil.flush();
+
+        // Fan out 2 articles
+        UserArticleDao userArticleDao = new UserArticleDao();
+        String[] userArticleId = new String[2];
+        String[] articleId = new String[2];
+        for (int i = 0; i < 2; i++) {
+            Article article = new Article();
+            article.setFeedId(feedId);
+            article.setGuid("timeline" + i);
+            article.setPublicationDate(new Date(1000000000000L + i));
+            articleId[i] = new ArticleDao().create(article);
+            UserArticle userArticle = new UserArticle();
+            userArticle.setArticleId(articleId[i]);
+            userArticle.setUserId(userId);
+            userArticleId[i] = userArticleDao.create(userArticle, false);
+        }
+        EntityManagerUtil.flush();
+        TimelineDao timelineDao = new TimelineDao();
+        timelineDao.createByArticle(Lists.newArrayList(articleId));
+        timelineDao.createByFeedSubscription(feedSubscription);
+
+        // Check the timeline, newest first
+        UserArticleCriteria unreadCriteria = new UserArticleCriteria()
+                .setUserId(userId)
+                .setSubscribed(true)
+                .setVisible(true)
+                .setUnread(true)
+                .setCategoryId(categoryId);
+        assertEquals(Lists.newArrayList(articleId[1], articleId[0]), getArticleIdList(userArticleDao, unreadCriteria));
+
+        // Mark the newest article as read
+        UserArticle userArticle = userArticleDao.getUserArticle(userArticleId[1], userId);
+        userArticle.setReadDate(new Date());
+        userArticleDao.update(userArticle);
+        assertEquals(Lists.newArrayList(articleId[0]), getArticleIdList(userArticleDao, unreadCriteria));
+
+        // Mark all articles as read
+        userArticleDao.markAsRead(new UserArticleCriteria().setUserId(userId));
+        assertEquals(0, getArticleIdList(userArticleDao, unreadCriteria).size());
+        unreadCriteria.setUnread(false);
+        assertEquals(2, getArticleIdList(userArticleDao, unreadCriteria).size());
+
+        // Unsubscribe
+        new FeedSubscriptionDao().delete(feedSubscription.getId());
+        assertEquals(0, getArticleIdList(userArticleDao, unreadCriteria).size());
+
+        TransactionUtil.commit();
+    }
+
+    private List<String> getArticleIdList(UserArticleDao userArticleDao, UserArticleCriteria criteria) {
+        List<String> articleIdList = Lists.newArrayList();
+        for (UserArticleDto userArticleDto : userArticleDao.findByCriteria(criteria)) {
+            articleIdList.add(userArticleDto.getArticleId());
+        }
+        return articleIdList;
+    }
+}
@@ -0,0 +1,153 @@
+package com.sismics.reader.core.dao.jpa;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.jpa.*;
+import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the user article DAO.
+ *
+ * @author jtremeaux
+ */
+public class TestUserArticleDao extends BaseTransactionalTest {
+    @Test
+    public void testBulkUpdate() throws Exception {
+        // Create a user with a subscription to a feed
+        User user = new User();
+        user.setUsername("bulk");
+        user.setEmail("bulk@reader.com");
+        user.setLocaleId("en");
+        user.setRoleId("user");
+        String userId = new UserDao().create(user);
+
+        Category category = new Category();
+        category.setUserId(userId);
+        category.setOrder(0);
+        String categoryId = new CategoryDao().create(category);
+
+        Feed feed = new Feed();
+        feed.setRssUrl("http://localhost/bulk.xml");
+        String feedId = new FeedDao().create(feed);
+
+        FeedSubscription feedSubscription = new FeedSubscription();
+        feedSubscription.setUserId(userId);
+        feedSubscription.setFeedId(feedId);
+        feedSubscription.setCategoryId(categoryId);
+        feedSubscription.setOrder(0);
+        feedSubscription.setUnreadCount(3);
+        new FeedSubscriptionDao().create(feedSubscription);
+        EntityManagerUtil.flush();
+
+        // Fan out 3 unread articles
+        UserArticleDao userArticleDao = new UserArticleDao();
+        List<String> userArticleIdList = Lists.newArrayList();
+        List<String> articleIdList = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            Article article = new Article();
+            article.setFeedId(feedId);
+            article.setGuid("bulk" + i);
+            article.setDescription("<p>Article <b>" + i + "</b></p>");
+            article.setPublicationDate(new Date(1000000000000L + i));
+            articleIdList.add(new ArticleDao().create(article));
+            UserArticle userArticle = new UserArticle();
+            userArticle.setArticleId(articleIdList.get(i));
+            userArticle.setUserId(userId);
+            userArticleIdList.add(userArticleDao.create(userArticle, false));
+        }
+        EntityManagerUtil.flush();
+        new TimelineDao().createByArticle(articleIdList);
+
+        // Unknown articles are not found
+        assertEquals(3, userArticleDao.findExistingId(Lists.newArrayList(userArticleIdList.get(0), "unknown", userArticleIdList.get(1), userArticleIdList.get(2)), userId).size());
+        assertEquals(0, userArticleDao.findExistingId(userArticleIdList, "unknown").size());
+
+        // List the articles as summaries, the description is not fetched
+        List<UserArticleDto> summaryList = userArticleDao.findByCriteria(new UserArticleCriteria()
+                .setUserId(userId)
+                .setSubscribed(true)
+                .setVisible(true)
+                .setSummary(true));
+        assertEquals(3, summaryList.size());
+        for (UserArticleDto userArticleDto : summaryList) {
+            assertNull(userArticleDto.getArticleDescription());
+            assertTrue(userArticleDto.getArticleSummary().matches("Article [0-2]"));
+        }
+
+        // Mark 2 articles as read, twice
+        userArticleDao.updateRead(userArticleIdList.subList(0, 2), userId, true);
+        userArticleDao.updateRead(userArticleIdList.subList(0, 2), userId, true);
+        assertEquals(1, getUnreadCount(userId));
+        UserArticleCriteria unreadCriteria = new UserArticleCriteria()
+                .setUserId(userId)
+                .setSubscribed(true)
+                .setVisible(true)
+                .setUnread(true);
+        assertEquals(1, userArticleDao.findByCriteria(unreadCriteria).size());
+
+        // Mark all articles as unread
+        userArticleDao.updateRead(userArticleIdList, userId, false);
+        assertEquals(3, getUnreadCount(userId));
+        assertEquals(3, userArticleDao.findByCriteria(unreadCriteria).size());
+
+        // Star 2 articles
+        userArticleDao.updateStarred(userArticleIdList.subList(1, 3), userId, true);
+        UserArticleCriteria starredCriteria = new UserArticleCriteria()
+                .setUserId(userId)
+                .setStarred(true);
+        assertEquals(2, userArticleDao.findByCriteria(starredCriteria).size());
+        userArticleDao.updateStarred(userArticleIdList, userId, false);
+        assertEquals(0, userArticleDao.findByCriteria(starredCriteria).size());
+
+        // Repair a drifted unread count
+        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+        feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), 42);
+        String cursor = null;
+        do {
+            cursor = feedSubscriptionDao.reconcileUnreadCount(cursor, 1);
+        } while (cursor != null);
+        assertEquals(3, getUnreadCount(userId));
+
+        // Mark all articles as read, and recompute the unread counts
+        userArticleDao.markAsRead(new UserArticleCriteria().setUserId(userId));
+        feedSubscriptionDao.recomputeUnreadCount(new FeedSubscriptionCriteria()
+                .setUserId(userId)
+                .setCategoryId(categoryId));
+        assertEquals(0, getUnreadCount(userId));
+
+        // Create a read user article outside of the fan out, as done for a search result, then mark it as unread
+        Article article = new Article();
+        article.setFeedId(feedId);
+        article.setGuid("search");
+        article.setPublicationDate(new Date(1000000000000L + 3));
+        String searchArticleId = new ArticleDao().create(article);
+        UserArticle userArticle = new UserArticle();
+        userArticle.setArticleId(searchArticleId);
+        userArticle.setUserId(userId);
+        userArticle.setReadDate(new Date());
+        String searchUserArticleId = userArticleDao.create(userArticle);
+        userArticleDao.updateRead(Lists.newArrayList(searchUserArticleId), userId, false);
+        assertEquals(1, getUnreadCount(userId));
+        List<UserArticleDto> unreadList = userArticleDao.findByCriteria(unreadCriteria);
+        assertEquals(1, unreadList.size());
+        assertEquals(searchArticleId, unreadList.get(0).getArticleId());
+
+        TransactionUtil.commit();
+    }
+
+    private int getUnreadCount(String userId) {
+        return new FeedSubscriptionDao().findByCriteria(new FeedSubscriptionCriteria().setUserId(userId)).get(0).getUnreadUserArticleCount();
+    }
+}
@@ -0,0 +1,78 @@
+package com.sismics.reader.core.dao.lucene;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.service.ShardedIndex;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.postingshighlight.PassageScorer;
+import org.apache.lucene.search.postingshighlight.PostingsHighlighter;
+import org.junit.Test;
+
+import java.text.BreakIterator;
+import java.util.Date;
+import java.util.Locale;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the snippet passage formatter.
+ *
+ * @author bgamard
+ */
+public class TestSnippetPassageFormatter {
+    @Test
+    public void testPrefix() {
+        SnippetPassageFormatter formatter = new SnippetPassageFormatter(20);
+        assertEquals(" short ", formatter.getPrefix("<p>short</p>"));
+
+        // The tags cut by the passage are removed
+        assertEquals(" abcdef…", formatter.getPrefix("<p>abcdef<a href=\"http://example.com\">link</a></p>"));
+        assertEquals("a long text without …", formatter.getPrefix("a long text without tags"));
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            description.append("<p>Sentence ").append(i).append(" is a filler without <b>interest</b>. </p>");
+        }
+        description.append("<p>This one contains the <a href=\"http://example.com\">needle</a> we are looking for.</p>");
+
+        ShardedIndex index = new ShardedIndex(null, null, 0, null);
+        ArticleDto article = new ArticleDto();
+        article.setId("article1");
+        article.setFeedId("feed1");
+        article.setUrl("http://example.com/article1");
+        article.setPublicationDate(new Date());
+        article.setTitle("Title");
+        article.setDescription(description.toString());
+        new ArticleDao().addDocuments(index, Lists.newArrayList(article));
+        index.commit();
+
+        DirectoryReader reader = DirectoryReader.open(index.getShards().get(0).getDirectory());
+        try {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TermQuery query = new TermQuery(new Term("description", "needle"));
+            TopDocs topDocs = searcher.search(query, 1);
+            PostingsHighlighter highlighter = new PostingsHighlighter(10000, BreakIterator.getSentenceInstance(Locale.ROOT),
+                    new PassageScorer(), new SnippetPassageFormatter(40));
+            String snippet = highlighter.highlight("description", query, searcher, topDocs, 3)[0];
+
+            // Only the matching passage is returned, as text
+            assertTrue(snippet.startsWith("…"));
+            assertTrue(snippet.contains("<span class=\"highlight\">needle</span>"));
+            assertFalse(snippet.contains("<a"));
+            assertFalse(snippet.contains("Sentence 0 "));
+            assertTrue(snippet.length() < 100);
+        } finally {
+            reader.close();
+            index.delete();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.sismics.reader.core.model.context;
+
+import com.google.common.util.concurrent.Service.State;
+import com.sismics.reader.BaseTransactionalTest;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+
+/**
+ * Test of the application context.
+ *
+ * @author jtremeaux
+ */
+public class TestAppContext extends BaseTransactionalTest {
+    @Test
+    public void testShutDown() throws Exception {
+        // The services are stopped
+        AppContext appContext = AppContext.getInstance();
+        appContext.shutDown();
+        assertEquals(State.TERMINATED, appContext.getFeedService().state());
+        assertEquals(State.TERMINATED, appContext.getIndexingService().state());
+        assertEquals(State.TERMINATED, appContext.getAuthenticationTokenService().state());
+
+        // The next use starts a new application context
+        AppContext newAppContext = AppContext.getInstance();
+        assertNotSame(appContext, newAppContext);
+        assertEquals(State.RUNNING, newAppContext.getIndexingService().state());
+    }
+}
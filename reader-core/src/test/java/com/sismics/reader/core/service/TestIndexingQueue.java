@@ -0,0 +1,37 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.model.jpa.Article;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test of the indexing queue.
+ *
+ * @author bgamard
+ */
+public class TestIndexingQueue {
+    @Test
+    public void testCoalesce() throws Exception {
+        IndexingQueue indexingQueue = new IndexingQueue(null, false);
+        assertEquals(0, indexingQueue.getDepth());
+        assertEquals(0, indexingQueue.getLag());
+
+        // Operations on the same article are coalesced
+        Article article1 = new Article();
+        article1.setId("article1");
+        Article article2 = new Article();
+        article2.setId("article2");
+        indexingQueue.add(IndexingQueue.Operation.CREATE, Lists.newArrayList(article1, article2));
+        indexingQueue.add(IndexingQueue.Operation.UPDATE, Lists.newArrayList(article1));
+        indexingQueue.add(IndexingQueue.Operation.DELETE, Lists.newArrayList(article2));
+        assertEquals(2, indexingQueue.getDepth());
+        assertEquals(IndexingQueue.Operation.CREATE, indexingQueue.getOperation("article1"));
+        assertEquals(IndexingQueue.Operation.DELETE, indexingQueue.getOperation("article2"));
+
+        // An article deleted then created again replaces the indexed one
+        indexingQueue.add(IndexingQueue.Operation.CREATE, Lists.newArrayList(article2));
+        assertEquals(IndexingQueue.Operation.UPDATE, indexingQueue.getOperation("article2"));
+    }
+}
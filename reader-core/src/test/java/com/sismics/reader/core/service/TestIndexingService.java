@@ -0,0 +1,370 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.dao.lucene.ArticleDao;
+import com.sismics.reader.core.model.jpa.Article;
+import com.sismics.reader.core.util.jpa.PaginatedList;
+import com.sismics.reader.core.util.jpa.PaginatedLists;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the indexing service.
+ *
+ * @author bgamard
+ */
+public class TestIndexingService {
+    @Test
+    public void testNearRealTimeSearch() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            assertEquals(0, getDocumentCount(indexingService));
+
+            // The changes are visible before being committed
+            indexingService.getIndex().getIndexWriter(new Date()).addDocument(newDocument("article1"));
+            indexingService.onIndexChanged();
+            assertEquals(1, getDocumentCount(indexingService));
+            indexingService.commit();
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testCommitOnStop() throws Exception {
+        File file = Files.createTempDir();
+        try {
+            // The changes not committed yet are committed when the service is stopped
+            IndexingService indexingService = new IndexingService(Constants.LUCENE_DIRECTORY_STORAGE_FILE, 0, file, true);
+            indexingService.startAndWait();
+            indexingService.getIndex().getIndexWriter(new Date()).addDocument(newDocument("article1"));
+            indexingService.stopAndWait();
+
+            // The next start sees them
+            indexingService = new IndexingService(Constants.LUCENE_DIRECTORY_STORAGE_FILE, 0, file, true);
+            indexingService.startAndWait();
+            try {
+                assertEquals(1, getDocumentCount(indexingService));
+            } finally {
+                indexingService.stopAndWait();
+                indexingService.getIndex().delete();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFlushOnStop() throws Exception {
+        File file = Files.createTempDir();
+        try {
+            // The updates waiting for their batch are applied when the service is stopped
+            IndexingService indexingService = new IndexingService(Constants.LUCENE_DIRECTORY_STORAGE_FILE, 0, file, false);
+            indexingService.startAndWait();
+            Article article = new Article();
+            article.setId("article1");
+            article.setFeedId("feed1");
+            article.setUrl("http://example.com/article1");
+            article.setPublicationDate(new Date());
+            article.setTitle("Title article1");
+            article.setDescription("Description article1");
+            indexingService.getIndexingQueue().create(Lists.newArrayList(article));
+            assertEquals(1, indexingService.getIndexingQueue().getDepth());
+            indexingService.stopAndWait();
+            assertEquals(0, indexingService.getIndexingQueue().getDepth());
+
+            // And committed
+            indexingService = new IndexingService(Constants.LUCENE_DIRECTORY_STORAGE_FILE, 0, file, true);
+            indexingService.startAndWait();
+            try {
+                assertEquals(1, getDocumentCount(indexingService));
+            } finally {
+                indexingService.stopAndWait();
+                indexingService.getIndex().delete();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            indexingService.getIndex().getIndexWriter(getMonthsAgo(24)).addDocument(newDocument("article1"));
+            indexingService.onIndexChanged();
+
+            // The current index is searched during the rebuild
+            ShardedIndex rebuildIndex = indexingService.startRebuild();
+            assertEquals(rebuildIndex, indexingService.getRebuildIndex());
+            rebuildIndex.getIndexWriter(new Date()).addDocument(newDocument("article2"));
+            rebuildIndex.getIndexWriter(getMonthsAgo(12)).addDocument(newDocument("article3"));
+            assertEquals(1, getDocumentCount(indexingService));
+
+            // The rebuilt shards replace the current ones, the shards without articles are dropped
+            indexingService.finishRebuild();
+            assertNull(indexingService.getRebuildIndex());
+            assertEquals(2, getDocumentCount(indexingService));
+            assertEquals(2, indexingService.getIndex().getShards().size());
+            assertNull(indexingService.getIndex().getShard(ShardedIndex.getShardName(getMonthsAgo(24))));
+
+            // An aborted rebuild leaves the index untouched
+            indexingService.startRebuild().getIndexWriter(new Date()).addDocument(newDocument("article4"));
+            indexingService.abortRebuild();
+            assertNull(indexingService.getRebuildIndex());
+            assertEquals(2, getDocumentCount(indexingService));
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testUpdateDuringRebuild() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            ArticleDao articleDao = new ArticleDao();
+            ArticleDto article1 = newArticle("article1", "feed1");
+            ArticleDto article2 = newArticle("article2", "feed1");
+            ArticleDto article3 = newArticle("article3", "feed1");
+            articleDao.addDocuments(indexingService.getIndex(), Lists.newArrayList(article1, article2, article3));
+            ShardedIndex rebuildIndex = indexingService.startRebuild();
+
+            // The article 1 is updated and the article 2 deleted after the chunk is read, but before it is indexed
+            Article updatedArticle1 = new Article();
+            updatedArticle1.setId("article1");
+            updatedArticle1.setFeedId("feed1");
+            updatedArticle1.setUrl(article1.getUrl());
+            updatedArticle1.setPublicationDate(article1.getPublicationDate());
+            updatedArticle1.setTitle("Updated title");
+            updatedArticle1.setDescription(article1.getDescription());
+            Article deletedArticle2 = new Article();
+            deletedArticle2.setId("article2");
+            deletedArticle2.setPublicationDate(article2.getPublicationDate());
+            articleDao.apply(indexingService, new ArrayList<Article>(), Lists.newArrayList(updatedArticle1), Lists.newArrayList(deletedArticle2));
+            articleDao.addDocuments(rebuildIndex, Lists.newArrayList(article1, article2, article3));
+
+            // The stale content of the chunk doesn't overwrite the updates
+            indexingService.finishRebuild();
+            assertEquals(2, getDocumentCount(indexingService));
+            IndexShard shard = indexingService.getIndex().getShards().get(0);
+            IndexSearcher searcher = shard.acquireSearcher();
+            try {
+                TopDocs topDocs = searcher.search(new TermQuery(new Term("id", "article1")), 1);
+                assertEquals("Updated title", searcher.doc(topDocs.scoreDocs[0].doc).get("title"));
+                assertEquals(0, searcher.search(new TermQuery(new Term("id", "article2")), 1).totalHits);
+            } finally {
+                shard.releaseSearcher(searcher);
+            }
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testSearchDuringRebuild() throws Exception {
+        final IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            // Index 30 articles in 3 months
+            for (int i = 0; i < 30; i++) {
+                indexingService.getIndex().getIndexWriter(getMonthsAgo(i % 3)).addDocument(newDocument("article" + i));
+            }
+            indexingService.onIndexChanged();
+            assertEquals(30, getDocumentCount(indexingService));
+
+            // Search and refresh continuously, while the same articles are rebuilt and swapped in
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicInteger wrongCount = new AtomicInteger();
+            Thread searchThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        indexingService.onIndexChanged();
+                        try {
+                            if (getDocumentCount(indexingService) != 30) {
+                                wrongCount.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            wrongCount.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            searchThread.start();
+            try {
+                for (int rebuild = 0; rebuild < 20; rebuild++) {
+                    ShardedIndex rebuildIndex = indexingService.startRebuild();
+                    for (int i = 0; i < 30; i++) {
+                        rebuildIndex.getIndexWriter(getMonthsAgo(i % 3)).addDocument(newDocument("article" + i));
+                    }
+                    indexingService.finishRebuild();
+                }
+            } finally {
+                running.set(false);
+                searchThread.join();
+            }
+
+            // The searches always saw a whole index, the old or the new one
+            assertEquals(0, wrongCount.get());
+            assertEquals(30, getDocumentCount(indexingService));
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testFeedFilter() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            ArticleDao articleDao = new ArticleDao();
+            articleDao.addDocuments(indexingService.getIndex(), Lists.newArrayList(
+                    newArticle("article1", "feed1"), newArticle("article2", "feed1"), newArticle("article3", "feed2")));
+            indexingService.onIndexChanged();
+
+            // Only the articles of the filtered feeds match
+            IndexShard shard = indexingService.getIndex().getShards().get(0);
+            IndexSearcher searcher = shard.acquireSearcher();
+            try {
+                assertEquals(2, searcher.search(new MatchAllDocsQuery(), articleDao.getFeedFilter(Lists.newArrayList("feed1")), 10).totalHits);
+                assertEquals(3, searcher.search(new MatchAllDocsQuery(), articleDao.getFeedFilter(Lists.newArrayList("feed1", "feed2")), 10).totalHits);
+                assertEquals(0, searcher.search(new MatchAllDocsQuery(), articleDao.getFeedFilter(Lists.newArrayList("feed3")), 10).totalHits);
+            } finally {
+                shard.releaseSearcher(searcher);
+            }
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testShardedSearch() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 0);
+        indexingService.startAndWait();
+        try {
+            // The article 1 is published this month and again last month, the article 5 is the oldest
+            ArticleDao articleDao = new ArticleDao();
+            articleDao.addDocuments(indexingService.getIndex(), Lists.newArrayList(
+                    newArticle("article1", "feed1", "http://example.com/1", getMonthsAgo(0)),
+                    newArticle("article1bis", "feed1", "http://example.com/1", getMonthDay(1, 3)),
+                    newArticle("article2", "feed1", "http://example.com/2", getMonthDay(1, 2)),
+                    newArticle("article3", "feed1", "http://example.com/3", getMonthDay(1, 1)),
+                    newArticle("article4", "feed2", "http://example.com/4", getMonthDay(1, 1)),
+                    newArticle("article5", "feed1", "http://example.com/5", getMonthsAgo(2))));
+            indexingService.onIndexChanged();
+            Filter filter = articleDao.getFeedFilter(Lists.newArrayList("feed1"));
+
+            // The duplicates of the previous shards don't leave the page incomplete, the shards after the page are not searched
+            PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(2, 0);
+            Map<String, Article> articleMap = articleDao.search(indexingService.getIndex(), paginatedList, "title", filter, 1, 100);
+            assertEquals(Sets.newHashSet("article1", "article2"), articleMap.keySet());
+            assertEquals(3, (int) paginatedList.getResultCount());
+            assertTrue(paginatedList.isHasMore());
+
+            // The next page continues in date order, up to the last shard
+            paginatedList = PaginatedLists.create(2, 2);
+            articleMap = articleDao.search(indexingService.getIndex(), paginatedList, "title", filter, 1, 100);
+            assertEquals(Sets.newHashSet("article3", "article5"), articleMap.keySet());
+            assertEquals(4, (int) paginatedList.getResultCount());
+            assertFalse(paginatedList.isHasMore());
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        IndexingService indexingService = new IndexingService(null, 6);
+        indexingService.startAndWait();
+        try {
+            // The articles older than the retention are not indexed
+            assertNotNull(indexingService.getIndex().getIndexWriter(getMonthsAgo(5)));
+            assertNull(indexingService.getIndex().getIndexWriter(getMonthsAgo(6)));
+            assertEquals(1, indexingService.getIndex().getShards().size());
+        } finally {
+            indexingService.stopAndWait();
+        }
+    }
+
+    private static ArticleDto newArticle(String id, String feedId) {
+        ArticleDto article = new ArticleDto();
+        article.setId(id);
+        article.setFeedId(feedId);
+        article.setUrl("http://example.com/" + id);
+        article.setPublicationDate(new Date());
+        article.setTitle("Title " + id);
+        article.setDescription("Description " + id);
+        return article;
+    }
+
+    private static ArticleDto newArticle(String id, String feedId, String url, Date publicationDate) {
+        ArticleDto article = newArticle(id, feedId);
+        article.setUrl(url);
+        article.setPublicationDate(publicationDate);
+        return article;
+    }
+
+    private static Document newDocument(String id) {
+        Document document = new Document();
+        document.add(new StringField("id", id, Field.Store.YES));
+        return document;
+    }
+
+    private static int getDocumentCount(IndexingService indexingService) throws Exception {
+        int count = 0;
+        for (IndexShard shard : indexingService.getIndex().getShards()) {
+            IndexSearcher searcher = shard.acquireSearcher();
+            try {
+                count += searcher.getIndexReader().numDocs();
+            } finally {
+                shard.releaseSearcher(searcher);
+            }
+        }
+        return count;
+    }
+
+    private static Date getMonthDay(int monthCount, int day) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.add(Calendar.MONTH, -monthCount);
+        calendar.set(Calendar.DAY_OF_MONTH, day);
+        return calendar.getTime();
+    }
+
+    static Date getMonthsAgo(int monthCount) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.add(Calendar.MONTH, -monthCount);
+        return calendar.getTime();
+    }
+}
@@ -0,0 +1,163 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.io.Files;
+import com.sismics.reader.core.constant.Constants;
+import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
+import com.sismics.reader.core.dao.lucene.ArticleDao;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Concurrent search throughput of the Lucene storages, on a generated index.
+ * Too long to run with the unit tests, run it manually.
+ *
+ * @author bgamard
+ */
+@Ignore
+public class TestLuceneDirectoryBenchmark {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(TestLuceneDirectoryBenchmark.class);
+
+    /**
+     * Number of generated articles.
+     */
+    private static final int ARTICLE_COUNT = 20000;
+
+    /**
+     * Number of words in the generated vocabulary.
+     */
+    private static final int WORD_COUNT = 5000;
+
+    /**
+     * Number of searching threads.
+     */
+    private static final int THREAD_COUNT = 8;
+
+    /**
+     * Duration of a run, in milliseconds.
+     */
+    private static final long DURATION = 10000;
+
+    @Test
+    public void benchmarkStorage() throws Exception {
+        for (String storage : new String[] { Constants.LUCENE_DIRECTORY_STORAGE_RAM, Constants.LUCENE_DIRECTORY_STORAGE_FILE,
+                Constants.LUCENE_DIRECTORY_STORAGE_NIO, Constants.LUCENE_DIRECTORY_STORAGE_MMAP }) {
+            File file = Files.createTempDir();
+            ShardedIndex index = new ShardedIndex(storage, file, 0, null);
+            try {
+                buildIndex(index);
+                long searchCount = search(index.getShards().get(0).getDirectory());
+                log.info(storage + ": " + searchCount * 1000 / DURATION + " searches/s with " + THREAD_COUNT + " threads");
+                assertTrue(searchCount > 0);
+            } finally {
+                index.delete();
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Generates the index, in a single shard.
+     *
+     * @param index Article index
+     */
+    private void buildIndex(ShardedIndex index) throws Exception {
+        Random random = new Random(42);
+        ArticleDao articleDao = new ArticleDao();
+        List<ArticleDto> articleList = new ArrayList<ArticleDto>();
+        Date date = new Date();
+        for (int i = 0; i < ARTICLE_COUNT; i++) {
+            ArticleDto article = new ArticleDto();
+            article.setId("article" + i);
+            article.setFeedId("feed" + random.nextInt(100));
+            article.setUrl("http://example.com/article" + i);
+            article.setPublicationDate(date);
+            article.setTitle(getText(random, 8));
+            article.setDescription(getText(random, 200));
+            articleList.add(article);
+            if (articleList.size() == 1000) {
+                articleDao.addDocuments(index, articleList);
+                articleList.clear();
+            }
+        }
+        articleDao.addDocuments(index, articleList);
+        index.commit();
+    }
+
+    /**
+     * Searches the index from several threads.
+     *
+     * @param directory Lucene directory
+     * @return Number of searches
+     */
+    private long search(Directory directory) throws Exception {
+        DirectoryReader reader = DirectoryReader.open(directory);
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            final long end = System.currentTimeMillis() + DURATION;
+            List<Future<Long>> futureList = new ArrayList<Future<Long>>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                final Random random = new Random(i);
+                futureList.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        long count = 0;
+                        while (System.currentTimeMillis() < end) {
+                            // Read the stored fields of the results too, like the search of articles
+                            TopDocs topDocs = searcher.search(new TermQuery(new Term("description", getWord(random))), 10);
+                            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                                searcher.doc(scoreDoc.doc);
+                            }
+                            count++;
+                        }
+                        return count;
+                    }
+                }));
+            }
+            long count = 0;
+            for (Future<Long> future : futureList) {
+                count += future.get();
+            }
+            return count;
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
+
+    private static String getText(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(getWord(random)).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static String getWord(Random random) {
+        return "word" + random.nextInt(WORD_COUNT);
+    }
+}
@@ -0,0 +1,143 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.sismics.reader.core.constant.Constants;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test of the article index partitioned by month.
+ *
+ * @author bgamard
+ */
+public class TestShardedIndex {
+    @Test
+    public void testShardName() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        calendar.clear();
+        calendar.set(2013, Calendar.MAY, 31, 23, 59);
+        assertEquals("201305", ShardedIndex.getShardName(calendar.getTime()));
+        calendar.add(Calendar.MINUTE, 1);
+        assertEquals("201306", ShardedIndex.getShardName(calendar.getTime()));
+    }
+
+    @Test
+    public void testExpiredShards() throws Exception {
+        File file = Files.createTempDir();
+        try {
+            // Index articles of 3 months
+            ShardedIndex index = new ShardedIndex(Constants.LUCENE_DIRECTORY_STORAGE_FILE, file, 0, new NopRefreshListener());
+            assertFalse(index.open());
+            Date sixMonthsAgo = TestIndexingService.getMonthsAgo(6);
+            for (Date date : Lists.newArrayList(new Date(), TestIndexingService.getMonthsAgo(1), sixMonthsAgo)) {
+                index.getIndexWriter(date).addDocument(newDocument(date.toString()));
+            }
+            assertEquals(3, index.getShards().size());
+            index.close();
+
+            // The shards older than the retention are dropped as whole directories
+            index = new ShardedIndex(Constants.LUCENE_DIRECTORY_STORAGE_FILE, file, 6, new NopRefreshListener());
+            assertFalse(index.open());
+            assertEquals(3, index.getShards().size());
+            String expiredShardName = ShardedIndex.getShardName(sixMonthsAgo);
+            assertEquals(Lists.newArrayList(expiredShardName), index.getExpiredShardNames());
+            assertNull(index.getIndexWriter(sixMonthsAgo));
+            index.dropShard(expiredShardName);
+            assertEquals(2, index.getShards().size());
+            assertFalse(new File(file, expiredShardName).exists());
+            assertTrue(index.getExpiredShardNames().isEmpty());
+            index.close();
+
+            // The files of an index not partitioned are deleted
+            assertTrue(new File(file, "segments.gen").createNewFile());
+            index = new ShardedIndex(Constants.LUCENE_DIRECTORY_STORAGE_FILE, file, 0, new NopRefreshListener());
+            assertTrue(index.open());
+            assertFalse(new File(file, "segments.gen").exists());
+            assertEquals(2, index.getShards().size());
+            index.delete();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDropShardDuringSearch() throws Exception {
+        File file = Files.createTempDir();
+        try {
+            ShardedIndex index = new ShardedIndex(Constants.LUCENE_DIRECTORY_STORAGE_FILE, file, 0, new NopRefreshListener());
+            assertFalse(index.open());
+            Date date = new Date();
+            String name = ShardedIndex.getShardName(date);
+            index.getIndexWriter(date).addDocument(newDocument("article1"));
+            IndexShard shard = index.getShard(name);
+            shard.maybeRefresh();
+
+            // The search in progress goes on while the shard is dropped, and no new search starts
+            IndexSearcher searcher = shard.acquireSearcher();
+            index.dropShard(name);
+            assertEquals(1, searcher.search(new MatchAllDocsQuery(), 10).totalHits);
+            assertTrue(new File(file, name).exists());
+            try {
+                shard.acquireSearcher();
+                fail();
+            } catch (AlreadyClosedException e) {
+                // OK
+            }
+
+            // The reader is closed and the files deleted when the search is done
+            shard.releaseSearcher(searcher);
+            assertEquals(0, searcher.getIndexReader().getRefCount());
+            assertFalse(new File(file, name).exists());
+
+            // Without a search in progress, the reader is closed right away
+            index.getIndexWriter(date).addDocument(newDocument("article2"));
+            shard = index.getShard(name);
+            shard.maybeRefresh();
+            searcher = shard.acquireSearcher();
+            shard.releaseSearcher(searcher);
+            index.dropShard(name);
+            assertEquals(0, searcher.getIndexReader().getRefCount());
+            assertFalse(new File(file, name).exists());
+            index.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Document newDocument(String id) {
+        Document document = new Document();
+        document.add(new StringField("id", id, Field.Store.YES));
+        return document;
+    }
+
+    private static class NopRefreshListener implements RefreshListener {
+        @Override
+        public void beforeRefresh() {
+            // NOP
+        }
+
+        @Override
+        public void afterRefresh(boolean didRefresh) {
+            // NOP
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sismics.reader.core.service;
+
+import com.google.common.collect.Lists;
+import com.sismics.reader.core.model.jpa.Article;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the title suggester.
+ *
+ * @author bgamard
+ */
+public class TestTitleSuggester {
+    @Test
+    public void testSuggest() {
+        TitleSuggester titleSuggester = new TitleSuggester();
+        List<Article> noArticle = new ArrayList<Article>();
+        titleSuggester.apply(Lists.newArrayList(
+                newArticle("article1", "feed1", "Quand Zelda prend les armes", 1000),
+                newArticle("article2", "feed1", "Le retour de Zelda", 2000),
+                newArticle("article3", "feed2", "Zèbres et zélateurs", 3000),
+                newArticle("article4", "feed2", "Le retour de Zelda", 500)), noArticle, noArticle);
+        assertEquals(2, titleSuggester.getFeedCount());
+
+        // Any word of the title is completed, the most recent titles first
+        assertEquals(Lists.newArrayList("Le retour de Zelda", "Quand Zelda prend les armes"),
+                titleSuggester.suggest(Lists.newArrayList("feed1"), "zel", 10));
+        assertEquals(Lists.newArrayList("Quand Zelda prend les armes"),
+                titleSuggester.suggest(Lists.newArrayList("feed1"), "Zelda  PREND", 10));
+        assertEquals(Lists.newArrayList("Le retour de Zelda"), titleSuggester.suggest(Lists.newArrayList("feed1"), "zel", 1));
+        assertTrue(titleSuggester.suggest(Lists.newArrayList("feed1"), "elda", 10).isEmpty());
+        assertTrue(titleSuggester.suggest(Lists.newArrayList("feed1"), "z", 10).isEmpty());
+
+        // Only the given feeds are completed, and a title published by several feeds is returned once
+        assertEquals(Lists.newArrayList("Zèbres et zélateurs"), titleSuggester.suggest(Lists.newArrayList("feed2"), "zè", 10));
+        assertEquals(Lists.newArrayList("Le retour de Zelda", "Quand Zelda prend les armes"),
+                titleSuggester.suggest(Lists.newArrayList("feed1", "feed2"), "zelda", 10));
+        assertTrue(titleSuggester.suggest(Lists.newArrayList("feed3"), "zelda", 10).isEmpty());
+
+        // The updated and deleted articles are completed with their new title
+        titleSuggester.apply(noArticle, Lists.newArrayList(newArticle("article2", "feed1", "Link est de retour", 2000)),
+                Lists.newArrayList(newArticle("article1", "feed1", null, 0)));
+        assertTrue(titleSuggester.suggest(Lists.newArrayList("feed1"), "zelda", 10).isEmpty());
+        assertEquals(Lists.newArrayList("Link est de retour"), titleSuggester.suggest(Lists.newArrayList("feed1"), "ret", 10));
+        titleSuggester.apply(noArticle, noArticle, Lists.newArrayList(newArticle("article2", "feed1", null, 0)));
+        assertEquals(1, titleSuggester.getFeedCount());
+    }
+
+    @Test
+    public void testMatches() {
+        TitleSuggester titleSuggester = new TitleSuggester();
+        assertTrue(titleSuggester.matches("Korben", "kor"));
+        assertTrue(titleSuggester.matches("Le blog de Korben", "KORB"));
+        assertFalse(titleSuggester.matches("Korben", "orb"));
+        assertFalse(titleSuggester.matches("Korben", "k"));
+        assertFalse(titleSuggester.matches(null, "kor"));
+    }
+
+    private static Article newArticle(String id, String feedId, String title, long date) {
+        Article article = new Article();
+        article.setId(id);
+        article.setFeedId(feedId);
+        article.setTitle(title);
+        article.setPublicationDate(new Date(date));
+        return article;
+    }
+}
@@ -0,0 +1,52 @@
+package com.sismics.reader.core.util;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the favicon index.
+ *
+ * @author jtremeaux
+ */
+public class TestFaviconUtil {
+    @Test
+    public void testFavicon() throws Exception {
+        String feedId = UUID.randomUUID().toString();
+        File faviconDirectory = DirectoryUtil.getFaviconDirectory();
+        assertNull(FaviconUtil.getFavicon(feedId));
+
+        // Index a downloaded favicon
+        File icoFile = new File(faviconDirectory, feedId + ".ico");
+        Files.write(new byte[] { 0, 0, 1, 0 }, icoFile);
+        FaviconUtil.putFavicon(feedId, icoFile);
+        assertEquals(icoFile, FaviconUtil.getFavicon(feedId));
+
+        assertEquals("data:image/x-icon;base64,AAABAA==", FaviconUtil.getDataUri(icoFile));
+
+        // A favicon of another type replaces the previous one
+        long version = FaviconUtil.getVersion();
+        File pngFile = new File(faviconDirectory, feedId + ".png");
+        Files.write(new byte[] { (byte) 0x89, 'P', 'N', 'G' }, pngFile);
+        FaviconUtil.putFavicon(feedId, pngFile);
+        assertEquals(pngFile, FaviconUtil.getFavicon(feedId));
+        assertFalse(icoFile.exists());
+        assertTrue(FaviconUtil.getVersion() > version);
+
+        // The bundles are cached by entity tag
+        FaviconUtil.putBundle(feedId, "1-1", "{}");
+        assertEquals("{}", FaviconUtil.getBundle(feedId, "1-1"));
+        assertNull(FaviconUtil.getBundle(feedId, "1-2"));
+
+        // Favicons removed from the directory are removed from the index
+        pngFile.delete();
+        assertNull(FaviconUtil.getFavicon(feedId));
+    }
+}
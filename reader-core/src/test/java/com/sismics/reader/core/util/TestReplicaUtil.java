@@ -0,0 +1,51 @@
+package com.sismics.reader.core.util;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.LocaleDao;
+import com.sismics.util.context.ThreadLocalContext;
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the read replica routing.
+ *
+ * @author jtremeaux
+ */
+public class TestReplicaUtil extends BaseTransactionalTest {
+    @Test
+    public void testOpenReplica() throws Exception {
+        EntityManager em = ThreadLocalContext.get().getEntityManager();
+
+        // Users read from the replica
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica("replica1")) {
+            assertTrue(replicaTransaction.isReplica());
+            assertNotSame(em, ThreadLocalContext.get().getEntityManager());
+            assertFalse(new LocaleDao().findAll().isEmpty());
+        }
+        assertSame(em, ThreadLocalContext.get().getEntityManager());
+
+        // Users read their own writes from the primary database
+        UserVersionUtil.bump("replica1");
+        TransactionUtil.commit();
+        assertFalse(ReplicaUtil.isReadable("replica1"));
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica("replica1")) {
+            assertFalse(replicaTransaction.isReplica());
+            assertSame(em, ThreadLocalContext.get().getEntityManager());
+        }
+        assertSame(em, ThreadLocalContext.get().getEntityManager());
+
+        // Other users are not affected
+        assertTrue(ReplicaUtil.isReadable("replica2"));
+
+        // A write is not readable from the replica right after it is done
+        ReplicaUtil.markWrite("replica2");
+        assertFalse(ReplicaUtil.isReadable("replica2"));
+        TransactionUtil.commit();
+    }
+}
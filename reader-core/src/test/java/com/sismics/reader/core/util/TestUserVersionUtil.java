@@ -0,0 +1,36 @@
+package com.sismics.reader.core.util;
+
+import com.sismics.reader.BaseTransactionalTest;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Test of the user version utilities.
+ *
+ * @author jtremeaux
+ */
+public class TestUserVersionUtil extends BaseTransactionalTest {
+    @Test
+    public void testBump() throws Exception {
+        String version0 = UserVersionUtil.getVersion("version1");
+
+        // The version is bumped only when the transaction is completed
+        UserVersionUtil.bump("version1");
+        UserVersionUtil.bump("version1");
+        assertEquals(version0, UserVersionUtil.getVersion("version1"));
+        TransactionUtil.commit();
+        String version1 = UserVersionUtil.getVersion("version1");
+        assertFalse(version0.equals(version1));
+
+        // Other users are not affected
+        assertEquals(UserVersionUtil.getVersion("version2"), UserVersionUtil.getVersion("version3"));
+
+        // Bumps are registered again in the next transaction
+        UserVersionUtil.bump("version1");
+        assertEquals(version1, UserVersionUtil.getVersion("version1"));
+        TransactionUtil.commit();
+        assertFalse(version1.equals(UserVersionUtil.getVersion("version1")));
+    }
+}
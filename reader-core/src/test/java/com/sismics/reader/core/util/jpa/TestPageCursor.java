@@ -0,0 +1,32 @@
+package com.sismics.reader.core.util.jpa;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Test of the page cursors.
+ *
+ * @author jtremeaux
+ */
+public class TestPageCursor {
+
+    @Test
+    public void encodeDecodeTest() throws Exception {
+        Date date = new Date(1357000000000L);
+        String cursor = PageCursor.encode(date.getTime(), "0fa8e2b6-1c3e-4f5a-9d8e-7a1b2c3d4e5f");
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        assertEquals(date, pageCursor.getDate());
+        assertEquals("0fa8e2b6-1c3e-4f5a-9d8e-7a1b2c3d4e5f", pageCursor.getId());
+    }
+
+    @Test
+    public void invalidCursorTest() throws Exception {
+        assertNull(PageCursor.encode(null, "id"));
+        assertNull(PageCursor.decode("not a cursor!"));
+        assertNull(PageCursor.decode("YWJj"));
+    }
+}
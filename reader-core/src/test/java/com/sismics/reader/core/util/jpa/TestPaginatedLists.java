@@ -0,0 +1,55 @@
+package com.sismics.reader.core.util.jpa;
+
+import com.sismics.reader.BaseTransactionalTest;
+import com.sismics.reader.core.dao.jpa.UserDao;
+import com.sismics.reader.core.dao.jpa.criteria.UserCriteria;
+import com.sismics.reader.core.dao.jpa.dto.UserDto;
+import com.sismics.reader.core.model.jpa.User;
+import com.sismics.reader.core.util.TransactionUtil;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test of the paginated lists.
+ *
+ * @author jtremeaux
+ */
+public class TestPaginatedLists extends BaseTransactionalTest {
+    @Test
+    public void skipCountTest() throws Exception {
+        // Create some users
+        UserDao userDao = new UserDao();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setUsername("paginated" + i);
+            user.setEmail("paginated" + i + "@reader.com");
+            user.setLocaleId("en");
+            user.setRoleId("user");
+            userDao.create(user);
+        }
+        TransactionUtil.commit();
+        int total = userDao.findByCriteria(new UserCriteria()).size();
+
+        // First page, there are more records
+        PaginatedList<UserDto> paginatedList = PaginatedLists.create(total - 1, 0, true);
+        userDao.findByCriteria(paginatedList, new UserCriteria(), null, null);
+        assertEquals(total - 1, paginatedList.getResultList().size());
+        assertTrue(paginatedList.isHasMore());
+        assertEquals(0, paginatedList.getResultCount());
+
+        // Last page, no more records
+        paginatedList = PaginatedLists.create(total - 1, total - 1, true);
+        userDao.findByCriteria(paginatedList, new UserCriteria(), null, null);
+        assertEquals(1, paginatedList.getResultList().size());
+        assertFalse(paginatedList.isHasMore());
+
+        // Counted list
+        paginatedList = PaginatedLists.create(total - 1, 0);
+        userDao.findByCriteria(paginatedList, new UserCriteria(), null, null);
+        assertEquals(total, paginatedList.getResultCount());
+        assertTrue(paginatedList.isHasMore());
+    }
+}
@@ -1,46 +1,67 @@
 package com.sismics.reader.rest.assembler;
 
-import org.codehaus.jettison.json.JSONException;
-import org.codehaus.jettison.json.JSONObject;
+import org.codehaus.jackson.JsonGenerator;
 
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 
+import java.io.IOException;
+
 /**
  * Article DTO / JSON assembler.
  *
  * @author jtremeaux 
  */
 public class ArticleAssembler {
-
     /**
-     * Returns a user article as JSON data.
-     * 
+     * Writes a user article as JSON data.
+     * Null values are omitted.
+     *
+     * @param generator JSON generator
      * @param userArticle User article
-     * @return User article as JSON
      */
-    public static JSONObject asJson(UserArticleDto userArticle) throws JSONException {
-        JSONObject userArticleJson = new JSONObject();
-        userArticleJson.put("id", userArticle.getId());
-        JSONObject subscription = new JSONObject();
-        subscription.put("id", userArticle.getFeedSubscriptionId());
-        subscription.put("title", userArticle.getFeedSubscriptionTitle() != null ? userArticle.getFeedSubscriptionTitle() : userArticle.getFeedTitle());
-        userArticleJson.put("subscription", subscription);
-        userArticleJson.put("title", userArticle.getArticleTitle());
-        userArticleJson.put("url", userArticle.getArticleUrl());
-        userArticleJson.put("date", userArticle.getArticlePublicationTimestamp());
-        userArticleJson.put("creator", userArticle.getArticleCreator());
-        userArticleJson.put("description", userArticle.getArticleDescription());
-        userArticleJson.put("comment_url", userArticle.getArticleCommentUrl());
-        userArticleJson.put("comment_count", userArticle.getArticleCommentCount());
+    public static void writeJson(JsonGenerator generator, UserArticleDto userArticle) throws IOException {
+        generator.writeStartObject();
+        writeStringField(generator, "id", userArticle.getId());
+        generator.writeObjectFieldStart("subscription");
+        writeStringField(generator, "id", userArticle.getFeedSubscriptionId());
+        writeStringField(generator, "title", userArticle.getFeedSubscriptionTitle() != null ? userArticle.getFeedSubscriptionTitle() : userArticle.getFeedTitle());
+        generator.writeEndObject();
+        writeStringField(generator, "title", userArticle.getArticleTitle());
+        writeStringField(generator, "url", userArticle.getArticleUrl());
+        if (userArticle.getArticlePublicationTimestamp() != null) {
+            generator.writeNumberField("date", userArticle.getArticlePublicationTimestamp());
+        }
+        writeStringField(generator, "creator", userArticle.getArticleCreator());
+        writeStringField(generator, "description", userArticle.getArticleDescription());
+        writeStringField(generator, "summary", userArticle.getArticleSummary());
+        writeStringField(generator, "comment_url", userArticle.getArticleCommentUrl());
+        if (userArticle.getArticleCommentCount() != null) {
+            generator.writeNumberField("comment_count", userArticle.getArticleCommentCount());
+        }
         if (userArticle.getArticleEnclosureUrl() != null) {
-            JSONObject enclosure = new JSONObject();
-            enclosure.put("url", userArticle.getArticleEnclosureUrl());
-            enclosure.put("length", userArticle.getArticleEnclosureLength());
-            enclosure.put("type", userArticle.getArticleEnclosureType());
-            userArticleJson.put("enclosure", enclosure);
+            generator.writeObjectFieldStart("enclosure");
+            writeStringField(generator, "url", userArticle.getArticleEnclosureUrl());
+            if (userArticle.getArticleEnclosureLength() != null) {
+                generator.writeNumberField("length", userArticle.getArticleEnclosureLength());
+            }
+            writeStringField(generator, "type", userArticle.getArticleEnclosureType());
+            generator.writeEndObject();
+        }
+        generator.writeBooleanField("is_read", userArticle.getReadTimestamp() != null);
+        generator.writeBooleanField("is_starred", userArticle.getStarTimestamp() != null);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes a string field, omitted if the value is null.
+     *
+     * @param generator JSON generator
+     * @param name Field name
+     * @param value Field value
+     */
+    private static void writeStringField(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
         }
-        userArticleJson.put("is_read", userArticle.getReadTimestamp() != null);
-        userArticleJson.put("is_starred", userArticle.getStarTimestamp() != null);
-        return userArticleJson;
     }
 }
@@ -0,0 +1,86 @@
+package com.sismics.reader.rest.assembler;
+
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jettison.json.JSONObject;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of user articles streamed as JSON data.
+ * The articles are written directly to the response, without building a JSON tree of the whole page.
+ *
+ * @author jtremeaux
+ */
+public class ArticleListOutput implements StreamingOutput {
+    /**
+     * JSON factory (thread-safe), the output stream is closed by the container.
+     */
+    private static final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Other fields of the response.
+     */
+    private Map<String, Object> fieldMap = new LinkedHashMap<String, Object>();
+
+    /**
+     * User articles.
+     */
+    private List<UserArticleDto> userArticleList;
+
+    /**
+     * Constructor of ArticleListOutput.
+     *
+     * @param userArticleList User articles
+     */
+    public ArticleListOutput(List<UserArticleDto> userArticleList) {
+        this.userArticleList = userArticleList;
+    }
+
+    /**
+     * Adds a field to the response.
+     *
+     * @param name Field name
+     * @param value String, integer Number, Boolean or JSONObject value, omitted if null
+     * @return This output
+     */
+    public ArticleListOutput put(String name, Object value) {
+        if (value != null) {
+            fieldMap.put(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public void write(OutputStream os) throws IOException {
+        JsonGenerator generator = jsonFactory.createJsonGenerator(os, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        for (Map.Entry<String, Object> field : fieldMap.entrySet()) {
+            generator.writeFieldName(field.getKey());
+            Object value = field.getValue();
+            if (value instanceof JSONObject) {
+                generator.writeRawValue(value.toString());
+            } else if (value instanceof Boolean) {
+                generator.writeBoolean((Boolean) value);
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).longValue());
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+        generator.writeArrayFieldStart("articles");
+        for (UserArticleDto userArticle : userArticleList) {
+            ArticleAssembler.writeJson(generator, userArticle);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
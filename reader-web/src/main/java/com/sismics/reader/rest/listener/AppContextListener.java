@@ -0,0 +1,35 @@
+package com.sismics.reader.rest.listener;
+
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.util.jpa.EMF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the application context and closes the database connections when the webapp is undeployed or the server shuts down.
+ *
+ * @author jtremeaux
+ */
+public class AppContextListener implements ServletContextListener {
+    /**
+     * Logger.
+     */
+    private static final Logger log = LoggerFactory.getLogger(AppContextListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        // NOP, the application context is started on first use
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        log.info("Shutting down the application context");
+        AppContext.getInstance().shutDown();
+
+        // Close the connection pool once nothing uses the database anymore
+        EMF.close();
+    }
+}
@@ -1,6 +1,8 @@
 package com.sismics.reader.rest.resource;
 
+import com.google.common.cache.CacheStats;
 import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.service.IndexingQueue;
 import com.sismics.reader.core.util.ConfigUtil;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
@@ -8,6 +10,10 @@ import com.sismics.reader.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
 import com.sismics.util.NetworkUtil;
+import com.sismics.util.jpa.ConnectionPool;
+import com.sismics.util.jpa.EMF;
+import com.sismics.util.jpa.cache.LocalRegion;
+import com.sismics.util.jpa.cache.LocalRegionFactory;
 import com.sismics.util.log4j.LogCriteria;
 import com.sismics.util.log4j.LogEntry;
 import com.sismics.util.log4j.MemoryAppender;
@@ -48,6 +54,13 @@ public class AppResource extends BaseResource {
         response.put("min_version", minVersion);
         response.put("total_memory", Runtime.getRuntime().totalMemory());
         response.put("free_memory", Runtime.getRuntime().freeMemory());
+        IndexingQueue indexingQueue = AppContext.getInstance().getIndexingService().getIndexingQueue();
+        response.put("indexing_queue_depth", indexingQueue.getDepth());
+        response.put("indexing_queue_lag", indexingQueue.getLag());
+        CacheStats searchCacheStats = AppContext.getInstance().getIndexingService().getSearchCacheStats();
+        response.put("search_cache_hit_count", searchCacheStats.hitCount());
+        response.put("search_cache_miss_count", searchCacheStats.missCount());
+        response.put("search_cache_hit_rate", searchCacheStats.hitRate());
         return Response.ok().entity(response).build();
     }
     
@@ -107,6 +120,66 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response).build();
     }
     
+    /**
+     * Returns the statistics of the second-level cache.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cache() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+        
+        JSONObject response = new JSONObject();
+        List<JSONObject> regions = new ArrayList<JSONObject>();
+        for (LocalRegion region : LocalRegionFactory.getRegionList()) {
+            CacheStats stats = region.getStats();
+            JSONObject regionJson = new JSONObject();
+            regionJson.put("name", region.getName());
+            regionJson.put("size", region.getElementCountInMemory());
+            regionJson.put("hit_count", stats.hitCount());
+            regionJson.put("miss_count", stats.missCount());
+            regionJson.put("hit_rate", stats.hitRate());
+            regionJson.put("eviction_count", stats.evictionCount());
+            regions.add(regionJson);
+        }
+        response.put("regions", regions);
+        return Response.ok().entity(response).build();
+    }
+    
+    /**
+     * Returns the statistics of the database connection pool.
+     * 
+     * @return Response
+     */
+    @GET
+    @Path("pool")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response pool() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+        
+        JSONObject response = new JSONObject();
+        ConnectionPool connectionPool = EMF.getConnectionPool();
+        if (connectionPool != null) {
+            response.put("active_count", connectionPool.getActiveCount());
+            response.put("idle_count", connectionPool.getIdleCount());
+            response.put("waiting_count", connectionPool.getWaitingCount());
+            response.put("max_size", connectionPool.getMaxSize());
+            response.put("checkout_count", connectionPool.getCheckoutCount());
+            response.put("wait_time", connectionPool.getWaitTime());
+            response.put("max_wait_time", connectionPool.getMaxWaitTime());
+            response.put("timeout_count", connectionPool.getTimeoutCount());
+        }
+        return Response.ok().entity(response).build();
+    }
+    
     /**
      * Destroy and rebuild articles index.
      * 
@@ -123,7 +196,7 @@ public class AppResource extends BaseResource {
         
         JSONObject response = new JSONObject();
         try {
-            AppContext.getInstance().getIndexingService().rebuildIndex();
+            AppContext.getInstance().getIndexingService().rebuildIndex(principal.getId());
         } catch (Exception e) {
             throw new ServerException("IndexingError", "Error rebuilding index", e);
         }
@@ -131,6 +204,27 @@ public class AppResource extends BaseResource {
         return Response.ok().entity(response).build();
     }
     
+    /**
+     * Requests the repair of the unread count of all subscriptions, which is done asynchronously.
+     * 
+     * @return Response
+     */
+    @POST
+    @Path("batch/reconcile")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response batchReconcile() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+        checkBaseFunction(BaseFunction.ADMIN);
+        
+        AppContext.getInstance().getFeedService().requestReconcileAllUnreadCount();
+        
+        JSONObject response = new JSONObject();
+        response.put("status", "ok");
+        return Response.status(Response.Status.ACCEPTED).entity(response).build();
+    }
+    
     /**
      * Attempt to map a port to the gateway.
      * 
@@ -5,11 +5,17 @@ import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.ArticleCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
+import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.ArticleDto;
 import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
+import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
+import com.sismics.reader.core.model.context.AppContext;
+import com.sismics.reader.core.model.jpa.Article;
 import com.sismics.reader.core.model.jpa.UserArticle;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
+import com.sismics.rest.exception.ServerException;
+import com.sismics.rest.util.ValidationUtil;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
@@ -17,8 +23,10 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Article REST resources.
@@ -27,6 +35,99 @@ import java.util.List;
  */
 @Path("/article")
 public class ArticleResource extends BaseResource {
+    /**
+     * Maximum number of articles returned by a batch.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Returns the description of multiple articles.
+     *
+     * @param idList List of article ID
+     * @return Response
+     */
+    @GET
+    @Path("description")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response description(
+            @QueryParam("id") List<String> idList) throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        // Validate input data
+        if (idList.isEmpty()) {
+            throw new ClientException("ValidationError", "id is required");
+        }
+        if (idList.size() > MAX_BATCH_SIZE) {
+            throw new ClientException("ValidationError", MessageFormat.format("Too many articles, maximum is {0}", MAX_BATCH_SIZE));
+        }
+
+        // Get the articles
+        UserArticleDao userArticleDao = new UserArticleDao();
+        List<UserArticleDto> userArticleList = userArticleDao.findByCriteria(new UserArticleCriteria()
+                .setUserId(principal.getId())
+                .setVisible(true)
+                .setUserArticleIdIn(idList));
+
+        // Build the response
+        JSONObject response = new JSONObject();
+        List<JSONObject> articles = new ArrayList<JSONObject>();
+        for (UserArticleDto userArticle : userArticleList) {
+            JSONObject article = new JSONObject();
+            article.put("id", userArticle.getId());
+            article.put("description", userArticle.getArticleDescription());
+            articles.add(article);
+        }
+        response.put("articles", articles);
+
+        return Response.ok().entity(response).build();
+    }
+
+    /**
+     * Returns the whole title and description of an article found by a search, with the matches highlighted.
+     * The search results only contain snippets of the descriptions.
+     *
+     * @param id User article ID
+     * @param query Search query
+     * @return Response
+     */
+    @GET
+    @Path("{id: [a-z0-9\\-]+}/highlight")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response highlight(
+            @PathParam("id") String id,
+            @QueryParam("query") String query) throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        ValidationUtil.validateRequired(query, "query");
+
+        // Get the article
+        UserArticle userArticle = new UserArticleDao().getUserArticle(id, principal.getId());
+        if (userArticle == null) {
+            throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
+        }
+
+        // Highlight the article from the index
+        Article article;
+        try {
+            article = AppContext.getInstance().getIndexingService().highlightArticle(userArticle.getArticleId(), query);
+        } catch (Exception e) {
+            throw new ServerException("SearchError", "Error highlighting article", e);
+        }
+        if (article == null) {
+            throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("id", id);
+        response.put("title", article.getTitle());
+        response.put("description", article.getDescription());
+        return Response.ok().entity(response).build();
+    }
+
     /**
      * Marks an article as read.
      * 
@@ -87,31 +188,17 @@ public class ArticleResource extends BaseResource {
             throw new ForbiddenClientException();
         }
         
+        // Check that all articles exist
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Set<String> existingIdSet = userArticleDao.findExistingId(idList, principal.getId());
         for (String id : idList) {
-            // Get the article
-            UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
-            if (userArticle == null) {
+            if (!existingIdSet.contains(id)) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
-            
-            if (userArticle.getReadDate() == null) {
-                // Update the article
-                userArticle.setReadDate(new Date());
-                userArticleDao.update(userArticle);
-    
-                // Update the subscriptions
-                ArticleDto article = new ArticleDao().findFirstByCriteria(
-                        new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                        .setFeedId(article.getFeedId())
-                        .setUserId(principal.getId()))) {
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() - 1);
-                }
-            }
         }
+
+        // Update the articles and the unread count of the subscriptions
+        userArticleDao.updateRead(idList, principal.getId(), true);
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -179,31 +266,17 @@ public class ArticleResource extends BaseResource {
             throw new ForbiddenClientException();
         }
         
+        // Check that all articles exist
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Set<String> existingIdSet = userArticleDao.findExistingId(idList, principal.getId());
         for (String id : idList) {
-            // Get the article
-            UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
-            if (userArticle == null) {
+            if (!existingIdSet.contains(id)) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
-            
-            if (userArticle.getReadDate() != null) {
-                // Update the article
-                userArticle.setReadDate(null);
-                userArticleDao.update(userArticle);
-    
-                // Update the subscriptions
-                ArticleDto article = new ArticleDao().findFirstByCriteria(
-                        new ArticleCriteria().setId(userArticle.getArticleId()));
-    
-                FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-                for (FeedSubscriptionDto feedSubscription : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
-                        .setFeedId(article.getFeedId())
-                        .setUserId(principal.getId()))) {
-                    feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), feedSubscription.getUnreadUserArticleCount() + 1);
-                }
-            }
         }
+
+        // Update the articles and the unread count of the subscriptions
+        userArticleDao.updateRead(idList, principal.getId(), false);
         
         // Always return ok
         JSONObject response = new JSONObject();
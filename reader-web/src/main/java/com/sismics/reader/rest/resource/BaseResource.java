@@ -1,5 +1,6 @@
 package com.sismics.reader.rest.resource;
 
+import com.sismics.reader.core.util.UserVersionUtil;
 import com.sismics.reader.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.security.IPrincipal;
@@ -10,7 +11,10 @@ import org.codehaus.jettison.json.JSONException;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import java.security.Principal;
+import java.util.Date;
 import java.util.Set;
 
 /**
@@ -75,4 +79,59 @@ public abstract class BaseResource {
         Set<String> baseFunctionSet = ((UserPrincipal) principal).getBaseFunctionSet();
         return baseFunctionSet != null && baseFunctionSet.contains(baseFunction.name());
     }
+
+    /**
+     * Returns the entity tag of the current version of the user's data.
+     * Must be called before reading the data, so that a concurrent modification changes the tag.
+     *
+     * @return Entity tag
+     */
+    protected EntityTag getVersionTag() {
+        return new EntityTag(UserVersionUtil.getVersion(principal.getId()));
+    }
+
+    /**
+     * Checks if the representation held by the client (If-None-Match header) is still current.
+     *
+     * @param versionTag Entity tag of the current version
+     * @return True if the client can use its representation
+     */
+    protected boolean isNotModified(EntityTag versionTag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(versionTag.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the representation held by the client is still current, using the If-None-Match header,
+     * or the If-Modified-Since header if no entity tag is sent.
+     *
+     * @param entityTag Entity tag of the current representation
+     * @param lastModified Last modification date of the current representation
+     * @return True if the client can use its representation
+     */
+    protected boolean isNotModified(EntityTag entityTag, Date lastModified) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            return isNotModified(entityTag);
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have a precision of one second
+        return ifModifiedSince >= 0 && lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+    }
 }
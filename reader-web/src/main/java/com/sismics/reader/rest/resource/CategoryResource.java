@@ -5,13 +5,15 @@ import com.sismics.reader.core.dao.jpa.FeedSubscriptionDao;
 import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
-import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.jpa.Category;
 import com.sismics.reader.core.model.jpa.FeedSubscription;
+import com.sismics.reader.core.util.ReplicaTransaction;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.jpa.PageCursor;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
-import com.sismics.reader.rest.assembler.ArticleAssembler;
+import com.sismics.reader.rest.assembler.ArticleListOutput;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.util.ValidationUtil;
@@ -21,6 +23,7 @@ import org.codehaus.jettison.json.JSONObject;
 
 import javax.persistence.NoResultException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.text.MessageFormat;
@@ -40,6 +43,7 @@ public class CategoryResource extends BaseResource {
      *
      * @return Response
      */
+    @SuppressWarnings("try")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response list() throws JSONException {
@@ -47,37 +51,40 @@ public class CategoryResource extends BaseResource {
             throw new ForbiddenClientException();
         }
 
-        CategoryDao categoryDao = new CategoryDao();
-        // Get the root category
-        Category rootCategory = categoryDao.getRootCategory(principal.getId());
+        // Read from the replica, unless the user modified its data recently
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+            CategoryDao categoryDao = new CategoryDao();
+            // Get the root category
+            Category rootCategory = categoryDao.getRootCategory(principal.getId());
 
-        // Create root category JSON object
-        JSONObject rootCategoryJson = new JSONObject();
-        rootCategoryJson.put("id", rootCategory.getId());
-        rootCategoryJson.put("name", rootCategory.getName());
-        rootCategoryJson.put("folded", rootCategory.isFolded());
-        rootCategoryJson.put("categories", new JSONArray());
+            // Create root category JSON object
+            JSONObject rootCategoryJson = new JSONObject();
+            rootCategoryJson.put("id", rootCategory.getId());
+            rootCategoryJson.put("name", rootCategory.getName());
+            rootCategoryJson.put("folded", rootCategory.isFolded());
+            rootCategoryJson.put("categories", new JSONArray());
 
-        // Use iterator to traverse category hierarchy
-        List<Category> rootCategories = new ArrayList<>();
-        rootCategories.add(rootCategory);
-        CategoryIterator iterator = new CategoryHierarchyIterator(rootCategories, principal.getId());
+            // Use iterator to traverse category hierarchy
+            List<Category> rootCategories = new ArrayList<>();
+            rootCategories.add(rootCategory);
+            CategoryIterator iterator = new CategoryHierarchyIterator(rootCategories, principal.getId());
 
-        // Build category hierarchy using the existing method
-        JSONArray subCategoriesList = new JSONArray();
-        addSubCategories(subCategoriesList, rootCategory.getId(), categoryDao, principal.getId(), rootCategory.getName());
+            // Build category hierarchy using the existing method
+            JSONArray subCategoriesList = new JSONArray();
+            addSubCategories(subCategoriesList, rootCategory.getId(), categoryDao, principal.getId(), rootCategory.getName());
 
-        // Attach hierarchy to root category
-        rootCategoryJson.put("categories", subCategoriesList);
+            // Attach hierarchy to root category
+            rootCategoryJson.put("categories", subCategoriesList);
 
-        // Construct final response
-        JSONArray categoryList = new JSONArray();
-        categoryList.put(rootCategoryJson);
+            // Construct final response
+            JSONArray categoryList = new JSONArray();
+            categoryList.put(rootCategoryJson);
 
-        JSONObject response = new JSONObject();
-        response.put("categories", categoryList);
+            JSONObject response = new JSONObject();
+            response.put("categories", categoryList);
 
-        return Response.ok().entity(response.toString()).build();
+            return Response.ok().entity(response.toString()).build();
+        }
     }
 
     private void addSubCategories(JSONArray categoryList, String parentId, CategoryDao categoryDao, String userId, String parentPath) throws JSONException {
@@ -108,8 +115,11 @@ public class CategoryResource extends BaseResource {
      * @param unread Returns only unread articles
      * @param limit Page limit
      * @param afterArticle Start the list after this article
+     * @param cursor Start the list after this cursor (returned with the previous page)
+     * @param summary Returns a summary instead of the article description
      * @return Response
      */
+    @SuppressWarnings("try")
     @GET
     @Path("{id: [a-z0-9\\-]+}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -117,58 +127,80 @@ public class CategoryResource extends BaseResource {
             @PathParam("id") String id,
             @QueryParam("unread") boolean unread,
             @QueryParam("limit") Integer limit,
-            @QueryParam("after_article") String afterArticle) throws JSONException {
+            @QueryParam("after_article") String afterArticle,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("summary") boolean summary) throws JSONException {
         if (!authenticate()) {
             throw new ForbiddenClientException();
         }
 
-        // Get the category
-        CategoryDao categoryDao = new CategoryDao();
-        Category category;
-        try {
-            category = categoryDao.getCategory(id, principal.getId());
-        } catch (NoResultException e) {
-            throw new ClientException("CategoryNotFound", MessageFormat.format("Category not found: {0}", id));
+        // Answer with 304 if the user's data didn't change since the client's copy
+        EntityTag versionTag = getVersionTag();
+        if (isNotModified(versionTag)) {
+            return Response.notModified(versionTag).build();
         }
 
-        // Get the articles
-        UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
-                .setUnread(unread)
-                .setUserId(principal.getId())
-                .setSubscribed(true)
-                .setVisible(true);
-        if (category.getParentId() != null) {
-            userArticleCriteria.setCategoryId(id);
-        }
-        if (afterArticle != null) {
-            // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+        // Read from the replica, unless the user modified its data recently
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+            // Get the category
+            CategoryDao categoryDao = new CategoryDao();
+            Category category;
+            try {
+                category = categoryDao.getCategory(id, principal.getId());
+            } catch (NoResultException e) {
+                throw new ClientException("CategoryNotFound", MessageFormat.format("Category not found: {0}", id));
             }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
 
-            userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-            userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
-        }
+            // Get the articles
+            UserArticleDao userArticleDao = new UserArticleDao();
+            UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
+                    .setUnread(unread)
+                    .setUserId(principal.getId())
+                    .setSubscribed(true)
+                    .setVisible(true)
+                    .setSummary(summary);
+            if (category.getParentId() != null) {
+                userArticleCriteria.setCategoryId(id);
+            }
+            if (cursor != null) {
+                // Paginate after the cursor, the last article doesn't need to be fetched again
+                PageCursor pageCursor = PageCursor.decode(cursor);
+                if (pageCursor == null) {
+                    throw new ClientException("ValidationError", MessageFormat.format("Invalid cursor: {0}", cursor));
+                }
+                userArticleCriteria.setArticlePublicationDateMax(pageCursor.getDate());
+                userArticleCriteria.setArticleIdMax(pageCursor.getId());
+            } else if (afterArticle != null) {
+                // Paginate after this user article
+                UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
+                        .setUserArticleId(afterArticle)
+                        .setUserId(principal.getId());
+                List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
+                if (userArticleDtoList.isEmpty()) {
+                    throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+                }
+                UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
+
+                userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
+                userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
+            }
 
-        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+            PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null, true);
+            userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
 
-        // Build the response
-        JSONObject response = new JSONObject();
+            // Build the response, the articles are streamed without building a JSON tree
+            List<UserArticleDto> userArticleList = paginatedList.getResultList();
+            ArticleListOutput output = new ArticleListOutput(userArticleList)
+                    .put("has_more", paginatedList.isHasMore());
 
-        List<JSONObject> articles = new ArrayList<JSONObject>();
-        for (UserArticleDto userArticle : paginatedList.getResultList()) {
-            articles.add(ArticleAssembler.asJson(userArticle));
-        }
-        response.put("articles", articles);
+            // Cursor to request the next page
+            if (!userArticleList.isEmpty()) {
+                UserArticleDto lastUserArticle = userArticleList.get(userArticleList.size() - 1);
+                output.put("next_cursor", PageCursor.encode(lastUserArticle.getArticlePublicationTimestamp(), lastUserArticle.getArticleId()));
+            }
 
-        return Response.ok().entity(response).build();
+            return Response.ok().entity(output).tag(versionTag).build();
+        }
     }
 
     /**
@@ -281,12 +313,10 @@ public class CategoryResource extends BaseResource {
                 .setSubscribed(true)
                 .setCategoryId(id));
 
-        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-        for (FeedSubscriptionDto feedSubscrition : feedSubscriptionDao.findByCriteria(new FeedSubscriptionCriteria()
+        // Recompute the unread counts of the subscriptions in this category
+        new FeedSubscriptionDao().recomputeUnreadCount(new FeedSubscriptionCriteria()
                 .setCategoryId(category.getId())
-                .setUserId(principal.getId()))) {
-            feedSubscriptionDao.updateUnreadCount(feedSubscrition.getId(), 0);
-        }
+                .setUserId(principal.getId()));
 
         // Always return ok
         JSONObject response = new JSONObject();
@@ -1,10 +1,12 @@
 package com.sismics.reader.rest.resource;
 
+import com.sismics.reader.core.dao.jpa.dto.FeedSubscriptionDto;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.service.IndexingService;
+import com.sismics.reader.core.service.TitleSuggester;
 import com.sismics.reader.core.util.jpa.PaginatedList;
-import com.sismics.reader.rest.assembler.ArticleAssembler;
+import com.sismics.reader.rest.assembler.ArticleListOutput;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
 import com.sismics.rest.util.ValidationUtil;
@@ -24,6 +26,10 @@ import java.util.List;
  */
 @Path("/search")
 public class SearchResource extends BaseResource {
+    /**
+     * Maximum number of completions of each type.
+     */
+    private static final int MAX_SUGGESTION_COUNT = 10;
     
     /**
      * Returns articles matching a search query.
@@ -55,16 +61,56 @@ public class SearchResource extends BaseResource {
             throw new ServerException("SearchError", "Error searching articles", e);
         }
         
-        // Build the response
-        JSONObject response = new JSONObject();
+        // Build the response, the articles are streamed without building a JSON tree.
+        // The old shards are not searched once the page is filled, the total is only a lower bound if more results may exist.
+        ArticleListOutput output = new ArticleListOutput(paginatedList.getResultList())
+                .put("total", paginatedList.getResultCount())
+                .put("has_more", paginatedList.isHasMore());
 
-        List<JSONObject> articles = new ArrayList<JSONObject>();
-        for (UserArticleDto userArticle : paginatedList.getResultList()) {
-            articles.add(ArticleAssembler.asJson(userArticle));
+        return Response.ok().entity(output).build();
+    }
+    
+    /**
+     * Returns the completions of a query being typed.
+     * The titles of the recent articles and the subscriptions are completed in memory, without searching the index.
+     * 
+     * @param prefix Beginning of the query
+     * @param limit Maximum number of completions of each type
+     * @return Response
+     */
+    @GET
+    @Path("suggest/{prefix: .+}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response suggest(
+            @PathParam("prefix") String prefix,
+            @QueryParam("limit") Integer limit) throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
         }
-        response.put("total", paginatedList.getResultCount());
-        response.put("articles", articles);
-
+        
+        ValidationUtil.validateRequired(prefix, "prefix");
+        if (limit == null || limit <= 0 || limit > MAX_SUGGESTION_COUNT) {
+            limit = MAX_SUGGESTION_COUNT;
+        }
+        
+        // Complete the titles of the subscriptions, and of the articles of the subscribed feeds
+        IndexingService indexingService = AppContext.getInstance().getIndexingService();
+        TitleSuggester titleSuggester = indexingService.getTitleSuggester();
+        List<String> feedIdList = new ArrayList<String>();
+        List<JSONObject> subscriptions = new ArrayList<JSONObject>();
+        for (FeedSubscriptionDto feedSubscription : indexingService.getFeedSubscriptionList(principal.getId())) {
+            feedIdList.add(feedSubscription.getFeedId());
+            if (subscriptions.size() < limit && titleSuggester.matches(feedSubscription.getFeedSubscriptionTitle(), prefix)) {
+                JSONObject subscription = new JSONObject();
+                subscription.put("id", feedSubscription.getId());
+                subscription.put("title", feedSubscription.getFeedSubscriptionTitle());
+                subscriptions.add(subscription);
+            }
+        }
+        
+        JSONObject response = new JSONObject();
+        response.put("titles", titleSuggester.suggest(feedIdList, prefix, limit));
+        response.put("subscriptions", subscriptions);
         return Response.ok().entity(response).build();
     }
 }
@@ -4,21 +4,25 @@ import com.sismics.reader.core.dao.jpa.UserArticleDao;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
 import com.sismics.reader.core.dao.jpa.dto.UserArticleDto;
 import com.sismics.reader.core.model.jpa.UserArticle;
+import com.sismics.reader.core.util.ReplicaTransaction;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.jpa.PageCursor;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
-import com.sismics.reader.rest.assembler.ArticleAssembler;
+import com.sismics.reader.rest.assembler.ArticleListOutput;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Starred articles REST resources.
@@ -32,51 +36,76 @@ public class StarredResource extends BaseResource {
      *
      * @param limit Page limit
      * @param afterArticle Start the list after this article
+     * @param cursor Start the list after this cursor (returned with the previous page)
+     * @param summary Returns a summary instead of the article description
      * @return Response
      */
+    @SuppressWarnings("try")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response get(
             @QueryParam("limit") Integer limit,
-            @QueryParam("after_article") String afterArticle) throws JSONException {
+            @QueryParam("after_article") String afterArticle,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("summary") boolean summary) throws JSONException {
         if (!authenticate()) {
             throw new ForbiddenClientException();
         }
 
-        // Get the articles
-        UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
-            .setStarred(true)
-            .setVisible(true)
-            .setUserId(principal.getId());
-        if (afterArticle != null) {
-            // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
-                    .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
-            }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
-
-            userArticleCriteria.setUserArticleStarredDateMax(new Date(userArticleDto.getStarTimestamp()));
-            userArticleCriteria.setUserArticleIdMax(userArticleDto.getId());
+        // Answer with 304 if the user's data didn't change since the client's copy
+        EntityTag versionTag = getVersionTag();
+        if (isNotModified(versionTag)) {
+            return Response.notModified(versionTag).build();
         }
 
-        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+        // Read from the replica, unless the user modified its data recently
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+            // Get the articles
+            UserArticleDao userArticleDao = new UserArticleDao();
+            UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
+                .setStarred(true)
+                .setVisible(true)
+                .setUserId(principal.getId())
+                .setSummary(summary);
+            if (cursor != null) {
+                // Paginate after the cursor, the last article doesn't need to be fetched again
+                PageCursor pageCursor = PageCursor.decode(cursor);
+                if (pageCursor == null) {
+                    throw new ClientException("ValidationError", MessageFormat.format("Invalid cursor: {0}", cursor));
+                }
+                userArticleCriteria.setUserArticleStarredDateMax(pageCursor.getDate());
+                userArticleCriteria.setUserArticleIdMax(pageCursor.getId());
+            } else if (afterArticle != null) {
+                // Paginate after this user article
+                UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
+                        .setUserArticleId(afterArticle)
+                        .setUserId(principal.getId());
+                List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
+                if (userArticleDtoList.isEmpty()) {
+                    throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+                }
+                UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
+
+                userArticleCriteria.setUserArticleStarredDateMax(new Date(userArticleDto.getStarTimestamp()));
+                userArticleCriteria.setUserArticleIdMax(userArticleDto.getId());
+            }
+
+            PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null, true);
+            userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
         
-        // Build the response
-        JSONObject response = new JSONObject();
+            // Build the response, the articles are streamed without building a JSON tree
+            List<UserArticleDto> userArticleList = paginatedList.getResultList();
+            ArticleListOutput output = new ArticleListOutput(userArticleList)
+                    .put("has_more", paginatedList.isHasMore());
 
-        List<JSONObject> articles = new ArrayList<JSONObject>();
-        for (UserArticleDto userArticle : paginatedList.getResultList()) {
-            articles.add(ArticleAssembler.asJson(userArticle));
-        }
-        response.put("articles", articles);
+            // Cursor to request the next page
+            if (!userArticleList.isEmpty()) {
+                UserArticleDto lastUserArticle = userArticleList.get(userArticleList.size() - 1);
+                output.put("next_cursor", PageCursor.encode(lastUserArticle.getStarTimestamp(), lastUserArticle.getId()));
+            }
 
-        return Response.ok().entity(response).build();
+            return Response.ok().entity(output).tag(versionTag).build();
+        }
     }
 
     /**
@@ -164,18 +193,17 @@ public class StarredResource extends BaseResource {
             throw new ForbiddenClientException();
         }
         
+        // Check that all articles exist
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Set<String> existingIdSet = userArticleDao.findExistingId(idList, principal.getId());
         for (String id : idList) {
-            // Get the article
-            UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
-            if (userArticle == null) {
+            if (!existingIdSet.contains(id)) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
-            
-            // Update the article
-            userArticle.setStarredDate(new Date());
-            userArticleDao.update(userArticle);
         }
+
+        // Update the articles
+        userArticleDao.updateStarred(idList, principal.getId(), true);
         
         // Always return ok
         JSONObject response = new JSONObject();
@@ -198,18 +226,17 @@ public class StarredResource extends BaseResource {
             throw new ForbiddenClientException();
         }
         
+        // Check that all articles exist
+        UserArticleDao userArticleDao = new UserArticleDao();
+        Set<String> existingIdSet = userArticleDao.findExistingId(idList, principal.getId());
         for (String id : idList) {
-            // Get the article
-            UserArticleDao userArticleDao = new UserArticleDao();
-            UserArticle userArticle = userArticleDao.getUserArticle(id, principal.getId());
-            if (userArticle == null) {
+            if (!existingIdSet.contains(id)) {
                 throw new ClientException("ArticleNotFound", MessageFormat.format("Article not found: {0}", id));
             }
-            
-            // Update the article
-            userArticle.setStarredDate(null);
-            userArticleDao.update(userArticle);
         }
+
+        // Update the articles
+        userArticleDao.updateStarred(idList, principal.getId(), false);
         
         // Always return ok
         JSONObject response = new JSONObject();
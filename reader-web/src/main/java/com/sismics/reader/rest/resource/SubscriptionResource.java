@@ -1,6 +1,5 @@
 package com.sismics.reader.rest.resource;
 
-import com.google.common.io.ByteStreams;
 import com.sismics.reader.core.dao.jpa.*;
 import com.sismics.reader.core.dao.jpa.criteria.FeedSubscriptionCriteria;
 import com.sismics.reader.core.dao.jpa.criteria.UserArticleCriteria;
@@ -10,16 +9,19 @@ import com.sismics.reader.core.event.SubscriptionImportedEvent;
 import com.sismics.reader.core.model.context.AppContext;
 import com.sismics.reader.core.model.jpa.*;
 import com.sismics.reader.core.service.FeedService;
-import com.sismics.reader.core.util.DirectoryUtil;
 import com.sismics.reader.core.util.EntityManagerUtil;
+import com.sismics.reader.core.util.FaviconUtil;
+import com.sismics.reader.core.util.ReplicaTransaction;
+import com.sismics.reader.core.util.TransactionUtil;
+import com.sismics.reader.core.util.UserVersionUtil;
+import com.sismics.reader.core.util.jpa.PageCursor;
 import com.sismics.reader.core.util.jpa.PaginatedList;
 import com.sismics.reader.core.util.jpa.PaginatedLists;
-import com.sismics.reader.rest.assembler.ArticleAssembler;
+import com.sismics.reader.rest.assembler.ArticleListOutput;
 import com.sismics.reader.rest.constant.BaseFunction;
 import com.sismics.rest.exception.ClientException;
 import com.sismics.rest.exception.ForbiddenClientException;
 import com.sismics.rest.exception.ServerException;
-import com.sismics.rest.util.JsonUtil;
 import com.sismics.rest.util.ValidationUtil;
 import com.sismics.util.MessageUtil;
 import com.sun.jersey.multipart.FormDataBodyPart;
@@ -35,6 +37,7 @@ import org.w3c.dom.Element;
 
 import javax.persistence.NoResultException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
@@ -47,6 +50,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -64,6 +70,7 @@ public class SubscriptionResource extends BaseResource {
      * @param unread Returns only subscriptions having unread articles
      * @return Response
      */
+    @SuppressWarnings("try")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     public Response list(@QueryParam("unread") boolean unread) throws JSONException {
@@ -71,120 +78,92 @@ public class SubscriptionResource extends BaseResource {
             throw new ForbiddenClientException();
         }
 
-        // Fetch user's subscriptions
-        FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
-                .setUserId(principal.getId())
-                .setUnread(unread);
-        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-        List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-
-        // Get the root category
-        CategoryDao categoryDao = new CategoryDao();
-        Category rootCategory = categoryDao.getRootCategory(principal.getId());
-        JSONObject rootCategoryJson = new JSONObject();
-        rootCategoryJson.put("id", rootCategory.getId());
-        rootCategoryJson.put("name", rootCategory.getName());
-        rootCategoryJson.put("folded", rootCategory.isFolded());
-        rootCategoryJson.put("categories", new JSONArray());
-
-        Map<String, JSONObject> categoryMap = new HashMap<>();
-        categoryMap.put(rootCategory.getId(), rootCategoryJson);
-
-        int totalUnreadCount = 0;
-
-        // Organize subscriptions under categories
-        for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
-            String categoryId = feedSubscription.getCategoryId();
-            String parentCategoryId = feedSubscription.getCategoryParentId();
-
-            JSONObject categoryJson = categoryMap.get(categoryId);
-            if (categoryJson == null) {
-                categoryJson = new JSONObject();
-                categoryJson.put("id", categoryId);
-                categoryJson.put("name", feedSubscription.getCategoryName());
-                categoryJson.put("folded", feedSubscription.isCategoryFolded());
-                categoryJson.put("categories", new JSONArray());
-                categoryJson.put("subscriptions", new JSONArray());
-                categoryMap.put(categoryId, categoryJson);
-            }
+        // Answer with 304 if the user's data didn't change since the client's copy
+        EntityTag versionTag = getVersionTag();
+        if (isNotModified(versionTag)) {
+            return Response.notModified(versionTag).build();
+        }
 
-            JSONObject subscription = new JSONObject();
-            subscription.put("id", feedSubscription.getId());
-            subscription.put("title", feedSubscription.getFeedSubscriptionTitle());
-            subscription.put("url", feedSubscription.getFeedRssUrl());
-            subscription.put("unread_count", feedSubscription.getUnreadUserArticleCount());
-//            subscription.put("total_count", feedSubscription.getTotalUserArticleCount());
-            subscription.put("sync_fail_count", feedSubscription.getSynchronizationFailCount());
-
-            JsonUtil.append(categoryJson, "subscriptions", subscription);
-            totalUnreadCount += feedSubscription.getUnreadUserArticleCount();
-
-            if (parentCategoryId != null) {
-                JSONObject parentCategoryJson = categoryMap.get(parentCategoryId);
-                if (parentCategoryJson == null) {
-                    parentCategoryJson = new JSONObject();
-                    parentCategoryJson.put("id", parentCategoryId);
-                    parentCategoryJson.put("name", "Unknown Category"); // Placeholder if not in feedSubscriptionList
-                    parentCategoryJson.put("folded", false);
-                    parentCategoryJson.put("categories", new JSONArray());
-                    parentCategoryJson.put("subscriptions", new JSONArray());
-                    categoryMap.put(parentCategoryId, parentCategoryJson);
+        // Read from the replica, unless the user modified its data recently
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+            // Fetch user's categories
+            CategoryDao categoryDao = new CategoryDao();
+            List<Category> categoryList = categoryDao.findAllCategory(principal.getId());
+            Category rootCategory = null;
+            Map<String, List<Category>> subCategoryMap = new HashMap<String, List<Category>>();
+            for (Category category : categoryList) {
+                if (category.getParentId() == null) {
+                    rootCategory = category;
+                } else {
+                    List<Category> subCategoryList = subCategoryMap.get(category.getParentId());
+                    if (subCategoryList == null) {
+                        subCategoryList = new ArrayList<Category>();
+                        subCategoryMap.put(category.getParentId(), subCategoryList);
+                    }
+                    subCategoryList.add(category);
                 }
-                JsonUtil.append(parentCategoryJson, "categories", categoryJson);
             }
-        }
-
-        // Fetch and add all subcategories up to 5 levels
-        addSubCategories(rootCategoryJson, rootCategory.getId(), categoryDao, principal.getId(), 5,unread);
 
-        JSONObject response = new JSONObject();
-        JSONArray rootCategories = new JSONArray();
-        rootCategories.put(rootCategoryJson);
-        response.put("categories", rootCategories);
-        response.put("unread_count", totalUnreadCount);
-        return Response.ok().entity(response).build();
-    }
-
-    private void addSubCategories(JSONObject parentJson, String parentId, CategoryDao categoryDao, String userId, int depth, boolean unread) throws JSONException {
-        if (depth == 0) return;
-        List<Category> subCategories = categoryDao.findSubCategory(parentId, userId);
-        JSONArray categoryArray = new JSONArray();
-        for (Category subCategory : subCategories) {
-            JSONObject categoryJson = new JSONObject();
-            categoryJson.put("id", subCategory.getId());
-            categoryJson.put("name", subCategory.getName());
-            categoryJson.put("folded", subCategory.isFolded());
-            categoryJson.put("categories", new JSONArray());
-            categoryJson.put("subscriptions", new JSONArray());
-            addSubCategories(categoryJson, subCategory.getId(), categoryDao, userId, depth - 1,unread);
-            categoryArray.put(categoryJson);
-
-            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+            // Fetch user's subscriptions, and group them by category
             FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
                     .setUserId(principal.getId())
-                    .setCategoryId(subCategory.getId())
                     .setUnread(unread);
+            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
             List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-            JSONArray subscriptionArray = new JSONArray();
-            for (FeedSubscriptionDto subSubscription : feedSubscriptionList) {
-                JSONObject subSubscriptionJson = new JSONObject();
-                subSubscriptionJson.put("id", subSubscription.getId());
-                subSubscriptionJson.put("title", subSubscription.getFeedSubscriptionTitle());
-                subSubscriptionJson.put("url", subSubscription.getFeedRssUrl());
-                subSubscriptionJson.put("unread_count", subSubscription.getUnreadUserArticleCount());
-
-
-
-                subscriptionArray.put(subSubscriptionJson);
+            Map<String, JSONArray> subscriptionMap = new HashMap<String, JSONArray>();
+            int totalUnreadCount = 0;
+            for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
+                JSONArray subscriptions = subscriptionMap.get(feedSubscription.getCategoryId());
+                if (subscriptions == null) {
+                    subscriptions = new JSONArray();
+                    subscriptionMap.put(feedSubscription.getCategoryId(), subscriptions);
+                }
+                JSONObject subscription = new JSONObject();
+                subscription.put("id", feedSubscription.getId());
+                subscription.put("title", feedSubscription.getFeedSubscriptionTitle());
+                subscription.put("url", feedSubscription.getFeedRssUrl());
+                subscription.put("unread_count", feedSubscription.getUnreadUserArticleCount());
+                subscription.put("sync_fail_count", feedSubscription.getSynchronizationFailCount());
+                subscriptions.put(subscription);
+                totalUnreadCount += feedSubscription.getUnreadUserArticleCount();
             }
-            categoryJson.put("subscriptions", subscriptionArray);
 
+            // Assemble the category tree
+            JSONObject response = new JSONObject();
+            JSONArray rootCategories = new JSONArray();
+            rootCategories.put(getCategoryJson(rootCategory, subCategoryMap, subscriptionMap));
+            response.put("categories", rootCategories);
+            response.put("unread_count", totalUnreadCount);
+            return Response.ok().entity(response).tag(versionTag).build();
         }
-
-        parentJson.put("categories", categoryArray);
     }
 
-
+    /**
+     * Returns a category with its subscriptions and sub-categories.
+     *
+     * @param category Category
+     * @param subCategoryMap Sub-categories, by parent category ID
+     * @param subscriptionMap Subscriptions, by category ID
+     * @return Category
+     */
+    private JSONObject getCategoryJson(Category category, Map<String, List<Category>> subCategoryMap,
+            Map<String, JSONArray> subscriptionMap) throws JSONException {
+        JSONObject categoryJson = new JSONObject();
+        categoryJson.put("id", category.getId());
+        categoryJson.put("name", category.getName());
+        categoryJson.put("folded", category.isFolded());
+        JSONArray categories = new JSONArray();
+        List<Category> subCategoryList = subCategoryMap.get(category.getId());
+        if (subCategoryList != null) {
+            for (Category subCategory : subCategoryList) {
+                categories.put(getCategoryJson(subCategory, subCategoryMap, subscriptionMap));
+            }
+        }
+        categoryJson.put("categories", categories);
+        JSONArray subscriptions = subscriptionMap.get(category.getId());
+        categoryJson.put("subscriptions", subscriptions != null ? subscriptions : new JSONArray());
+        return categoryJson;
+    }
 
     /**
      * Returns the subscription informations and paginated articles.
@@ -193,8 +172,11 @@ public class SubscriptionResource extends BaseResource {
      * @param unread Returns only unread articles
      * @param limit Page limit
      * @param afterArticle Start the list after this article
+     * @param cursor Start the list after this cursor (returned with the previous page)
+     * @param summary Returns a summary instead of the article description
      * @return Response
      */
+    @SuppressWarnings("try")
     @GET
     @Path("{id: [a-z0-9\\-]+}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -202,71 +184,93 @@ public class SubscriptionResource extends BaseResource {
             @PathParam("id") String id,
             @QueryParam("unread") boolean unread,
             @QueryParam("limit") Integer limit,
-            @QueryParam("after_article") String afterArticle) throws JSONException {
+            @QueryParam("after_article") String afterArticle,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("summary") boolean summary) throws JSONException {
         if (!authenticate()) {
             throw new ForbiddenClientException();
         }
 
-        // Get the subscription
-        FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
-                .setId(id)
-                .setUserId(principal.getId());
-
-        FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
-        List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
-        if (feedSubscriptionList.isEmpty()) {
-            throw new ClientException("SubscriptionNotFound", MessageFormat.format("Subscription not found: {0}", id));
+        // Answer with 304 if the user's data didn't change since the client's copy
+        EntityTag versionTag = getVersionTag();
+        if (isNotModified(versionTag)) {
+            return Response.notModified(versionTag).build();
         }
-        FeedSubscriptionDto feedSubscription = feedSubscriptionList.iterator().next();
 
-        // Get the articles
-        UserArticleDao userArticleDao = new UserArticleDao();
-        UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
-                .setUnread(unread)
-                .setUserId(principal.getId())
-                .setSubscribed(true)
-                .setVisible(true)
-                .setFeedId(feedSubscription.getFeedId());
-        if (afterArticle != null) {
-            // Paginate after this user article
-            UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
-                    .setUserArticleId(afterArticle)
+        // Read from the replica, unless the user modified its data recently
+        try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+            // Get the subscription
+            FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
+                    .setId(id)
                     .setUserId(principal.getId());
-            List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
-            if (userArticleDtoList.isEmpty()) {
-                throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+
+            FeedSubscriptionDao feedSubscriptionDao = new FeedSubscriptionDao();
+            List<FeedSubscriptionDto> feedSubscriptionList = feedSubscriptionDao.findByCriteria(feedSubscriptionCriteria);
+            if (feedSubscriptionList.isEmpty()) {
+                throw new ClientException("SubscriptionNotFound", MessageFormat.format("Subscription not found: {0}", id));
             }
-            UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
+            FeedSubscriptionDto feedSubscription = feedSubscriptionList.iterator().next();
 
-            userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
-            userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
-        }
+            // Get the articles
+            UserArticleDao userArticleDao = new UserArticleDao();
+            UserArticleCriteria userArticleCriteria = new UserArticleCriteria()
+                    .setUnread(unread)
+                    .setUserId(principal.getId())
+                    .setSubscribed(true)
+                    .setVisible(true)
+                    .setFeedId(feedSubscription.getFeedId())
+                    .setSummary(summary);
+            if (cursor != null) {
+                // Paginate after the cursor, the last article doesn't need to be fetched again
+                PageCursor pageCursor = PageCursor.decode(cursor);
+                if (pageCursor == null) {
+                    throw new ClientException("ValidationError", MessageFormat.format("Invalid cursor: {0}", cursor));
+                }
+                userArticleCriteria.setArticlePublicationDateMax(pageCursor.getDate());
+                userArticleCriteria.setArticleIdMax(pageCursor.getId());
+            } else if (afterArticle != null) {
+                // Paginate after this user article
+                UserArticleCriteria afterArticleCriteria = new UserArticleCriteria()
+                        .setUserArticleId(afterArticle)
+                        .setUserId(principal.getId());
+                List<UserArticleDto> userArticleDtoList = userArticleDao.findByCriteria(afterArticleCriteria);
+                if (userArticleDtoList.isEmpty()) {
+                    throw new ClientException("ArticleNotFound", MessageFormat.format("Can't find user article {0}", afterArticle));
+                }
+                UserArticleDto userArticleDto = userArticleDtoList.iterator().next();
 
-        PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null);
-        userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
+                userArticleCriteria.setArticlePublicationDateMax(new Date(userArticleDto.getArticlePublicationTimestamp()));
+                userArticleCriteria.setArticleIdMax(userArticleDto.getArticleId());
+            }
 
-        // Build the response
-        JSONObject response = new JSONObject();
+            PaginatedList<UserArticleDto> paginatedList = PaginatedLists.create(limit, null, true);
+            userArticleDao.findByCriteria(paginatedList, userArticleCriteria, null, null);
 
-        JSONObject subscription = new JSONObject();
-        subscription.put("title", feedSubscription.getFeedSubscriptionTitle());
-        subscription.put("feed_title", feedSubscription.getFeedTitle());
-        subscription.put("url", feedSubscription.getFeedUrl());
-        subscription.put("rss_url", feedSubscription.getFeedRssUrl());
-        subscription.put("description", feedSubscription.getFeedDescription());
-        subscription.put("category_id", feedSubscription.getCategoryId());
-        subscription.put("category_name", feedSubscription.getCategoryName());
-        subscription.put("create_date", feedSubscription.getCreateDate().getTime());
-//        subscription.put("total_count", feedSubscription.getTotalUserArticleCount());
-        response.put("subscription", subscription);
+            // Build the response, the articles are streamed without building a JSON tree
+            JSONObject subscription = new JSONObject();
+            subscription.put("title", feedSubscription.getFeedSubscriptionTitle());
+            subscription.put("feed_title", feedSubscription.getFeedTitle());
+            subscription.put("url", feedSubscription.getFeedUrl());
+            subscription.put("rss_url", feedSubscription.getFeedRssUrl());
+            subscription.put("description", feedSubscription.getFeedDescription());
+            subscription.put("category_id", feedSubscription.getCategoryId());
+            subscription.put("category_name", feedSubscription.getCategoryName());
+            subscription.put("create_date", feedSubscription.getCreateDate().getTime());
+    //        subscription.put("total_count", feedSubscription.getTotalUserArticleCount());
+
+            List<UserArticleDto> userArticleList = paginatedList.getResultList();
+            ArticleListOutput output = new ArticleListOutput(userArticleList)
+                    .put("subscription", subscription)
+                    .put("has_more", paginatedList.isHasMore());
+
+            // Cursor to request the next page
+            if (!userArticleList.isEmpty()) {
+                UserArticleDto lastUserArticle = userArticleList.get(userArticleList.size() - 1);
+                output.put("next_cursor", PageCursor.encode(lastUserArticle.getArticlePublicationTimestamp(), lastUserArticle.getArticleId()));
+            }
 
-        List<JSONObject> articles = new ArrayList<JSONObject>();
-        for (UserArticleDto userArticle : paginatedList.getResultList()) {
-            articles.add(ArticleAssembler.asJson(userArticle));
+            return Response.ok().entity(output).tag(versionTag).build();
         }
-        response.put("articles", articles);
-
-        return Response.ok().entity(response).build();
     }
 
     /**
@@ -460,6 +464,54 @@ public class SubscriptionResource extends BaseResource {
         return Response.ok().entity(response).build();
     }
 
+    /**
+     * Returns the favicons of all the user's subscriptions in one response, as data URIs.
+     * Subscriptions without a favicon, or with a favicon too large to be inlined, are omitted.
+     *
+     * @return Response
+     */
+    @SuppressWarnings("try")
+    @GET
+    @Path("favicon")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response faviconBundle() throws JSONException {
+        if (!authenticate()) {
+            throw new ForbiddenClientException();
+        }
+
+        // Answer with 304 if neither the user's subscriptions nor the favicons changed since the client's copy
+        EntityTag bundleTag = new EntityTag(UserVersionUtil.getVersion(principal.getId()) + "-" + FaviconUtil.getVersion());
+        if (isNotModified(bundleTag)) {
+            return Response.notModified(bundleTag).build();
+        }
+
+        // The bundle is regenerated only when its tag changes
+        String bundle = FaviconUtil.getBundle(principal.getId(), bundleTag.getValue());
+        if (bundle == null) {
+            FeedSubscriptionCriteria feedSubscriptionCriteria = new FeedSubscriptionCriteria()
+                    .setUserId(principal.getId());
+            List<FeedSubscriptionDto> feedSubscriptionList;
+            try (ReplicaTransaction replicaTransaction = TransactionUtil.openReplica(principal.getId())) {
+                feedSubscriptionList = new FeedSubscriptionDao().findByCriteria(feedSubscriptionCriteria);
+            }
+
+            JSONObject favicons = new JSONObject();
+            for (FeedSubscriptionDto feedSubscription : feedSubscriptionList) {
+                File faviconFile = FaviconUtil.getFavicon(feedSubscription.getFeedId());
+                String dataUri = faviconFile != null ? FaviconUtil.getDataUri(faviconFile) : null;
+                if (dataUri != null) {
+                    favicons.put(feedSubscription.getId(), dataUri);
+                }
+            }
+            JSONObject response = new JSONObject();
+            response.put("favicons", favicons);
+            bundle = response.toString();
+            FaviconUtil.putBundle(principal.getId(), bundleTag.getValue(), bundle);
+        }
+
+        return Response.ok().entity(bundle).tag(bundleTag).build();
+    }
+
     /**
      * Returns the favicon of this subscription, or the default favicon.
      *
@@ -482,15 +534,40 @@ public class SubscriptionResource extends BaseResource {
             throw new ClientException("SubscriptionNotFound", MessageFormat.format("Subscription not found: {0}", id));
         }
 
-        // Get the favicon
-        File faviconDirectory = DirectoryUtil.getFaviconDirectory();
-        File[] matchingFiles = faviconDirectory.listFiles((dir, name) -> name.startsWith(feedSubscription.getFeedId()));
-        final File faviconFile = matchingFiles.length > 0 ?
-                matchingFiles[0] :
-                new File(getClass().getResource("/image/subscription.png").getFile());
+        // Get the favicon from the index
+        File faviconFile = FaviconUtil.getFavicon(feedSubscription.getFeedId());
+        if (faviconFile == null) {
+            faviconFile = new File(getClass().getResource("/image/subscription.png").getFile());
+        }
+
+        // Answer with 304 if the client's copy is still current
+        Date lastModified = new Date(faviconFile.lastModified());
+        EntityTag faviconTag = new EntityTag(Long.toString(faviconFile.lastModified(), 36) + "-" + Long.toString(faviconFile.length(), 36));
+        if (isNotModified(faviconTag, lastModified)) {
+            return Response.notModified(faviconTag).lastModified(lastModified).build();
+        }
 
-        StreamingOutput stream = os -> ByteStreams.copy(new FileInputStream(faviconFile), os);
+        // Transfer the file without copying it through the heap
+        final File file = faviconFile;
+        StreamingOutput stream = os -> {
+            try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                WritableByteChannel target = Channels.newChannel(os);
+                long position = 0;
+                long size = channel.size();
+                while (position < size) {
+                    long count = channel.transferTo(position, size - position, target);
+                    if (count <= 0) {
+                        // The file was truncated meanwhile, don't loop forever
+                        break;
+                    }
+                    position += count;
+                }
+            }
+        };
         return Response.ok(stream)
+                .tag(faviconTag)
+                .lastModified(lastModified)
+                .header("Content-Length", faviconFile.length())
                 .header("Expires", new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z").format(new Date().getTime() + 3600000 * 24 * 7))
                 .header("Content-Disposition", MessageFormat.format("attachment; filename=\"{0}\"", faviconFile.getName()))
                 .build();
@@ -525,7 +602,9 @@ public class SubscriptionResource extends BaseResource {
                 .setSubscribed(true)
                 .setFeedSubscriptionId(id));
 
-        feedSubscriptionDao.updateUnreadCount(feedSubscription.getId(), 0);
+        feedSubscriptionDao.recomputeUnreadCount(new FeedSubscriptionCriteria()
+                .setId(feedSubscription.getId())
+                .setUserId(principal.getId()));
 
         // Always return ok
         JSONObject response = new JSONObject();
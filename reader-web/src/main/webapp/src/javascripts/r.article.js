@@ -55,9 +55,26 @@ r.article.init = function() {
       container.find('.feed-item.unfolded').removeClass('unfolded');
       item.addClass('unfolded');
       
-      // Fill article description
+      // Fill article description, fetching it if the list only contains summaries
       var article = item.data('article');
-      item.find('.feed-item-description').html(article.description);
+      if (article.description !== undefined) {
+        item.find('.feed-item-description').html(article.description);
+      } else {
+        r.util.ajax({
+          url: r.util.url.article_description,
+          traditional: true,
+          data: { id: [article.id] },
+          type: 'GET',
+          done: function(data) {
+            if (data.articles.length > 0) {
+              article.description = data.articles[0].description;
+              if (item.hasClass('unfolded')) {
+                item.find('.feed-item-description').html(article.description);
+              }
+            }
+          }
+        });
+      }
       
       // Scroll to the beginning of this article
       r.feed.scrollTop(item.position().top + container.scrollTop() + 1);
@@ -242,7 +259,8 @@ r.article.build = function(article, classes) {
   if (article.url) {
     item.find('.feed-item-collapsed-link').html('<a href="' + article.url + '" target="_blank"><img src="images/external.png" /></a>');
   }
-  item.find('.feed-item-collapsed-description').html(article.description.replace(/(<([^>]+)>)/ig, '').substring(0, 200));
+  item.find('.feed-item-collapsed-description').html(article.description !== undefined ?
+      article.description.replace(/(<([^>]+)>)/ig, '').substring(0, 200) : article.summary);
   
   // Mark as unread state
   if (item.hasClass('forceunread')) {
@@ -11,6 +11,7 @@ r.feed.context = {
     return r.feed.cache.container.hasClass('list') ? 15 : 10;
   }, 
   lastItem: null, // Last article
+  nextCursor: null, // Cursor to fetch the next page
   bumper: null, // Bumper
   fullyLoaded: false, // True if all articles are loaded
   activeXhr: null // Active XHR retrieving a feed
@@ -243,6 +244,7 @@ r.feed.load = function(next) {
     // Reset flag telling if all articles are loaded
     r.feed.context.fullyLoaded = false;
     r.feed.context.lastItem = null;
+    r.feed.context.nextCursor = null;
   }
   
   // All articles are loaded, stop
@@ -259,10 +261,13 @@ r.feed.load = function(next) {
   // Building payload
   var data = {
     unread: r.feed.context.unread,
-    limit: r.feed.context.limit()
+    limit: r.feed.context.limit(),
+    summary: r.user.isDisplayTitle()
   };
   
-  if (r.feed.context.lastItem) {
+  if (r.feed.context.nextCursor) {
+    data.cursor = r.feed.context.nextCursor;
+  } else if (r.feed.context.lastItem) {
     data.after_article = r.feed.context.lastItem.attr('data-article-id');
   }
   
@@ -295,7 +300,8 @@ r.feed.load = function(next) {
       }
       
       // All articles are loaded?
-      r.feed.context.fullyLoaded = nbArticles == 0;
+      r.feed.context.fullyLoaded = nbArticles == 0 || data.has_more === false;
+      r.feed.context.nextCursor = data.next_cursor;
       
       // Building articles
       $(data.articles).each(function(i, article) {
@@ -31,6 +31,7 @@ r.util.url = {
   article_read: '../api/article/{id}/read',
   article_unread: '../api/article/{id}/unread',
   articles_read: '../api/article/read',
+  article_description: '../api/article/description',
   search: '../api/search/{query}',
   locale_list: '../api/locale',
   theme_list: '../api/theme',
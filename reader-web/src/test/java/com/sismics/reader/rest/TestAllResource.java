@@ -7,7 +7,9 @@ import org.codehaus.jettison.json.JSONObject;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * Exhaustive test of the all resource.
@@ -87,6 +89,41 @@ public class TestAllResource extends BaseJerseyTest {
         assertEquals(8, articles.length());
         assertEquals(article2Id, article.getString("id"));
 
+        // Check pagination with a cursor
+        GET("/all", ImmutableMap.of("limit", "2"));
+        assertIsOk();
+        json = getJsonResult();
+        String nextCursor = json.getString("next_cursor");
+        assertNotNull(nextCursor);
+        GET("/all", ImmutableMap.of("cursor", nextCursor));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.optJSONArray("articles");
+        assertNotNull(articles);
+        assertEquals(8, articles.length());
+        assertEquals(article2Id, articles.getJSONObject(0).getString("id"));
+
+        // Check pagination with an invalid cursor
+        GET("/all", ImmutableMap.of("cursor", "invalid!"));
+        assertIsBadRequest();
+
+        // Check the summary mode
+        GET("/all", ImmutableMap.of("summary", "true", "limit", "1"));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.optJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertFalse(articles.getJSONObject(0).has("description"));
+        assertTrue(articles.getJSONObject(0).has("summary"));
+
+        // Fetch the descriptions in batch
+        GET("/article/description", ImmutableMap.of("id", articles.getJSONObject(0).getString("id")));
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.optJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertNotNull(articles.getJSONObject(0).optString("description", null));
+
         // Marks all articles as read
         POST("/all/read");
         assertIsOk();
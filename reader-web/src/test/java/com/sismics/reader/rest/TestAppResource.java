@@ -34,6 +34,12 @@ public class TestAppResource extends BaseJerseyTest {
         assertTrue(freeMemory > 0);
         Long totalMemory = json.getLong("total_memory");
         assertTrue(totalMemory > 0 && totalMemory > freeMemory);
+        assertTrue(json.getInt("indexing_queue_depth") >= 0);
+        assertTrue(json.getLong("indexing_queue_lag") >= 0);
+        assertTrue(json.getLong("search_cache_hit_count") >= 0);
+        assertTrue(json.getLong("search_cache_miss_count") >= 0);
+        double searchCacheHitRate = json.getDouble("search_cache_hit_rate");
+        assertTrue(searchCacheHitRate >= 0 && searchCacheHitRate <= 1);
         
         // Login admin
         login("admin", "admin", false);
@@ -41,6 +47,19 @@ public class TestAppResource extends BaseJerseyTest {
         // Rebuild articles index
         POST("/app/batch/reindex");
         assertIsOk();
+        
+        // Check the cache statistics
+        GET("/app/cache");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getJSONArray("regions").length() > 0);
+        
+        // Check the connection pool statistics
+        GET("/app/pool");
+        assertIsOk();
+        json = getJsonResult();
+        assertTrue(json.getInt("max_size") > 0);
+        assertTrue(json.getLong("checkout_count") > 0);
     }
 
     /**
@@ -8,6 +8,8 @@ import org.codehaus.jettison.json.JSONObject;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
 
 /**
  * Exhaustive test of the search resource.
@@ -36,6 +38,46 @@ public class TestSearchResource extends BaseJerseyTest {
         assertEquals(1, articles.length());
         assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
         
+        // Search "ZELDA" again: OK, served from the cache
+        GET("/app");
+        assertIsOk();
+        long searchCacheHitCount = getJsonResult().getLong("search_cache_hit_count");
+        GET("/search/SEARCHTERMZELDA");
+        assertIsOk();
+        json = getJsonResult();
+        articles = json.getJSONArray("articles");
+        assertEquals(1, articles.length());
+        assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
+        GET("/app");
+        assertIsOk();
+        assertEquals(searchCacheHitCount + 1, getJsonResult().getLong("search_cache_hit_count"));
+        
+        // Get the whole highlighted article
+        String article1Id = articles.getJSONObject(0).getString("id");
+        GET("/article/" + article1Id + "/highlight", ImmutableMap.of("query", "searchtermzelda"));
+        assertIsOk();
+        json = getJsonResult();
+        assertEquals(article1Id, json.getString("id"));
+        assertEquals("Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", json.getString("title"));
+        assertNotNull(json.getString("description"));
+        
+        // Complete "searchtermzel": OK, the title of the article and no subscription
+        GET("/search/suggest/searchtermzel");
+        assertIsOk();
+        json = getJsonResult();
+        JSONArray titles = json.getJSONArray("titles");
+        assertEquals(1, titles.length());
+        assertEquals("Quand searchtermZelda prend les armes", titles.getString(0));
+        assertEquals(0, json.getJSONArray("subscriptions").length());
+        
+        // Complete "korb": OK, the subscription
+        GET("/search/suggest/korb");
+        assertIsOk();
+        json = getJsonResult();
+        JSONArray subscriptions = json.getJSONArray("subscriptions");
+        assertEquals(1, subscriptions.length());
+        assertEquals("Korben", subscriptions.getJSONObject(0).getString("title"));
+        
         // Search "njloinzejrmklsjd": OK, no result
         GET("/search/njloinzejrmklsjd");
         assertIsOk();
@@ -52,6 +94,22 @@ public class TestSearchResource extends BaseJerseyTest {
         assertSearchResult(articles, "Récupérer les clés <span class=\"highlight\">searchtermwifi</span> sur un téléphone Android", 0);
         assertSearchResult(articles, "Partagez vos clés <span class=\"highlight\">searchtermWiFi</span> avec vos amis", 1);
         
+        // Mark the older result as unread: OK, it was not fetched with the subscription, and is now listed and counted as unread
+        String article2Id = articles.getJSONObject(1).getString("id");
+        GET("/subscription");
+        assertIsOk();
+        int unreadCount = getJsonResult().getInt("unread_count");
+        POST("/article/" + article2Id + "/unread");
+        assertIsOk();
+        GET("/subscription");
+        assertIsOk();
+        assertEquals(unreadCount + 1, getJsonResult().getInt("unread_count"));
+        GET("/all", ImmutableMap.of("unread", "true", "limit", "100"));
+        assertIsOk();
+        articles = getJsonResult().getJSONArray("articles");
+        assertEquals(unreadCount + 1, articles.length());
+        assertEquals(article2Id, articles.getJSONObject(unreadCount).getString("id"));
+        
         // Search "google keep": OK, 2 results
         GET("/search/searchtermgoogle%20searchtermkeep");
         assertIsOk();
@@ -87,13 +145,19 @@ public class TestSearchResource extends BaseJerseyTest {
         articles = json.getJSONArray("articles");
         assertEquals(0, articles.length());
         
-        // Search "zelda"
+        // Search "zelda": no result, the articles of the feeds not subscribed are not searched
         GET("/search/searchtermzelda");
         assertIsOk();
         json = getJsonResult();
         articles = json.getJSONArray("articles");
-        assertEquals(1, articles.length());
-        assertSearchResult(articles, "Quand <span class=\"highlight\">searchtermZelda</span> prend les armes", 0);
+        assertEquals(0, articles.length());
+        assertEquals(0, json.getInt("total"));
+        assertFalse(json.getBoolean("has_more"));
+        
+        // Complete "searchtermzel": no completion, the feed is not subscribed
+        GET("/search/suggest/searchtermzel");
+        assertIsOk();
+        assertEquals(0, getJsonResult().getJSONArray("titles").length());
         
         // Subscribe to Korben RSS feed (alternative URL)
         PUT("/subscription", ImmutableMap.of("url", "http://localhost:9997/http/feeds/korben2.xml"));
@@ -56,6 +56,12 @@ public class TestSubscriptionResource extends BaseJerseyTest {
         json = getJsonResult();
         assertEquals("ok", json.getString("status"));
 
+        // Get the favicons of all subscriptions in one request, as data URIs indexed by subscription ID
+        GET("/subscription/favicon");
+        assertIsOk();
+        json = getJsonResult();
+        assertNotNull(json.optJSONObject("favicons"));
+
         // List all subscriptions
         GET("/subscription");
         assertIsOk();